@@ -0,0 +1,182 @@
+/*
+ * Copyright 2002-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package leola.web.bench;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * The regular expression based URI template that leola-web used prior to the {@code leola.web.UriTemplate} segment
+ * matcher.  This is only kept as the baseline for the benchmarks.
+ *
+ * @author Arjen Poutsma
+ * @author Juergen Hoeller
+ * @since 3.0
+ * @see <a href="http://bitworking.org/projects/URI-Templates/">URI Templates</a>
+ */
+@SuppressWarnings("serial")
+public class LegacyUriTemplate implements Serializable {
+
+	/** Captures URI template variable names. */
+	private static final Pattern NAMES_PATTERN = Pattern.compile("\\{([^/]+?)\\}");
+
+	/** Replaces template variables in the URI template. */
+	private static final String DEFAULT_VARIABLE_PATTERN = "(.+)";
+
+	private final List<String> variableNames;
+
+	private final Pattern matchPattern;
+
+	private final String uriTemplate;
+
+
+	/**
+	 * Construct a new {@code LegacyUriTemplate} with the given URI String.
+	 * @param uriTemplate the URI template string
+	 */
+	public LegacyUriTemplate(String uriTemplate) {
+		Parser parser = new Parser(uriTemplate);
+		this.uriTemplate = uriTemplate;
+		this.variableNames = parser.getVariableNames();
+		this.matchPattern = parser.getMatchPattern();
+	}
+
+	/**
+     * @return the matchPattern
+     */
+    public Pattern getMatchPattern() {
+        return matchPattern;
+    }
+
+	/**
+	 * Return the names of the variables in the template, in order.
+	 * @return the template variable names
+	 */
+	public List<String> getVariableNames() {
+		return this.variableNames;
+	}
+
+
+	/**
+	 * Indicate whether the given URI matches this template.
+	 * @param uri the URI to match to
+	 * @return {@code true} if it matches; {@code false} otherwise
+	 */
+	public boolean matches(String uri) {
+		if (uri == null) {
+			return false;
+		}
+		Matcher matcher = this.matchPattern.matcher(uri);
+		return matcher.matches();
+	}
+
+	/**
+	 * Match the given URI to a map of variable values. Keys in the returned map are variable names,
+	 * values are variable values, as occurred in the given URI.
+	 * <p>Example:
+	 * <pre class="code">
+	 * UriTemplate template = new UriTemplate("http://example.com/hotels/{hotel}/bookings/{booking}");
+	 * System.out.println(template.match("http://example.com/hotels/1/bookings/42"));
+	 * </pre>
+	 * will print: <blockquote>{@code {hotel=1, booking=42}}</blockquote>
+	 * @param uri the URI to match to
+	 * @return a map of variable values
+	 */
+	public Map<String, String> match(String uri) {		
+		Map<String, String> result = new LinkedHashMap<String, String>(this.variableNames.size());
+		Matcher matcher = this.matchPattern.matcher(uri);
+		if (matcher.find()) {
+			for (int i = 1; i <= matcher.groupCount(); i++) {
+				String name = this.variableNames.get(i - 1);
+				String value = matcher.group(i);
+				result.put(name, value);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return this.uriTemplate;
+	}
+
+
+	/**
+	 * Static inner class to parse URI template strings into a matching regular expression.
+	 */
+	private static class Parser {
+
+		private final List<String> variableNames = new LinkedList<String>();
+
+		private final StringBuilder patternBuilder = new StringBuilder();
+
+		private Parser(String uriTemplate) {			
+			Matcher matcher = NAMES_PATTERN.matcher(uriTemplate);
+			int end = 0;
+			while (matcher.find()) {
+				this.patternBuilder.append(quote(uriTemplate, end, matcher.start()));
+				String match = matcher.group(1);
+				int colonIdx = match.indexOf(':');
+				if (colonIdx == -1) {
+					this.patternBuilder.append(DEFAULT_VARIABLE_PATTERN);
+					this.variableNames.add(match);
+				}
+				else {
+					if (colonIdx + 1 == match.length()) {
+						throw new IllegalArgumentException(
+								"No custom regular expression specified after ':' in \"" + match + "\"");
+					}
+					String variablePattern = match.substring(colonIdx + 1, match.length());
+					this.patternBuilder.append('(');
+					this.patternBuilder.append(variablePattern);
+					this.patternBuilder.append(')');
+					String variableName = match.substring(0, colonIdx);
+					this.variableNames.add(variableName);
+				}
+				end = matcher.end();
+			}
+			this.patternBuilder.append(quote(uriTemplate, end, uriTemplate.length()));
+			int lastIdx = this.patternBuilder.length() - 1;
+			if (lastIdx >= 0 && this.patternBuilder.charAt(lastIdx) == '/') {
+				this.patternBuilder.deleteCharAt(lastIdx);
+			}
+		}
+
+		private String quote(String fullPath, int start, int end) {
+			if (start == end) {
+				return "";
+			}
+			return Pattern.quote(fullPath.substring(start, end));
+		}
+
+		private List<String> getVariableNames() {
+			return Collections.unmodifiableList(this.variableNames);
+		}
+
+		private Pattern getMatchPattern() {
+			return Pattern.compile(this.patternBuilder.toString());
+		}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,123 @@
+/*
+ * see license.txt
+ */
+package leola.web.bench;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import leola.vm.types.LeoMap;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoString;
+import leola.web.HttpStatus;
+import leola.web.NativeBindings;
+import leola.web.RequestContext;
+import leola.web.WebLeolaLibrary;
+import leola.web.WebResponse;
+
+/**
+ * Measures the calls a typical route function makes into the web API, through Leola's native class dispatch and through
+ * the precomputed {@link NativeBindings}.  Each invocation wraps a new {@link RequestContext}, reads a parameter, a defaulted
+ * parameter and a header from it, and builds a {@link WebResponse} with a header and a body, as <code>web:ok()</code> hands it 
+ * to the script:
+ *
+ * <pre>
+ *   def(context) {
+ *      var id = context.param("id")
+ *      var page = context.param("page", "1")
+ *      var accept = context.header("Accept")
+ *      return response.header("Cache-Control", "no-cache").text(id)
+ *   }
+ * </pre>
+ *
+ * <pre>
+ *   java -jar target/benchmarks.jar NativeBindingsBenchmark -prof gc
+ * </pre>
+ *
+ * @author Tony
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NativeBindingsBenchmark {
+
+    /**
+     * How the web API objects are handed to the script
+     */
+    public static enum Dispatch {
+        NATIVE,
+        BOUND,
+    }
+
+    @Param({"NATIVE", "BOUND"})
+    public Dispatch dispatch;
+
+    private HttpServletRequest request;
+    private final WebLeolaLibrary library = new WebLeolaLibrary();
+
+    private final LeoObject param = LeoString.valueOf("param");
+    private final LeoObject header = LeoString.valueOf("header");
+    private final LeoObject text = LeoString.valueOf("text");
+
+    private final LeoObject id = LeoString.valueOf("id");
+    private final LeoObject page = LeoString.valueOf("page");
+    private final LeoObject firstPage = LeoString.valueOf("1");
+    private final LeoObject accept = LeoString.valueOf("Accept");
+    private final LeoObject cacheControl = LeoString.valueOf("Cache-Control");
+    private final LeoObject noCache = LeoString.valueOf("no-cache");
+
+    @Setup
+    public void setup() {
+        final Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put("id", "42");
+
+        final Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Accept", "application/json");
+
+        this.request = (HttpServletRequest)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { HttpServletRequest.class },
+            (proxy, method, args) -> {
+                switch(method.getName()) {
+                    case "getParameter": return parameters.get(args[0]);
+                    case "getHeader": return headers.get(args[0]);
+                    default: return null;
+                }
+            });
+    }
+
+    private LeoObject valueOf(Object value) {
+        return (this.dispatch == Dispatch.BOUND) ? NativeBindings.valueOf(value) : LeoObject.valueOf(value);
+    }
+
+    @Benchmark
+    public LeoObject handler() {
+        LeoObject context = valueOf(new RequestContext(this.request, null, null, new LeoMap()));
+
+        LeoObject idValue = context.getObject(this.param).call(this.id);
+        context.getObject(this.param).call(this.page, this.firstPage);
+        context.getObject(this.header).call(this.accept);
+
+        LeoObject response = (this.dispatch == Dispatch.BOUND) ? this.library.ok() : LeoObject.valueOf(new WebResponse(HttpStatus.OK));
+        response = response.getObject(this.header).call(this.cacheControl, this.noCache);
+        return response.getObject(this.text).call(idValue);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * see license.txt
+ */
+package leola.web.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import leola.vm.types.LeoArray;
+import leola.vm.types.LeoMap;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoString;
+import leola.vm.types.LeoUserFunction;
+import leola.web.RoutingTable.Route;
+
+/**
+ * Generates synthetic route sets, along with request paths that hit and miss them.
+ *
+ * @author Tony
+ *
+ */
+public class RouteSets {
+
+    /**
+     * The kind of routes in a generated route set
+     */
+    public static enum Mix {
+        /** only variable free routes, i.e., /api/static3/r13 */
+        STATIC,
+
+        /** only routes with plain path variables, i.e., /api/param3/r13/{id}/items/{item} */
+        PARAM,
+
+        /** only routes with regular expression path variables, i.e., /api/regex3/r13/{id:[0-9]+} */
+        REGEX,
+
+        /** an even mix of the above */
+        MIXED,
+    }
+
+    private static final LeoObject HANDLER = new LeoUserFunction() {
+        @Override
+        public LeoObject call(LeoObject[] args) {
+            return LeoObject.NULL;
+        }
+    };
+
+    private final List<Route> routes;
+    private final List<String> hits;
+    private final List<String> misses;
+
+    /**
+     * @param size the number of routes
+     * @param mix the kind of routes
+     */
+    public RouteSets(int size, Mix mix) {
+        this.routes = new ArrayList<Route>(size);
+        this.hits = new ArrayList<String>(size);
+        this.misses = new ArrayList<String>(size * 2);
+
+        for(int i = 0; i < size; i++) {
+            Mix kind = (mix == Mix.MIXED) ? Mix.values()[i % 3] : mix;
+            String group = "/api/" + kind.name().toLowerCase() + (i % 10) + "/r" + i;
+            switch(kind) {
+                case STATIC: {
+                    this.routes.add(route(group, "GET"));
+                    this.hits.add(group);
+                    this.misses.add(group + "/nope");
+                    break;
+                }
+                case PARAM: {
+                    this.routes.add(route(group + "/{id}/items/{item}", "GET"));
+                    this.hits.add(group + "/" + i + "/items/" + (i * 7));
+                    this.misses.add(group + "/" + i + "/orders/" + (i * 7));
+                    break;
+                }
+                default: {
+                    this.routes.add(route(group + "/{id:[0-9]+}", "GET"));
+                    this.hits.add(group + "/" + i);
+                    this.misses.add(group + "/user" + i);
+                    break;
+                }
+            }
+
+            /* the kind of traffic a vulnerability scanner generates */
+            this.misses.add("/scan" + i + "/wp-login.php");
+        }
+    }
+
+    private static Route route(String path, String method) {
+        LeoMap config = new LeoMap();
+        config.putByString("path", LeoString.valueOf(path));
+        config.putByString("methods", LeoArray.newLeoArray(LeoString.valueOf(method)));
+        return new Route(config, HANDLER);
+    }
+
+    /**
+     * @return the generated routes
+     */
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * @return request paths that match one of the routes
+     */
+    public String[] getHits() {
+        return this.hits.toArray(new String[0]);
+    }
+
+    /**
+     * @return request paths that do not match any of the routes
+     */
+    public String[] getMisses() {
+        return this.misses.toArray(new String[0]);
+    }
+}
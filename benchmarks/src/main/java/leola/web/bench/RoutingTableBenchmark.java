@@ -0,0 +1,108 @@
+/*
+ * see license.txt
+ */
+package leola.web.bench;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import leola.web.RouteMatch;
+import leola.web.RoutingTable;
+import leola.web.RoutingTable.Route;
+
+/**
+ * Measures resolving request paths against synthetic {@link RoutingTable}s of varying size and kinds of {@link Route}s.  Each invocation
+ * resolves the next request path of the set, cycling through all of them, so that the result is not dominated by a single
+ * well predicted path.
+ *
+ * <pre>
+ *   java -jar target/benchmarks.jar RoutingTableBenchmark -prof gc
+ *   java -jar target/benchmarks.jar RoutingTableBenchmark -p routes=10000 -p mix=PARAM -p lookup=MISS -prof gc
+ * </pre>
+ *
+ * @author Tony
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingTableBenchmark {
+
+    /**
+     * Whether the request paths match a route
+     */
+    public static enum Lookup {
+        HIT,
+        MISS,
+    }
+
+    @Param({"10", "100", "1000", "10000"})
+    public int routes;
+
+    @Param({"STATIC", "PARAM", "REGEX", "MIXED"})
+    public RouteSets.Mix mix;
+
+    @Param({"HIT", "MISS"})
+    public Lookup lookup;
+
+    private RoutingTable table;
+    private String[] paths;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        RouteSets set = new RouteSets(this.routes, this.mix);
+
+        this.table = new RoutingTable();
+        this.table.replaceAll(set.getRoutes());
+        this.table.compile();
+
+        this.paths = (this.lookup == Lookup.HIT) ? set.getHits() : set.getMisses();
+        for(String path : this.paths) {
+            if(this.table.getRoute("GET", path).isPresent() != (this.lookup == Lookup.HIT)) {
+                throw new IllegalStateException("Invalid benchmark path: " + path);
+            }
+        }
+    }
+
+    private String nextPath() {
+        String path = this.paths[this.index];
+        if(++this.index == this.paths.length) {
+            this.index = 0;
+        }
+        return path;
+    }
+
+    /**
+     * The lookup done by {@link RoutingTable#getRoute(String, String)}
+     */
+    @Benchmark
+    public Optional<Route> getRoute() {
+        return this.table.getRoute("GET", nextPath());
+    }
+
+    /**
+     * The lookup done for each request by the web application, which also computes the <code>Allow</code> header
+     * and consults the miss cache when no route matches
+     */
+    @Benchmark
+    public RouteMatch resolve() {
+        return this.table.resolve("GET", nextPath());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * see license.txt
+ */
+package leola.web.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import leola.web.UriTemplate;
+
+/**
+ * Compares the regular expression based {@link LegacyUriTemplate} against the segment matching {@link UriTemplate}
+ * over a realistic set of REST routes.  Each invocation matches every request path against its own template; the reported
+ * throughput is per path.
+ *
+ * <pre>
+ *   java -jar target/benchmarks.jar UriTemplateBenchmark -prof gc
+ * </pre>
+ *
+ * @author Tony
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UriTemplateBenchmark {
+
+    /**
+     * The route templates and a request path that matches each of them
+     */
+    static final String[][] ROUTES = {
+        { "/api/health",                                  "/api/health" },
+        { "/api/hello",                                   "/api/hello" },
+        { "/login",                                       "/login" },
+        { "/api/users/",                                  "/api/users/" },
+        { "/api/users/{user}",                            "/api/users/tony" },
+        { "/api/users/{user}/roles",                      "/api/users/tony/roles" },
+        { "/api/users/{user}/orders",                     "/api/users/brett/orders" },
+        { "/api/users/{user}/orders/{orderId}",           "/api/users/brett/orders/8675309" },
+        { "/api/users/{user}/orders/{orderId}/items",     "/api/users/brett/orders/8675309/items" },
+        { "/api/teams/{team}/roster",                     "/api/teams/GreenBayPackers/roster" },
+        { "/api/teams/{team}/games/{season}/{week}",      "/api/teams/GreenBayPackers/games/1996/17" },
+        { "/api/products/{sku}",                          "/api/products/AB-1234-XY" },
+        { "/api/products/{sku}/reviews/{reviewId}",       "/api/products/AB-1234-XY/reviews/99" },
+        { "/api/search/{index}/{query}",                  "/api/search/users/favre" },
+        { "/files/{name}.json",                           "/files/report.json" },
+        { "/static/{version}/{file}",                     "/static/1.0.4/app.js" },
+    };
+
+    private UriTemplate[] templates;
+    private LegacyUriTemplate[] legacyTemplates;
+    private String[] paths;
+
+    @Setup
+    public void setup() {
+        this.templates = new UriTemplate[ROUTES.length];
+        this.legacyTemplates = new LegacyUriTemplate[ROUTES.length];
+        this.paths = new String[ROUTES.length];
+
+        for(int i = 0; i < ROUTES.length; i++) {
+            this.templates[i] = new UriTemplate(ROUTES[i][0]);
+            this.legacyTemplates[i] = new LegacyUriTemplate(ROUTES[i][0]);
+            this.paths[i] = ROUTES[i][1];
+
+            if(!this.templates[i].matches(this.paths[i]) || !this.legacyTemplates[i].matches(this.paths[i])) {
+                throw new IllegalStateException("Invalid benchmark route: " + ROUTES[i][0]);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(16)
+    public void legacyMatches(Blackhole bh) {
+        for(int i = 0; i < this.paths.length; i++) {
+            bh.consume(this.legacyTemplates[i].matches(this.paths[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(16)
+    public void segmentMatches(Blackhole bh) {
+        for(int i = 0; i < this.paths.length; i++) {
+            bh.consume(this.templates[i].matches(this.paths[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(16)
+    public void legacyMatch(Blackhole bh) {
+        for(int i = 0; i < this.paths.length; i++) {
+            bh.consume(this.legacyTemplates[i].match(this.paths[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(16)
+    public void segmentMatch(Blackhole bh) {
+        for(int i = 0; i < this.paths.length; i++) {
+            bh.consume(this.templates[i].match(this.paths[i]));
+        }
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import leola.vm.types.LeoLong;
+import leola.vm.types.LeoMap;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Serves the batch route of a {@link WebApp}, which bundles many requests into one.  The batch request is a <code>POST</code> of a JSON
+ * array of sub-requests:
+ *
+ * <pre>
+ *   [
+ *     { "method": "GET", "path": "/api/users/42" },
+ *     { "method": "PUT", "path": "/api/users/42/name", "headers": { "If-Match": "7" }, "body": { "name": "tony" } }
+ *   ]
+ * </pre>
+ *
+ * Each sub-request is resolved through the {@link RoutingTable} and its route function is run in parallel with the others, in
+ * process, with its own {@link RequestContext}.  Once they have all completed, the batch is responded to with a JSON array holding
+ * the <code>status</code>, <code>headers</code> and <code>body</code> of each sub-request, in order.  A <code>body</code> that is not a
+ * string is sent as <code>application/json</code>; a JSON response body is embedded as JSON, any other as a string.
+ *
+ * <p>
+ * The sub-requests share the cookies and session of the batch request, and each passes through the filters of its route (see
+ * {@link WebFilterChain}).  A sub-request whose route has a <code>timeout</code> is recorded as a 504 once it elapses, without holding
+ * up the rest of the batch.  The configuration is:
+ * <pre>
+ *   batch -> {
+ *      path -> "/_batch", // the path of the batch route
+ *      maxRequests -> 20, // the number of sub-requests a batch may contain
+ *      maxBodySize -> 1048576, // the maximum number of bytes of the batch body, above which it is responded to with a 413; -1 for no limit
+ *   }
+ * </pre>
+ *
+ * @author Tony
+ *
+ */
+public class Batch {
+
+    private static final Gson gson = new GsonBuilder().create();
+
+    private final String path;
+    private final int maxRequests;
+    private final long maxBodySize;
+
+    private final LongAdder batches;
+    private final LongAdder requests;
+
+    /**
+     * @param config the <code>batch</code> configuration
+     * @throws IllegalArgumentException if the configuration is invalid
+     */
+    public Batch(LeoMap config) {
+        this.path = config.getString("path");
+        this.maxRequests = config.getInt("maxRequests");
+        this.maxBodySize = config.getByString("maxBodySize").asLong();
+        if(this.path == null || !this.path.startsWith("/") || this.maxRequests < 1) {
+            throw new IllegalArgumentException("Invalid batch configuration: " + config);
+        }
+
+        this.batches = new LongAdder();
+        this.requests = new LongAdder();
+    }
+
+    /**
+     * @return the path of the batch route
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * @param req
+     * @return true if the supplied request is a batch request
+     */
+    public boolean isBatch(HttpServletRequest req) {
+        return HttpMethod.POST.name().equals(req.getMethod()) && this.path.equals(req.getRequestURI());
+    }
+
+    /**
+     * Reads the sub-requests of the supplied batch request
+     *
+     * @param req the batch request
+     * @return the sub-requests
+     * @throws IOException
+     * @throws RequestBody.TooLargeException if the batch body exceeds the <code>maxBodySize</code>
+     * @throws IllegalArgumentException if the batch request is not a valid batch
+     */
+    List<HttpServletRequest> parse(HttpServletRequest req) throws IOException {
+        /* the body is bounded before it is parsed */
+        byte[] body = new RequestBody(req, this.maxBodySize).bytes();
+
+        JsonElement element = null;
+        try {
+            element = gson.fromJson(new String(body, StandardCharsets.UTF_8), JsonElement.class);
+        }
+        catch(JsonParseException e) {
+            throw new IllegalArgumentException("The batch is not valid JSON: " + e.getMessage());
+        }
+
+        if(element == null || !element.isJsonArray()) {
+            throw new IllegalArgumentException("The batch must be a JSON array of requests");
+        }
+
+        JsonArray array = element.getAsJsonArray();
+        if(array.size() > this.maxRequests) {
+            throw new IllegalArgumentException("The batch contains " + array.size() + " requests, at most " + this.maxRequests + " are allowed");
+        }
+
+        List<HttpServletRequest> subRequests = new ArrayList<HttpServletRequest>(array.size());
+        for(JsonElement subRequest : array) {
+            try {
+                subRequests.add(parseRequest(req, subRequest));
+            }
+            catch(IllegalStateException | UnsupportedOperationException | ClassCastException e) {
+                throw new IllegalArgumentException("A batched request has an invalid value: " + subRequest);
+            }
+        }
+
+        this.batches.increment();
+        this.requests.add(subRequests.size());
+        return subRequests;
+    }
+
+    private static HttpServletRequest parseRequest(HttpServletRequest req, JsonElement element) {
+        if(!element.isJsonObject() || !element.getAsJsonObject().has("path")) {
+            throw new IllegalArgumentException("A batched request must be an object with a 'path': " + element);
+        }
+
+        JsonObject subRequest = element.getAsJsonObject();
+        String path = subRequest.get("path").getAsString();
+        if(!path.startsWith("/")) {
+            throw new IllegalArgumentException("A batched request path must start with '/': " + path);
+        }
+
+        String method = subRequest.has("method") ? subRequest.get("method").getAsString().toUpperCase() : HttpMethod.GET.name();
+        if(HttpMethod.fromString(method) == null) {
+            throw new IllegalArgumentException("A batched request specifies an unknown method '" + method + "'");
+        }
+
+        Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        if(subRequest.has("headers") && subRequest.get("headers").isJsonObject()) {
+            for(Map.Entry<String, JsonElement> header : subRequest.getAsJsonObject("headers").entrySet()) {
+                headers.put(header.getKey(), header.getValue().getAsString());
+            }
+        }
+
+        byte[] body = new byte[0];
+        JsonElement bodyElement = subRequest.get("body");
+        if(bodyElement != null && !bodyElement.isJsonNull()) {
+            if(bodyElement.isJsonPrimitive() && bodyElement.getAsJsonPrimitive().isString()) {
+                body = bodyElement.getAsString().getBytes(StandardCharsets.UTF_8);
+                headers.putIfAbsent("Content-Type", "text/plain; charset=UTF-8");
+            }
+            else {
+                body = gson.toJson(bodyElement).getBytes(StandardCharsets.UTF_8);
+                headers.putIfAbsent("Content-Type", "application/json; charset=UTF-8");
+            }
+        }
+
+        return new BatchRequest(req, method, path, headers, body);
+    }
+
+    /**
+     * Writes the responses of the sub-requests as the response of the batch request
+     *
+     * @param resp the response of the batch request
+     * @param responses the responses of the sub-requests, in order; a sub-request that failed has a null response
+     * @throws IOException
+     */
+    void write(HttpServletResponse resp, List<BufferedResponse> responses) throws IOException {
+        JsonArray array = new JsonArray();
+        for(BufferedResponse response : responses) {
+            array.add(toJson(response));
+
+            if(response != null) {
+                response.getCookies().forEach(resp::addCookie);
+            }
+        }
+
+        byte[] body = gson.toJson(array).getBytes(StandardCharsets.UTF_8);
+
+        resp.setStatus(HttpStatus.OK.getStatusCode());
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.setContentLength(body.length);
+
+        OutputStream oStream = resp.getOutputStream();
+        oStream.write(body);
+        oStream.flush();
+    }
+
+    private static JsonObject toJson(BufferedResponse response) throws UnsupportedEncodingException {
+        JsonObject json = new JsonObject();
+        if(response == null) {
+            json.addProperty("status", HttpStatus.INTERNAL_SERVER_ERROR.getStatusCode());
+            json.add("headers", new JsonObject());
+            json.add("body", JsonNull.INSTANCE);
+            return json;
+        }
+
+        JsonObject headers = new JsonObject();
+        for(String name : response.getHeaderNames()) {
+            headers.addProperty(name, String.join(", ", response.getHeaders(name)));
+        }
+        if(response.getContentType() != null) {
+            headers.addProperty("Content-Type", response.getContentType());
+        }
+        if(response.getRedirect() != null) {
+            headers.addProperty("Location", response.getRedirect());
+        }
+
+        json.addProperty("status", response.getStatus());
+        json.add("headers", headers);
+        json.add("body", toJsonBody(response));
+        return json;
+    }
+
+    private static JsonElement toJsonBody(BufferedResponse response) throws UnsupportedEncodingException {
+        byte[] body = response.getBody();
+        if(body.length == 0) {
+            return JsonNull.INSTANCE;
+        }
+
+        String text = new String(body, response.getCharacterEncoding());
+        String contentType = response.getContentType();
+        if(contentType != null && contentType.contains("json")) {
+            try {
+                return gson.fromJson(text, JsonElement.class);
+            }
+            catch(JsonParseException e) {
+                /* not actually JSON, so send it as a string */
+            }
+        }
+
+        return new JsonPrimitive(text);
+    }
+
+    /**
+     * The statistics of the batch route:
+     *
+     * <ul>
+     *  <li><b>batches</b> - the number of batch requests served</li>
+     *  <li><b>requests</b> - the number of sub-requests they contained</li>
+     * </ul>
+     *
+     * @return the statistics
+     */
+    public LeoMap getStatistics() {
+        LeoMap stats = new LeoMap();
+        stats.putByString("batches", LeoLong.valueOf(this.batches.sum()));
+        stats.putByString("requests", LeoLong.valueOf(this.requests.sum()));
+        return stats;
+    }
+}
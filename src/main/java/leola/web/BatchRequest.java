@@ -0,0 +1,305 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.Part;
+
+/**
+ * A sub-request of a batch request (see {@link Batch}).  It has its own method, path, query, body, headers and attributes;
+ * everything else (i.e., the cookies, session and remote address) is that of the batch request.  A sub-request can not be
+ * put into asynchronous mode, and is never a <code>multipart/form-data</code> request.
+ *
+ * @author Tony
+ *
+ */
+class BatchRequest extends HttpServletRequestWrapper {
+
+    private final String method;
+    private final String requestURI;
+    private final String queryString;
+    private final byte[] body;
+
+    private final Map<String, String> headers;
+    private final Map<String, Object> attributes;
+    private Map<String, String[]> parameters;
+
+    /**
+     * @param request the batch request
+     * @param method the request method
+     * @param uri the request path, which may include a query; the path is canonicalized
+     * @param headers the headers that are added to, or replace, those of the batch request
+     * @param body the request body
+     */
+    BatchRequest(HttpServletRequest request, String method, String uri, Map<String, String> headers, byte[] body) {
+        super(request);
+
+        this.method = method;
+
+        /* the path is canonical, as is the path of any routed request (see RoutingTable#canonicalPath) */
+        int query = uri.indexOf('?');
+        this.requestURI = RoutingTable.canonicalPath((query > -1) ? uri.substring(0, query) : uri);
+        this.queryString = (query > -1) ? uri.substring(query + 1) : null;
+
+        this.headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        this.headers.putAll(headers);
+        this.headers.put("Content-Length", Integer.toString(body.length));
+
+        this.body = body;
+        this.attributes = new ConcurrentHashMap<String, Object>();
+    }
+
+    @Override
+    public String getMethod() {
+        return this.method;
+    }
+
+    @Override
+    public String getRequestURI() {
+        return this.requestURI;
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+        StringBuffer url = new StringBuffer(64);
+        url.append(getScheme()).append("://").append(getServerName()).append(':').append(getServerPort()).append(this.requestURI);
+        return url;
+    }
+
+    @Override
+    public String getServletPath() {
+        return "";
+    }
+
+    @Override
+    public String getPathInfo() {
+        String contextPath = getContextPath();
+        return (contextPath != null && this.requestURI.startsWith(contextPath))
+                ? this.requestURI.substring(contextPath.length())
+                : this.requestURI;
+    }
+
+    @Override
+    public String getQueryString() {
+        return this.queryString;
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = getParameterMap().get(name);
+        return (values != null && values.length > 0) ? values[0] : null;
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        return getParameterMap().get(name);
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(getParameterMap().keySet());
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        if(this.parameters == null) {
+            Map<String, List<String>> values = new LinkedHashMap<String, List<String>>();
+            if(this.queryString != null) {
+                for(String pair : this.queryString.split("&")) {
+                    if(pair.isEmpty()) {
+                        continue;
+                    }
+
+                    int equals = pair.indexOf('=');
+                    String name = decode((equals > -1) ? pair.substring(0, equals) : pair);
+                    String value = (equals > -1) ? decode(pair.substring(equals + 1)) : "";
+                    values.computeIfAbsent(name, k -> new ArrayList<String>(1)).add(value);
+                }
+            }
+
+            Map<String, String[]> parameters = new LinkedHashMap<String, String[]>();
+            values.forEach((name, list) -> parameters.put(name, list.toArray(new String[list.size()])));
+            this.parameters = Collections.unmodifiableMap(parameters);
+        }
+
+        return this.parameters;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        }
+        catch(UnsupportedEncodingException | IllegalArgumentException e) {
+            return value;
+        }
+    }
+
+    @Override
+    public String getHeader(String name) {
+        String value = this.headers.get(name);
+        return (value != null) ? value : super.getHeader(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        String value = this.headers.get(name);
+        return (value != null) ? Collections.enumeration(Collections.singletonList(value)) : super.getHeaders(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        Set<String> names = new LinkedHashSet<String>(this.headers.keySet());
+        Enumeration<String> parentNames = super.getHeaderNames();
+        while(parentNames != null && parentNames.hasMoreElements()) {
+            String name = parentNames.nextElement();
+            if(!this.headers.containsKey(name)) {
+                names.add(name);
+            }
+        }
+        return Collections.enumeration(names);
+    }
+
+    @Override
+    public int getIntHeader(String name) {
+        String value = getHeader(name);
+        return (value != null) ? Integer.parseInt(value) : -1;
+    }
+
+    @Override
+    public String getContentType() {
+        return this.headers.get("Content-Type");
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return StandardCharsets.UTF_8.name();
+    }
+
+    @Override
+    public int getContentLength() {
+        return this.body.length;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return this.body.length;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        final ByteArrayInputStream iStream = new ByteArrayInputStream(this.body);
+        return new ServletInputStream() {
+
+            @Override
+            public int read() throws IOException {
+                return iStream.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return iStream.read(b, off, len);
+            }
+
+            @Override
+            public boolean isFinished() {
+                return iStream.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+            }
+        };
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(this.body), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return this.attributes.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(this.attributes.keySet());
+    }
+
+    @Override
+    public void setAttribute(String name, Object o) {
+        if(o == null) {
+            this.attributes.remove(name);
+        }
+        else {
+            this.attributes.put(name, o);
+        }
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        this.attributes.remove(name);
+    }
+
+    @Override
+    public Collection<Part> getParts() throws IOException, ServletException {
+        throw new ServletException("A batched request is not a multipart request");
+    }
+
+    @Override
+    public Part getPart(String name) throws IOException, ServletException {
+        throw new ServletException("A batched request is not a multipart request");
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return false;
+    }
+
+    @Override
+    public boolean isAsyncStarted() {
+        return false;
+    }
+
+    @Override
+    public AsyncContext startAsync() throws IllegalStateException {
+        throw new IllegalStateException("A batched request can not be put into asynchronous mode");
+    }
+
+    @Override
+    public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse) throws IllegalStateException {
+        throw new IllegalStateException("A batched request can not be put into asynchronous mode");
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Records a response in memory, so that it may be written to any number of {@link HttpServletResponse}s.  This is used
+ * to fan out the response of a coalesced request to every request that waited on it (see {@link Coalescer}), and to
+ * collect the responses of the sub-requests of a batch request (see {@link Batch}).
+ *
+ * @author Tony
+ *
+ */
+class BufferedResponse extends HttpServletResponseWrapper {
+
+    private static final String DEFAULT_ENCODING = "ISO-8859-1";
+
+    private final Map<String, List<String>> headers;
+    private final List<Cookie> cookies;
+    private final ByteArrayOutputStream body;
+
+    private int status;
+    private String contentType;
+    private String characterEncoding;
+    private String redirect;
+
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    /**
+     * @param response the response being recorded for, which is only used to encode URLs
+     */
+    BufferedResponse(HttpServletResponse response) {
+        super(response);
+
+        this.headers = new LinkedHashMap<String, List<String>>();
+        this.cookies = new ArrayList<Cookie>();
+        this.body = new ByteArrayOutputStream();
+        this.status = SC_OK;
+    }
+
+    /**
+     * Writes the recorded response to the supplied {@link HttpServletResponse}
+     *
+     * @param resp
+     * @throws IOException
+     */
+    void writeTo(HttpServletResponse resp) throws IOException {
+        writeTo(resp, true);
+    }
+
+    /**
+     * Writes the recorded response to the supplied {@link HttpServletResponse}
+     *
+     * @param resp
+     * @param cookies if the recorded cookies (and <code>Set-Cookie</code> headers) are written, which should only be for the 
+     * client the response was recorded for
+     * @throws IOException
+     */
+    void writeTo(HttpServletResponse resp, boolean cookies) throws IOException {
+        if(this.writer != null) {
+            this.writer.flush();
+        }
+
+        this.headers.forEach((name, values) -> {
+            if(cookies || !isCookieHeader(name)) {
+                values.forEach(value -> resp.addHeader(name, value));
+            }
+        });
+
+        if(cookies) {
+            this.cookies.forEach(resp::addCookie);
+        }
+
+        if(this.contentType != null) {
+            resp.setContentType(this.contentType);
+        }
+        if(this.characterEncoding != null) {
+            resp.setCharacterEncoding(this.characterEncoding);
+        }
+        resp.setStatus(this.status);
+
+        if(this.redirect != null) {
+            resp.sendRedirect(this.redirect);
+            return;
+        }
+
+        resp.setContentLength(this.body.size());
+        if(this.body.size() > 0) {
+            ServletOutputStream oStream = resp.getOutputStream();
+            this.body.writeTo(oStream);
+            oStream.flush();
+        }
+    }
+
+    /**
+     * @param name
+     * @return true if the supplied header sets a cookie
+     */
+    private static boolean isCookieHeader(String name) {
+        return "Set-Cookie".equalsIgnoreCase(name) || "Set-Cookie2".equalsIgnoreCase(name);
+    }
+
+    /**
+     * @return the recorded body
+     */
+    byte[] getBody() {
+        if(this.writer != null) {
+            this.writer.flush();
+        }
+        return this.body.toByteArray();
+    }
+
+    /**
+     * @return the location the response redirects to, or null if it does not
+     */
+    String getRedirect() {
+        return this.redirect;
+    }
+
+    /**
+     * @return the recorded cookies
+     */
+    List<Cookie> getCookies() {
+        return Collections.unmodifiableList(this.cookies);
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        this.status = sc;
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void setStatus(int sc, String sm) {
+        this.status = sc;
+    }
+
+    @Override
+    public int getStatus() {
+        return this.status;
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        this.status = sc;
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        this.status = sc;
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        this.status = SC_FOUND;
+        this.redirect = location;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        List<String> values = new ArrayList<String>(1);
+        values.add(value);
+        this.headers.put(name, values);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        this.headers.computeIfAbsent(name, k -> new ArrayList<String>(1)).add(value);
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        setHeader(name, Integer.toString(value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        addHeader(name, Integer.toString(value));
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        setHeader(name, formatDate(date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        addHeader(name, formatDate(date));
+    }
+
+    private static String formatDate(long date) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(date).atZone(ZoneOffset.UTC));
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return this.headers.containsKey(name);
+    }
+
+    @Override
+    public String getHeader(String name) {
+        List<String> values = this.headers.get(name);
+        return (values != null && !values.isEmpty()) ? values.get(0) : null;
+    }
+
+    @Override
+    public Collection<String> getHeaders(String name) {
+        List<String> values = this.headers.get(name);
+        return (values != null) ? Collections.unmodifiableList(values) : Collections.<String>emptyList();
+    }
+
+    @Override
+    public Collection<String> getHeaderNames() {
+        return Collections.unmodifiableSet(this.headers.keySet());
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        this.cookies.add(cookie);
+    }
+
+    @Override
+    public void setContentType(String type) {
+        this.contentType = type;
+    }
+
+    @Override
+    public String getContentType() {
+        return this.contentType;
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        this.characterEncoding = charset;
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return (this.characterEncoding != null) ? this.characterEncoding : DEFAULT_ENCODING;
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        /* the length is that of the recorded body */
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        /* the length is that of the recorded body */
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if(this.outputStream == null) {
+            this.outputStream = new ServletOutputStream() {
+
+                @Override
+                public void write(int b) throws IOException {
+                    body.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    body.write(b, off, len);
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener writeListener) {
+                }
+            };
+        }
+        return this.outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws UnsupportedEncodingException {
+        if(this.writer == null) {
+            this.writer = new PrintWriter(new OutputStreamWriter(this.body, getCharacterEncoding()));
+        }
+        return this.writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if(this.writer != null) {
+            this.writer.flush();
+        }
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return false;
+    }
+
+    @Override
+    public void resetBuffer() {
+        if(this.writer != null) {
+            this.writer.flush();
+        }
+        this.body.reset();
+    }
+
+    @Override
+    public void reset() {
+        resetBuffer();
+        this.headers.clear();
+        this.cookies.clear();
+        this.status = SC_OK;
+        this.contentType = null;
+        this.characterEncoding = null;
+        this.redirect = null;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import java.util.Enumeration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+
+import leola.vm.types.LeoInteger;
+import leola.vm.types.LeoLong;
+import leola.vm.types.LeoMap;
+import leola.web.RoutingTable.Route;
+
+/**
+ * Coalesces identical, concurrent <code>GET</code> requests of the {@link Route}s configured with <code>coalesce</code>.  The first
+ * request leads a flight: its route function runs, and its response is recorded and written to every request that joined
+ * the flight while it was running.  Requests are identical if they have the same method, path, query and values of the selected
+ * headers (see {@link Route#getCoalesceHeaders()}).  A flight lands as soon as its response is recorded, so responses are never cached
+ * beyond the requests that were in flight.
+ *
+ * <p>
+ * The leading request writes its own response first, and the response is then written to each waiting request on an executor of
+ * the application, so that a slow client does not delay the leader or the other waiting requests.  The cookies the leading request
+ * sets are only written to the leading request.
+ *
+ * @author Tony
+ *
+ */
+public class Coalescer {
+
+    /**
+     * The {@link HttpServletRequest} attribute in which the {@link Flight} a request leads is stored
+     */
+    public static final String ATTRIBUTE = Flight.class.getName();
+
+    /**
+     * The identical requests waiting on the response of the leading request
+     */
+    public class Flight {
+        private final String key;
+        private final CompletableFuture<BufferedResponse> response;
+
+        Flight(String key) {
+            this.key = key;
+            this.response = new CompletableFuture<BufferedResponse>();
+        }
+
+        /**
+         * Records the response of the leading request, and writes it to the waiting requests
+         *
+         * @param buffered
+         */
+        void land(BufferedResponse buffered) {
+            inFlight.remove(this.key, this);
+            this.response.complete(buffered);
+        }
+
+        /**
+         * The leading request finished without a response; the waiting requests are notified
+         */
+        void abandon() {
+            inFlight.remove(this.key, this);
+            if(this.response.completeExceptionally(new IllegalStateException("The coalesced request did not respond: " + this.key))) {
+                abandoned.increment();
+            }
+        }
+
+        /**
+         * @param onLanded invoked with the response of the leading request
+         * @param onAbandoned invoked if the leading request finished without a response
+         * @param executor runs the supplied callbacks, rather than the thread of the leading request
+         */
+        void whenLanded(Consumer<BufferedResponse> onLanded, Runnable onAbandoned, Executor executor) {
+            this.response.whenCompleteAsync( (buffered, error) -> {
+                if(error != null) {
+                    onAbandoned.run();
+                }
+                else {
+                    onLanded.accept(buffered);
+                }
+            }, executor);
+        }
+    }
+
+    private final ConcurrentMap<String, Flight> inFlight;
+
+    private final LongAdder leaders;
+    private final LongAdder followers;
+    private final LongAdder abandoned;
+
+    public Coalescer() {
+        this.inFlight = new ConcurrentHashMap<String, Flight>();
+        this.leaders = new LongAdder();
+        this.followers = new LongAdder();
+        this.abandoned = new LongAdder();
+    }
+
+    /**
+     * @param route
+     * @param req
+     * @return true if the supplied request may be coalesced
+     */
+    public static boolean isCoalesced(Route route, HttpServletRequest req) {
+        return route.isCoalesced() && HttpMethod.GET.name().equals(req.getMethod());
+    }
+
+    /**
+     * Joins the flight of an identical request, or if there is none, makes the supplied request lead a new flight.
+     *
+     * @param route the matched {@link Route}
+     * @param req
+     * @return the {@link Flight} of the identical request to wait on, or empty if the supplied request leads a new flight
+     */
+    public Optional<Flight> join(Route route, HttpServletRequest req) {
+        Flight flight = new Flight(key(route, req));
+        Flight leading = this.inFlight.putIfAbsent(flight.key, flight);
+        if(leading != null) {
+            this.followers.increment();
+            return Optional.of(leading);
+        }
+
+        this.leaders.increment();
+        req.setAttribute(ATTRIBUTE, flight);
+        return Optional.empty();
+    }
+
+    /**
+     * @param req
+     * @return the {@link Flight} the supplied request leads, if any
+     */
+    public static Optional<Flight> getFlight(ServletRequest req) {
+        Object attribute = req.getAttribute(ATTRIBUTE);
+        return (attribute instanceof Flight) ? Optional.of((Flight)attribute) : Optional.empty();
+    }
+
+    /**
+     * Builds the key that identifies identical requests
+     *
+     * @param route
+     * @param req
+     * @return the key
+     */
+    private static String key(Route route, HttpServletRequest req) {
+        StringBuilder key = new StringBuilder(128);
+        key.append(req.getMethod()).append(' ').append(req.getRequestURI());
+
+        String query = req.getQueryString();
+        if(query != null) {
+            key.append('?').append(query);
+        }
+
+        for(String header : route.getCoalesceHeaders()) {
+            key.append('\n').append(header).append(':');
+
+            Enumeration<String> values = req.getHeaders(header);
+            while(values != null && values.hasMoreElements()) {
+                key.append(values.nextElement()).append(',');
+            }
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * The statistics of the coalesced requests:
+     *
+     * <ul>
+     *  <li><b>inFlight</b> - the number of flights currently running</li>
+     *  <li><b>leaders</b> - the number of requests that ran their route function</li>
+     *  <li><b>followers</b> - the number of requests that were answered with the response of a leader</li>
+     *  <li><b>abandoned</b> - the number of flights whose leader finished without a response</li>
+     * </ul>
+     *
+     * @return the statistics
+     */
+    public LeoMap getStatistics() {
+        LeoMap stats = new LeoMap();
+        stats.putByString("inFlight", LeoInteger.valueOf(this.inFlight.size()));
+        stats.putByString("leaders", LeoLong.valueOf(this.leaders.sum()));
+        stats.putByString("followers", LeoLong.valueOf(this.followers.sum()));
+        stats.putByString("abandoned", LeoLong.valueOf(this.abandoned.sum()));
+        return stats;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.ResourceHandler;
+import org.eclipse.jetty.util.resource.Resource;
+
+import leola.web.RoutingTable.Route;
+
+/**
+ * Responds to the requests that did not match a {@link Route}.  The fallbacks are tried in order, and only once the route lookup has
+ * failed, so a routed request does no fallback work at all:
+ *
+ * <ol>
+ *  <li>a 405 Method Not Allowed, if the request path is bound under a different request method</li>
+ *  <li>the static resource under the <code>resourceBase</code></li>
+ *  <li>the <code>spaFallback</code> file, for a page request of a single page application (i.e., <code>spaFallback -> "index.html"</code>)</li>
+ *  <li>the <code>notFoundHandler</code> of the {@link WebApp} that handles the request</li>
+ *  <li>the default 404 page, which is encoded once</li>
+ * </ol>
+ *
+ * The static resource and single page application fallbacks only serve requests received by the server, not the sub-requests
+ * of a {@link Batch}.
+ *
+ * @author Tony
+ *
+ */
+public class FallbackChain {
+
+    /**
+     * Default 404 page
+     */
+    private static final byte[] NOT_FOUND = WebApp.NOT_FOUND.getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * A fallback of the chain
+     */
+    private static interface Fallback {
+
+        /**
+         * @param req
+         * @param resp
+         * @return true if this fallback responded to the request
+         * @throws IOException
+         * @throws ServletException
+         */
+        boolean respond(HttpServletRequest req, HttpServletResponse resp) throws IOException, ServletException;
+    }
+
+    private final WebApp webapp;
+    private final List<Fallback> fallbacks;
+
+    /**
+     * @param webapp the root {@link WebApp}
+     * @param resources serves the static resources, or null if there are none
+     */
+    public FallbackChain(WebApp webapp, ResourceHandler resources) {
+        this.webapp = webapp;
+
+        List<Fallback> fallbacks = new ArrayList<Fallback>();
+        fallbacks.add(this::methodNotAllowed);
+
+        if(resources != null) {
+            fallbacks.add( (req, resp) -> staticResource(resources, req, resp));
+
+            String spaFallback = webapp.config().getString("spaFallback");
+            if(spaFallback != null && !spaFallback.isEmpty()) {
+                String path = spaFallback.startsWith("/") ? spaFallback : "/" + spaFallback;
+                fallbacks.add( (req, resp) -> spaFallback(resources, path, req, resp));
+            }
+        }
+
+        fallbacks.add(this::notFoundHandler);
+        this.fallbacks = Collections.unmodifiableList(fallbacks);
+    }
+
+    /**
+     * Responds to a request that did not match a {@link Route}, with the first fallback that applies
+     *
+     * @param req
+     * @param resp
+     * @throws IOException
+     * @throws ServletException
+     */
+    public void respond(HttpServletRequest req, HttpServletResponse resp) throws IOException, ServletException {
+        for(Fallback fallback : this.fallbacks) {
+            if(fallback.respond(req, resp)) {
+                return;
+            }
+        }
+
+        writeNotFound(resp);
+    }
+
+    private boolean methodNotAllowed(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        Object attribute = req.getAttribute(RouteMatch.ATTRIBUTE);
+        if(attribute instanceof RouteMatch) {
+            Optional<String> allow = ((RouteMatch)attribute).getAllowedMethods();
+            if(allow.isPresent()) {
+                WebApp app = this.webapp.getRequestApp(req);
+                app.handle405(allow.get()).packageResponse(app, resp);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param req
+     * @return the request as received by the server, or empty if the request is a wrapped (i.e., batched) request
+     */
+    private static Optional<Request> getBaseRequest(HttpServletRequest req) {
+        Request baseRequest = Request.getBaseRequest(req);
+        return (baseRequest == req) ? Optional.of(baseRequest) : Optional.empty();
+    }
+
+    private static boolean staticResource(ResourceHandler resources, HttpServletRequest req, HttpServletResponse resp) throws IOException, ServletException {
+        Optional<Request> baseRequest = getBaseRequest(req);
+        if(!baseRequest.isPresent()) {
+            return false;
+        }
+
+        resources.handle(req.getPathInfo(), baseRequest.get(), req, resp);
+        return baseRequest.get().isHandled();
+    }
+
+    private static boolean spaFallback(ResourceHandler resources, String path, HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        boolean head = HttpMethod.HEAD.name().equals(req.getMethod());
+        if(!head && !HttpMethod.GET.name().equals(req.getMethod())) {
+            return false;
+        }
+
+        /* only page requests, not those of scripts, images, etc. */
+        String accept = req.getHeader("Accept");
+        if(accept == null || !accept.contains("text/html") || !getBaseRequest(req).isPresent()) {
+            return false;
+        }
+
+        Resource resource = resources.getResource(path);
+        if(resource == null || !resource.exists() || resource.isDirectory()) {
+            return false;
+        }
+
+        String mimeType = resources.getMimeTypes().getMimeByExtension(path);
+
+        resp.setStatus(HttpStatus.OK.getStatusCode());
+        resp.setContentType((mimeType != null) ? mimeType : "text/html");
+        resp.setContentLengthLong(resource.length());
+        if(!head) {
+            resource.writeTo(resp.getOutputStream(), 0, -1);
+        }
+        return true;
+    }
+
+    private boolean notFoundHandler(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        WebApp app = this.webapp.getRequestApp(req);
+        Optional<WebResponse> response = app.handleNotFound(req, resp);
+        if(response.isPresent()) {
+            response.get().packageResponse(app, resp);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Writes the default 404 page
+     *
+     * @param resp
+     * @throws IOException
+     */
+    static void writeNotFound(HttpServletResponse resp) throws IOException {
+        resp.setStatus(HttpStatus.NOT_FOUND.getStatusCode());
+        resp.setContentType("text/html");
+        resp.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        resp.setContentLength(NOT_FOUND.length);
+
+        OutputStream oStream = resp.getOutputStream();
+        oStream.write(NOT_FOUND);
+        oStream.flush();
+    }
+}
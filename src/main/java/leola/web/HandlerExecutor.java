@@ -0,0 +1,208 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.http.HttpServletResponse;
+
+import leola.vm.types.LeoInteger;
+import leola.vm.types.LeoLong;
+import leola.vm.types.LeoMap;
+
+/**
+ * Runs the route functions of a {@link WebApp} on a bounded pool of threads, with admission control.  At most <b>maxConcurrent</b> route
+ * functions run at once and at most <b>maxQueue</b> requests wait for a thread; beyond that, requests are rejected immediately with a
+ * <code>503 Service Unavailable</code> and a <code>Retry-After</code> header rather than queueing until the client gives up.  A request
+ * that waited longer than <b>queueTimeoutMs</b> for a thread is rejected the same way instead of being run.
+ *
+ * <p>
+ * The configuration is:
+ * <pre>
+ *   handlers -> {
+ *      maxConcurrent -> 200, // the number of route functions that may run at once
+ *      maxQueue -> 100, // the number of requests that may wait for a thread, 0 to never queue
+ *      queueTimeoutMs -> 1000, // the number of milliseconds a request may wait for a thread, 0 to wait indefinitely
+ *      retryAfter -> 1, // the value, in seconds, of the Retry-After header of rejected requests
+ *   }
+ * </pre>
+ *
+ * @author Tony
+ *
+ */
+public class HandlerExecutor {
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    private final long queueTimeoutNanos;
+
+    /**
+     * The 503 response, which is encoded once as it is sent when the server is already overloaded
+     */
+    private final String retryAfter;
+    private final byte[] overloadedBody;
+
+    private final LongAdder accepted;
+    private final LongAdder rejected;
+    private final LongAdder expired;
+
+    /**
+     * @param name the name of the executor, used to name its threads
+     * @param config the <code>handlers</code> configuration
+     */
+    public HandlerExecutor(String name, LeoMap config) {
+        this(name, config, new ThreadFactory() {
+            private final AtomicInteger id = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + id.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @param name the name of the executor
+     * @param config the <code>handlers</code> configuration
+     * @param threadFactory creates the threads that run the route functions
+     */
+    public HandlerExecutor(String name, LeoMap config, ThreadFactory threadFactory) {
+        this.name = name;
+
+        int maxConcurrent = config.getInt("maxConcurrent");
+        int maxQueue = config.getInt("maxQueue");
+        if(maxConcurrent < 1 || maxQueue < 0) {
+            throw new IllegalArgumentException("Invalid handlers configuration: " + config);
+        }
+
+        BlockingQueue<Runnable> queue = (maxQueue > 0)
+                ? new ArrayBlockingQueue<Runnable>(maxQueue)
+                : new SynchronousQueue<Runnable>();
+
+        this.executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS, queue, threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getByString("queueTimeoutMs").asLong());
+
+        this.retryAfter = config.getString("retryAfter");
+        this.overloadedBody = HttpStatus.SERVICE_UNAVAILABLE.getText().getBytes(StandardCharsets.UTF_8);
+
+        this.accepted = new LongAdder();
+        this.rejected = new LongAdder();
+        this.expired = new LongAdder();
+    }
+
+    /**
+     * @return the name of this executor
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Attempts to run the supplied task.  If the task waits longer than the queue timeout before a thread is free,
+     * the supplied expired task is run in its place.
+     *
+     * @param task the task to run
+     * @param onExpired run in place of the task if it waited too long in the queue
+     * @return true if the task was accepted, false if the executor is at capacity and the request should be rejected
+     */
+    public boolean execute(Runnable task, Runnable onExpired) {
+        final long enqueued = System.nanoTime();
+        try {
+            this.executor.execute(() -> {
+                if(this.queueTimeoutNanos > 0 && System.nanoTime() - enqueued > this.queueTimeoutNanos) {
+                    this.expired.increment();
+                    onExpired.run();
+                }
+                else {
+                    task.run();
+                }
+            });
+
+            this.accepted.increment();
+            return true;
+        }
+        catch(RejectedExecutionException e) {
+            this.rejected.increment();
+            return false;
+        }
+    }
+
+    /**
+     * An {@link Executor} view of this executor, for the work a route function hands off (see {@link WebLeolaLibrary#async(leola.vm.types.LeoObject)}).
+     * The work is run even if it waited longer than the queue timeout, as its request was already admitted.
+     *
+     * @return the {@link Executor}, which throws a {@link RejectedExecutionException} if this executor is at capacity
+     */
+    public Executor asExecutor() {
+        return task -> {
+            if(!execute(task, task)) {
+                throw new RejectedExecutionException("The '" + this.name + "' executor is at capacity");
+            }
+        };
+    }
+
+    /**
+     * Writes the <code>503 Service Unavailable</code> response for a request that was not admitted
+     *
+     * @param resp
+     * @throws IOException
+     */
+    public void writeOverloaded(HttpServletResponse resp) throws IOException {
+        resp.setStatus(HttpStatus.SERVICE_UNAVAILABLE.getStatusCode());
+        resp.setHeader("Retry-After", this.retryAfter);
+        resp.setContentType("text/plain");
+        resp.setContentLength(this.overloadedBody.length);
+
+        OutputStream oStream = resp.getOutputStream();
+        oStream.write(this.overloadedBody);
+        oStream.flush();
+    }
+
+    /**
+     * The statistics of this executor:
+     *
+     * <ul>
+     *  <li><b>active</b> - the number of route functions currently running</li>
+     *  <li><b>queued</b> - the number of requests waiting for a thread</li>
+     *  <li><b>accepted</b> - the number of requests admitted</li>
+     *  <li><b>rejected</b> - the number of requests rejected because the executor was at capacity</li>
+     *  <li><b>expired</b> - the number of admitted requests rejected because they waited too long for a thread</li>
+     * </ul>
+     *
+     * @return the statistics
+     */
+    public LeoMap getStatistics() {
+        LeoMap stats = new LeoMap();
+        stats.putByString("active", LeoInteger.valueOf(this.executor.getActiveCount()));
+        stats.putByString("queued", LeoInteger.valueOf(this.executor.getQueue().size()));
+        stats.putByString("accepted", LeoLong.valueOf(this.accepted.sum()));
+        stats.putByString("rejected", LeoLong.valueOf(this.rejected.sum()));
+        stats.putByString("expired", LeoLong.valueOf(this.expired.sum()));
+        return stats;
+    }
+
+    /**
+     * Stops accepting requests; the route functions already admitted are allowed to finish
+     */
+    public void shutdown() {
+        this.executor.shutdown();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+/**
+ * HTTP request methods
+ *
+ * @author Tony
+ *
+ */
+public enum HttpMethod {
+
+    GET,
+    HEAD,
+    POST,
+    PUT,
+    DELETE,
+    OPTIONS,
+    TRACE,
+    PATCH,
+    CONNECT,
+
+    ;
+
+    /**
+     * All of the values, so that we do not copy the array on every lookup
+     */
+    private static final HttpMethod[] VALUES = values();
+
+    /**
+     * @return the bit that represents this method in a method mask
+     */
+    public int mask() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * @param ordinal
+     * @return the {@link HttpMethod} at the supplied ordinal
+     */
+    public static HttpMethod fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    /**
+     * Converts the supplied request method into the {@link HttpMethod}.  The common case of an upper case
+     * method name does not allocate.
+     *
+     * @param method the request method (i.e., "GET")
+     * @return the {@link HttpMethod} or null if the method is not a known HTTP method
+     */
+    public static HttpMethod fromString(String method) {
+        if(method == null) {
+            return null;
+        }
+
+        for(int i = 0; i < VALUES.length; i++) {
+            if(VALUES[i].name().equals(method)) {
+                return VALUES[i];
+            }
+        }
+
+        for(int i = 0; i < VALUES.length; i++) {
+            if(VALUES[i].name().equalsIgnoreCase(method)) {
+                return VALUES[i];
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import leola.vm.exceptions.LeolaRuntimeException;
+import leola.vm.lib.LeolaIgnore;
+import leola.vm.lib.LeolaMethod;
+import leola.vm.types.LeoNativeClass;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoUserFunction;
+
+/**
+ * The precomputed bindings of the web API that scripts call on every request, that is the methods of {@link RequestContext},
+ * {@link WebResponse}, {@link WebSession} and {@link WebSocketSession}.  The bindings are built once, when this class is loaded,
+ * from a {@link MethodHandle} and the argument conversions of each method.  A script call then finds its method with a map lookup
+ * and invokes the handle, rather than resolving and invoking the method by reflection as Leola does for other native classes.
+ *
+ * <p>
+ * A member that is not bound falls back to Leola's native class dispatch; that is a field, a method marked with {@link LeolaIgnore}
+ * or {@link LeolaMethod}, a variable arity method, or overloads that have the same number of parameters.
+ *
+ * @author Tony
+ *
+ */
+public class NativeBindings {
+
+    /**
+     * The bound classes, and the bindings of their methods by name
+     */
+    private static final Map<Class<?>, Map<String, Binding>> BINDINGS = new HashMap<Class<?>, Map<String, Binding>>();
+    static {
+        for(Class<?> type : new Class<?>[] { RequestContext.class, WebResponse.class, WebSession.class, WebSocketSession.class }) {
+            BINDINGS.put(type, bind(type));
+        }
+    }
+
+    /**
+     * Converts a script argument into the parameter type of a method
+     */
+    private static interface Converter {
+        Object convert(LeoObject arg);
+    }
+
+    /**
+     * A method with its arguments spread, and their conversions
+     */
+    private static class Invoker {
+        final MethodHandle handle;
+        final Converter[] converters;
+
+        Invoker(MethodHandle handle, Converter[] converters) {
+            this.handle = handle;
+            this.converters = converters;
+        }
+
+        Object invoke(Object instance, LeoObject[] args) {
+            Object[] arguments = new Object[this.converters.length];
+            for(int i = 0; i < arguments.length; i++) {
+                arguments[i] = this.converters[i].convert(args[i]);
+            }
+
+            try {
+                return (Object)this.handle.invokeExact(instance, arguments);
+            }
+            catch(RuntimeException | Error e) {
+                throw e;
+            }
+            catch(Throwable e) {
+                throw new LeolaRuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * The overloads of a method, by their number of parameters
+     */
+    private static class Binding {
+        final String name;
+        final Invoker[] invokers;
+
+        Binding(String name, Invoker[] invokers) {
+            this.name = name;
+            this.invokers = invokers;
+        }
+
+        /**
+         * @param numberOfArgs
+         * @return the overload taking the supplied number of arguments, or null if there is none
+         */
+        Invoker getInvoker(int numberOfArgs) {
+            return (numberOfArgs < this.invokers.length) ? this.invokers[numberOfArgs] : null;
+        }
+    }
+
+    /**
+     * An instance of a bound class, as seen by a script
+     */
+    private static class BoundObject extends LeoNativeClass {
+        final Map<String, Binding> bindings;
+
+        BoundObject(Object instance, Map<String, Binding> bindings) {
+            super(instance);
+            this.bindings = bindings;
+        }
+
+        @Override
+        public LeoObject getObject(LeoObject key) {
+            Binding binding = this.bindings.get(key.toString());
+            return (binding != null) ? new BoundMethod(this, binding) : super.getObject(key);
+        }
+
+        @Override
+        public LeoObject xgetObject(LeoObject key) {
+            Binding binding = this.bindings.get(key.toString());
+            return (binding != null) ? new BoundMethod(this, binding) : super.xgetObject(key);
+        }
+
+        /**
+         * @param name
+         * @return the member as resolved by Leola's native class dispatch
+         */
+        LeoObject getNativeMember(String name) {
+            return super.xgetObject(LeoObject.valueOf(name));
+        }
+    }
+
+    /**
+     * A bound method of an instance
+     */
+    private static class BoundMethod extends LeoUserFunction {
+        final BoundObject owner;
+        final Binding binding;
+
+        BoundMethod(BoundObject owner, Binding binding) {
+            this.owner = owner;
+            this.binding = binding;
+        }
+
+        @Override
+        public LeoObject call(LeoObject[] args) {
+            Invoker invoker = this.binding.getInvoker(args.length);
+            if(invoker == null) {
+                return this.owner.getNativeMember(this.binding.name).call(args);
+            }
+
+            Object instance = this.owner.getInstance();
+            Object result = invoker.invoke(instance, args);
+
+            /* chained calls (i.e., web:ok().header(..).json(..)) keep the same binding */
+            return (result == instance) ? this.owner : valueOf(result);
+        }
+    }
+
+    private static Map<String, Binding> bind(Class<?> type) {
+        Map<String, List<Method>> methods = new HashMap<String, List<Method>>();
+        for(Method method : type.getMethods()) {
+            if(method.getDeclaringClass() != Object.class && !Modifier.isStatic(method.getModifiers()) && !method.isBridge()) {
+                methods.computeIfAbsent(method.getName(), name -> new ArrayList<Method>()).add(method);
+            }
+        }
+
+        Map<String, Binding> bindings = new HashMap<String, Binding>();
+        methods.forEach( (name, overloads) -> bind(name, overloads).ifPresent(binding -> bindings.put(name, binding)));
+        return Collections.unmodifiableMap(bindings);
+    }
+
+    private static Optional<Binding> bind(String name, List<Method> overloads) {
+        int maxParameters = 0;
+        for(Method method : overloads) {
+            if(method.isVarArgs() || method.isAnnotationPresent(LeolaIgnore.class) || method.isAnnotationPresent(LeolaMethod.class)) {
+                return Optional.empty();
+            }
+            maxParameters = Math.max(maxParameters, method.getParameterCount());
+        }
+
+        Invoker[] invokers = new Invoker[maxParameters + 1];
+        for(Method method : overloads) {
+            Optional<Invoker> invoker = newInvoker(method);
+            if(!invoker.isPresent() || invokers[method.getParameterCount()] != null) {
+                return Optional.empty();
+            }
+            invokers[method.getParameterCount()] = invoker.get();
+        }
+
+        return Optional.of(new Binding(name, invokers));
+    }
+
+    private static Optional<Invoker> newInvoker(Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        Converter[] converters = new Converter[parameterTypes.length];
+        for(int i = 0; i < parameterTypes.length; i++) {
+            Optional<Converter> converter = newConverter(parameterTypes[i]);
+            if(!converter.isPresent()) {
+                return Optional.empty();
+            }
+            converters[i] = converter.get();
+        }
+
+        try {
+            MethodHandle handle = MethodHandles.publicLookup().unreflect(method)
+                    .asType(MethodType.genericMethodType(1 + parameterTypes.length))
+                    .asSpreader(Object[].class, parameterTypes.length);
+            return Optional.of(new Invoker(handle, converters));
+        }
+        catch(IllegalAccessException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Optional<Converter> newConverter(Class<?> type) {
+        if(type == LeoObject.class) {
+            return Optional.of(arg -> arg);
+        }
+        if(LeoObject.class.isAssignableFrom(type)) {
+            return Optional.of(arg -> LeoObject.isNull(arg) ? null : arg);
+        }
+        if(type == String.class) {
+            return Optional.of(arg -> LeoObject.isNull(arg) ? null : arg.toString());
+        }
+        if(type == int.class) {
+            return Optional.of(arg -> arg.asInt());
+        }
+        if(type == long.class) {
+            return Optional.of(arg -> arg.asLong());
+        }
+        if(type == double.class) {
+            return Optional.of(arg -> arg.asDouble());
+        }
+        if(type == boolean.class) {
+            return Optional.of(arg -> LeoObject.isTrue(arg));
+        }
+        if(type == Integer.class) {
+            return Optional.of(arg -> LeoObject.isNull(arg) ? null : arg.asInt());
+        }
+        if(type == Long.class) {
+            return Optional.of(arg -> LeoObject.isNull(arg) ? null : arg.asLong());
+        }
+        if(type == Double.class) {
+            return Optional.of(arg -> LeoObject.isNull(arg) ? null : arg.asDouble());
+        }
+        if(type == Boolean.class) {
+            return Optional.of(arg -> LeoObject.isNull(arg) ? null : arg.isTrue());
+        }
+        if(type.isPrimitive()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(arg -> LeoObject.isNull(arg) ? null : arg.getValue(type));
+    }
+
+    /**
+     * @param type
+     * @return the names of the bound methods of the supplied class, empty if it is not a bound class
+     */
+    public static Set<String> getBoundMethods(Class<?> type) {
+        Map<String, Binding> bindings = BINDINGS.get(type);
+        return (bindings != null) ? bindings.keySet() : Collections.emptySet();
+    }
+
+    /**
+     * Converts the supplied value for a script.  An instance of a bound class calls its methods through its bindings.
+     *
+     * @param value
+     * @return the {@link LeoObject}
+     */
+    public static LeoObject valueOf(Object value) {
+        if(value != null) {
+            Map<String, Binding> bindings = BINDINGS.get(value.getClass());
+            if(bindings != null) {
+                return new BoundObject(value, bindings);
+            }
+        }
+
+        return LeoObject.valueOf(value);
+    }
+}
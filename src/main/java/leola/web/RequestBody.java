@@ -0,0 +1,210 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.servlet.http.HttpServletRequest;
+
+import leola.vm.types.LeoObject;
+
+/**
+ * The body of a request, which is read at most once and then kept, along with its text and JSON forms, so that the filters and
+ * the route function of a request may each read it.  A body of known length is read directly into an array of that length; one
+ * of unknown length (i.e., a chunked request) is read into pooled buffers and copied out once complete.  The pool keeps at most
+ * {@link #MAX_POOLED_CHUNKS} buffers, any others are left to the garbage collector, so a large body does not stay pinned in the 
+ * pool once it has been read.
+ *
+ * @author Tony
+ *
+ */
+class RequestBody {
+
+    /**
+     * Thrown when a body exceeds the <code>maxBodySize</code> of its route
+     */
+    static class TooLargeException extends IOException {
+        private static final long serialVersionUID = -3189402372157610457L;
+
+        TooLargeException(long maxBodySize) {
+            super("The request body exceeds the maximum size of " + maxBodySize + " bytes");
+        }
+    }
+
+    private static final int CHUNK_SIZE = 8 * 1024;
+
+    /**
+     * The maximum number of buffers kept in the pool
+     */
+    static final int MAX_POOLED_CHUNKS = 64;
+
+    private static final BlockingQueue<ByteBuffer> bufferPool = new ArrayBlockingQueue<ByteBuffer>(MAX_POOLED_CHUNKS);
+
+    private final HttpServletRequest request;
+    private final long maxBodySize;
+
+    private byte[] bytes;
+    private IOException failure;
+    private String text;
+    private LeoObject json;
+
+    /**
+     * @param request
+     * @param maxBodySize the maximum number of bytes of the body, or a negative number for no limit
+     */
+    RequestBody(HttpServletRequest request, long maxBodySize) {
+        this.request = request;
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * @return true if the body was found to exceed the <code>maxBodySize</code>
+     */
+    boolean isTooLarge() {
+        return this.failure instanceof TooLargeException;
+    }
+
+    /**
+     * @return the body
+     * @throws IOException if the body could not be read, or exceeds the <code>maxBodySize</code>
+     */
+    byte[] bytes() throws IOException {
+        if(this.failure != null) {
+            throw this.failure;
+        }
+
+        if(this.bytes == null) {
+            try {
+                this.bytes = read();
+            }
+            catch(IOException e) {
+                this.failure = e;
+                throw e;
+            }
+        }
+
+        return this.bytes;
+    }
+
+    /**
+     * @param encoding
+     * @return the body as text
+     * @throws IOException
+     */
+    String text(String encoding) throws IOException {
+        if(this.text == null) {
+            this.text = new String(bytes(), encoding);
+        }
+
+        return this.text;
+    }
+
+    /**
+     * @param encoding
+     * @return the body parsed as JSON
+     * @throws IOException
+     */
+    LeoObject json(String encoding) throws IOException {
+        if(this.json == null) {
+            this.json = WebLeolaLibrary.fromJson(text(encoding));
+        }
+
+        return this.json;
+    }
+
+    private byte[] read() throws IOException {
+        /* the body is kept in an array, which bounds it even without a limit */
+        long limit = (this.maxBodySize > -1) ? Math.min(this.maxBodySize, Integer.MAX_VALUE - 8) : Integer.MAX_VALUE - 8;
+
+        long contentLength = this.request.getContentLengthLong();
+        if(contentLength > limit) {
+            throw new TooLargeException(limit);
+        }
+
+        InputStream iStream = this.request.getInputStream();
+        if(contentLength > -1) {
+            byte[] body = new byte[(int)contentLength];
+            int length = 0;
+            while(length < body.length) {
+                int bytesRead = iStream.read(body, length, body.length - length);
+                if(bytesRead < 0) {
+                    throw new IOException("The request body ended after " + length + " of " + contentLength + " bytes");
+                }
+                length += bytesRead;
+            }
+            return body;
+        }
+
+        List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+        try {
+            long length = 0;
+            int bytesRead = 0;
+            while(bytesRead > -1) {
+                ByteBuffer chunk = acquire();
+                chunks.add(chunk);
+
+                byte[] array = chunk.array();
+                int offset = chunk.arrayOffset();
+                int capacity = chunk.capacity();
+                int position = 0;
+                while(position < capacity && (bytesRead = iStream.read(array, offset + position, capacity - position)) > -1) {
+                    position += bytesRead;
+                }
+                chunk.limit(position);
+
+                length += position;
+                if(length > limit) {
+                    throw new TooLargeException(limit);
+                }
+            }
+
+            /* each chunk is let go of once copied, so that the body is not held twice over */
+            byte[] body = new byte[(int)length];
+            int offset = 0;
+            for(int i = 0; i < chunks.size(); i++) {
+                ByteBuffer chunk = chunks.set(i, null);
+                System.arraycopy(chunk.array(), chunk.arrayOffset(), body, offset, chunk.limit());
+                offset += chunk.limit();
+                release(chunk);
+            }
+            return body;
+        }
+        finally {
+            chunks.forEach(RequestBody::release);
+        }
+    }
+
+    /**
+     * @return a buffer from the pool, or a new buffer if the pool is empty
+     */
+    private static ByteBuffer acquire() {
+        ByteBuffer chunk = bufferPool.poll();
+        return (chunk != null) ? chunk : ByteBuffer.allocate(CHUNK_SIZE);
+    }
+
+    /**
+     * Returns the buffer to the pool, unless the pool is full
+     *
+     * @param chunk the buffer, or null if it was already returned
+     */
+    private static void release(ByteBuffer chunk) {
+        if(chunk != null) {
+            chunk.clear();
+            bufferPool.offer(chunk);
+        }
+    }
+
+    /**
+     * @return the number of buffers in the pool
+     */
+    static int getPooledChunks() {
+        return bufferPool.size();
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.servlet.http.HttpServletRequest;
+
+import leola.vm.types.LeoMap;
+import leola.vm.types.LeoString;
+import leola.web.RoutingTable.Route;
+
+/**
+ * The result of resolving a request against the {@link RoutingTable}.  This contains the matched {@link Route} and the path
+ * variable values that were captured while matching.  A {@link RouteMatch} is produced once per request and is stored
+ * on the {@link HttpServletRequest}, so that the {@link WebFilter}s, the {@link WebServlet} and the {@link RequestContext} all
+ * share the same result.
+ *
+ * @author Tony
+ *
+ */
+public class RouteMatch {
+
+    /**
+     * The {@link HttpServletRequest} attribute in which the {@link RouteMatch} is stored
+     */
+    public static final String ATTRIBUTE = RouteMatch.class.getName();
+
+    private final Route route;
+    private final String method;
+    private final String path;
+    private final String[] values;
+    private final String allowedMethods;
+    private final WebApp app;
+
+    private LeoMap pathParams;
+
+    /**
+     * @param route the matched {@link Route}, or null if no {@link Route} matched
+     * @param method the request method
+     * @param path the request path
+     * @param values the captured path variable values, in order of the {@link UriTemplate#getVariableNames()}
+     */
+    public RouteMatch(Route route, String method, String path, String[] values) {
+        this(route, method, path, values, null, null);
+    }
+
+    /**
+     * @param route the matched {@link Route}, or null if no {@link Route} matched
+     * @param method the request method
+     * @param path the request path
+     * @param values the captured path variable values, in order of the {@link UriTemplate#getVariableNames()}
+     * @param allowedMethods the <code>Allow</code> header value, if the path is bound under other methods
+     * @param app the mounted {@link WebApp} that resolved the request, or null
+     */
+    private RouteMatch(Route route, String method, String path, String[] values, String allowedMethods, WebApp app) {
+        this.route = route;
+        this.method = method;
+        this.path = path;
+        this.values = values;
+        this.allowedMethods = allowedMethods;
+        this.app = app;
+    }
+
+    /**
+     * Creates a {@link RouteMatch} that denotes no {@link Route} matched the request
+     *
+     * @param method the request method
+     * @param path the request path
+     * @param allowedMethods the <code>Allow</code> header value if the path is bound under other methods, otherwise null
+     * @return the {@link RouteMatch}
+     */
+    public static RouteMatch noMatch(String method, String path, String allowedMethods) {
+        return new RouteMatch(null, method, path, new String[0], allowedMethods, null);
+    }
+    
+    /**
+     * Creates a copy of this {@link RouteMatch} for a request that was delegated to a mounted {@link WebApp}.  If this match
+     * was already resolved by a more deeply mounted {@link WebApp}, that one is kept.
+     * 
+     * @param app the mounted {@link WebApp}
+     * @param path the full request path, including the mount prefix
+     * @return the {@link RouteMatch} for the full request path
+     */
+    public RouteMatch mountedAt(WebApp app, String path) {
+        return new RouteMatch(this.route, this.method, path, this.values, this.allowedMethods, (this.app != null) ? this.app : app);
+    }
+
+    /**
+     * @return true if a {@link Route} matched the request
+     */
+    public boolean isMatched() {
+        return this.route != null;
+    }
+
+    /**
+     * @return the matched {@link Route}
+     */
+    public Route getRoute() {
+        return this.route;
+    }
+
+    /**
+     * If no {@link Route} matched the request method, but the request path is bound under other methods, this contains
+     * the <code>Allow</code> header value for the path.  The value is computed when the {@link Route}s are added to the {@link RoutingTable}.
+     *
+     * @return the <code>Allow</code> header value if the path exists under other methods
+     */
+    public Optional<String> getAllowedMethods() {
+        return Optional.ofNullable(this.allowedMethods);
+    }
+
+    /**
+     * @return the mounted {@link WebApp} that resolved the request, if the request path is under a mount
+     */
+    public Optional<WebApp> getApp() {
+        return Optional.ofNullable(this.app);
+    }
+    
+    /**
+     * @return the request method this match was resolved for
+     */
+    public String getMethod() {
+        return this.method;
+    }
+
+    /**
+     * @return the canonical request path this match was resolved for (see {@link RoutingTable#canonicalPath(String)}), which 
+     * is the path that anything inspecting the path of the routed request must use
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * Determines if this {@link RouteMatch} was resolved for the supplied method and path.
+     *
+     * @param method
+     * @param path
+     * @return true if this match is for the supplied request method and path
+     */
+    public boolean isFor(String method, String path) {
+        return this.method.equals(method) && this.path.equals(path);
+    }
+
+    /**
+     * The captured path parameters
+     *
+     * @return the key/value pair where the key is the name of the variable name, and the value is what was
+     * in place in the request path
+     */
+    public Map<String, String> getParameters() {
+        if(this.route == null) {
+            return Collections.emptyMap();
+        }
+
+        List<String> names = this.route.getUriTemplate().getVariableNames();
+        Map<String, String> result = new LinkedHashMap<String, String>(names.size());
+        for(int i = 0; i < this.values.length && i < names.size(); i++) {
+            result.put(names.get(i), this.values[i]);
+        }
+        return result;
+    }
+
+    /**
+     * The captured path parameters, built directly as a {@link LeoMap}.
+     *
+     * @return the path parameters in the format of: pathVariableName -> Value
+     */
+    public LeoMap getPathParams() {
+        if(this.pathParams == null) {
+            LeoMap params = new LeoMap();
+            if(this.route != null) {
+                List<String> names = this.route.getUriTemplate().getVariableNames();
+                for(int i = 0; i < this.values.length && i < names.size(); i++) {
+                    params.putByString(names.get(i), LeoString.valueOf(this.values[i]));
+                }
+            }
+            this.pathParams = params;
+        }
+
+        return this.pathParams;
+    }
+}
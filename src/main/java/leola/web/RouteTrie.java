@@ -0,0 +1,718 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import leola.web.RoutingTable.Route;
+
+/**
+ * A segment based trie of {@link Route}s.  Each node in the trie represents a single path segment of a {@link UriTemplate}, which
+ * is one of:
+ *
+ * <ul>
+ *  <li>a static segment (i.e., <code>/users</code>)</li>
+ *  <li>a path variable (i.e., <code>/{userid}</code>)</li>
+ *  <li>a path variable constrained by a regular expression (i.e., <code>/{userid:[0-9]+}</code>), or a segment that mixes literals with
+ *  path variables (i.e., <code>/{name}.json</code>), which is matched by the segment's {@link UriTemplate}</li>
+ *  <li>a path variable whose regular expression may match a separator (i.e., <code>/{path:.+}</code> or <code>/{path:[a-z/]+}</code>),
+ *  which is matched against the rest of the request path, one or more segments at a time</li>
+ * </ul>
+ *
+ * Resolving a request path walks the trie one segment at a time, preferring static segments over regular expression segments over
+ * path variables over wildcard segments (i.e., <code>/{rest:.*}</code>).  The cost of a lookup is therefore bounded by the depth of
+ * the path rather than by the number of bound {@link Route}s.
+ *
+ * <p>
+ * The regular expression segments of a node are ranked by specificity when the trie is compiled: segments with more literal characters
+ * come first, then segments with fewer unconstrained variables.  The ranking does not depend on the order in which the {@link Route}s were
+ * added; segments of equal rank keep their registration order and are logged as potentially ambiguous, as are {@link Route}s that are
+ * shadowed by an earlier {@link Route} bound to the same path and method.
+ *
+ * <p>
+ * Each node indexes its {@link Route}s by {@link HttpMethod} and keeps a mask of the methods bound anywhere below it, so that a lookup
+ * only descends into branches that contain a {@link Route} for the request method.  The <code>Allow</code> header value of a node is
+ * computed when the trie is compiled, rather than per request.
+ *
+ * <p>
+ * The trie is immutable; it is compiled once from a set of {@link Route}s and its nodes are plain arrays, so it may be read
+ * by any number of threads without synchronization.  Changing the {@link Route}s means compiling a new trie (see {@link RoutingTable}).
+ *
+ * @author Tony
+ *
+ */
+public class RouteTrie {
+
+    /**
+     * The kind of path segment a {@link Node} matches
+     */
+    static enum NodeType {
+        STATIC,
+        PARAM,
+        REGEX,
+        SPAN,
+    }
+
+    /**
+     * Above this number of static children, a {@link Node} indexes its static children by segment rather than
+     * comparing each one in turn
+     */
+    private static final int STATIC_INDEX_THRESHOLD = 8;
+
+    /**
+     * Variable expressions that accept any segment
+     */
+    private static final List<String> WILDCARD_EXPRESSIONS = Arrays.asList(".*", ".+", "[^/]*", "[^/]+");
+
+    /**
+     * The input used to determine if a variable expression may match a separator
+     */
+    private static final String SEPARATORS = "////////////////";
+
+    /**
+     * The negated character classes of a variable expression (i.e., <code>[^/]</code>)
+     */
+    private static final Pattern NEGATED_CLASSES = Pattern.compile("\\[\\^[^\\]]*\\]");
+
+    /**
+     * Orders the regular expression segments from most to least specific
+     */
+    static final Comparator<NodeBuilder> SPECIFICITY = Comparator.<NodeBuilder>comparingInt(node -> -node.literals)
+                                                                 .thenComparingInt(node -> node.wildcards);
+
+    private static final Logger LOG = Logger.getLogger(RouteTrie.class.getName());
+
+    /**
+     * A compiled node in the trie, which matches exactly one path segment.
+     *
+     * @author Tony
+     *
+     */
+    static final class Node {
+        final NodeType type;
+        final String segment;
+        final UriTemplate template;
+        final int variables;
+
+        final Node[] staticChildren;
+        final Map<String, Node> staticIndex;
+        final Node[] regexChildren;
+        final Node paramChild;
+
+        /* the regex children from this index onward are wildcards, which are tried after the param child */
+        final int wildcardStart;
+
+        /* indexed by the HttpMethod ordinal */
+        final Route[] routes;
+
+        /* the methods bound to this node, and the methods bound to this node or any node below it */
+        final int routeMask;
+        final int subtreeMask;
+
+        /* the 'Allow' header value for the methods bound to this node */
+        final String allow;
+
+        Node(NodeBuilder builder) {
+            this.type = builder.type;
+            this.segment = builder.segment;
+            this.template = builder.template;
+            this.variables = (this.template != null) ? this.template.getVariableNames().size()
+                           : (type == NodeType.PARAM) ? 1 : 0;
+
+            this.staticChildren = new Node[builder.staticChildren.size()];
+            int i = 0;
+            for(NodeBuilder child : builder.staticChildren.values()) {
+                this.staticChildren[i++] = new Node(child);
+            }
+
+            if(this.staticChildren.length > STATIC_INDEX_THRESHOLD) {
+                this.staticIndex = new HashMap<String, Node>(this.staticChildren.length * 2);
+                for(Node child : this.staticChildren) {
+                    this.staticIndex.put(child.segment, child);
+                }
+            }
+            else {
+                this.staticIndex = null;
+            }
+
+            List<NodeBuilder> ranked = new ArrayList<NodeBuilder>(builder.regexChildren);
+            ranked.sort(SPECIFICITY);
+
+            int wildcardStart = ranked.size();
+            this.regexChildren = new Node[ranked.size()];
+            for(i = 0; i < this.regexChildren.length; i++) {
+                NodeBuilder child = ranked.get(i);
+                if(i > 0 && SPECIFICITY.compare(ranked.get(i - 1), child) == 0) {
+                    LOG.warning("Route segments '" + ranked.get(i - 1).path + "' and '" + child.path + "' are equally specific and may be ambiguous, '"
+                            + ranked.get(i - 1).path + "' is tried first");
+                }
+
+                if(child.isWildcard() && wildcardStart > i) {
+                    wildcardStart = i;
+                }
+                this.regexChildren[i] = new Node(child);
+            }
+            this.wildcardStart = wildcardStart;
+
+            this.paramChild = (builder.paramChild != null) ? new Node(builder.paramChild) : null;
+
+            this.routes = builder.routes;
+            this.routeMask = builder.routeMask;
+            this.subtreeMask = builder.subtreeMask;
+
+            StringBuilder sb = new StringBuilder();
+            for(i = 0; i < this.routes.length; i++) {
+                if(this.routes[i] != null) {
+                    if(sb.length() > 0) {
+                        sb.append(", ");
+                    }
+                    sb.append(HttpMethod.fromOrdinal(i).name());
+                }
+            }
+            this.allow = sb.toString();
+        }
+
+        /**
+         * Finds the static child that matches the path segment found in the supplied path at the start/end indexes
+         *
+         * @param path
+         * @param start
+         * @param end
+         * @return the static child {@link Node} or null if not found
+         */
+        Node staticChild(String path, int start, int end) {
+            if(this.staticIndex != null) {
+                return this.staticIndex.get(path.substring(start, end));
+            }
+
+            int length = end - start;
+            for(int i = 0; i < this.staticChildren.length; i++) {
+                Node child = this.staticChildren[i];
+                if(child.segment.length() == length && path.regionMatches(start, child.segment, 0, length)) {
+                    return child;
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * Captures the path variable values of the segment found in the supplied path at the start/end indexes
+         *
+         * @param path
+         * @param start
+         * @param end
+         * @param captures
+         * @return true if the segment is accepted by this node
+         */
+        boolean capture(String path, int start, int end, Captures captures) {
+            switch(this.type) {
+                case REGEX:
+                case SPAN: {
+                    captures.ensureCapacity(this.variables);
+                    if(!this.template.match(path, start, end, captures.values, captures.size)) {
+                        return false;
+                    }
+
+                    captures.size += this.variables;
+                    return true;
+                }
+                case PARAM: {
+                    captures.push(path.substring(start, end));
+                    return true;
+                }
+                default: {
+                    return this.segment.length() == (end - start) && path.regionMatches(start, this.segment, 0, end - start);
+                }
+            }
+        }
+    }
+
+    /**
+     * The mutable form of a {@link Node}, used while compiling the trie
+     *
+     * @author Tony
+     *
+     */
+    static final class NodeBuilder {
+        final NodeType type;
+        final String segment;
+        final String path;
+        final UriTemplate template;
+
+        /* the number of literal characters and unconstrained variables of the segment */
+        final int literals;
+        final int wildcards;
+
+        final Map<String, NodeBuilder> staticChildren;
+        final List<NodeBuilder> regexChildren;
+        NodeBuilder paramChild;
+
+        Route[] routes;
+        int routeMask;
+        int subtreeMask;
+
+        NodeBuilder(NodeBuilder parent, NodeType type, String segment) {
+            this.type = type;
+            this.segment = segment;
+            this.path = (parent != null) ? parent.path + "/" + segment : "";
+            this.template = (type == NodeType.REGEX || type == NodeType.SPAN) ? new UriTemplate(segment) : null;
+
+            int literals = 0;
+            int wildcards = 0;
+            int depth = 0;
+            int start = 0;
+            for(int i = 0; i < segment.length(); i++) {
+                char c = segment.charAt(i);
+                if(c == '{') {
+                    if(depth++ == 0) {
+                        start = i + 1;
+                    }
+                }
+                else if(c == '}') {
+                    if(--depth == 0) {
+                        int colon = segment.indexOf(':', start);
+                        if(colon < 0 || colon > i || WILDCARD_EXPRESSIONS.contains(segment.substring(colon + 1, i).trim())) {
+                            wildcards++;
+                        }
+                    }
+                }
+                else if(depth == 0) {
+                    literals++;
+                }
+            }
+            this.literals = literals;
+            this.wildcards = wildcards;
+
+            this.staticChildren = new LinkedHashMap<String, NodeBuilder>();
+            this.regexChildren = new ArrayList<NodeBuilder>();
+            this.routes = new Route[HttpMethod.values().length];
+        }
+
+        /**
+         * Retrieves (or creates if not already present) the child for the supplied template segment
+         *
+         * @param segment
+         * @return the child {@link NodeBuilder}
+         */
+        NodeBuilder child(String segment) {
+            NodeType type = typeOf(segment);
+            switch(type) {
+                case STATIC: {
+                    return this.staticChildren.computeIfAbsent(segment, s -> new NodeBuilder(this, NodeType.STATIC, s));
+                }
+                case PARAM: {
+                    if(this.paramChild == null) {
+                        this.paramChild = new NodeBuilder(this, NodeType.PARAM, segment);
+                    }
+                    return this.paramChild;
+                }
+                default: {
+                    for(NodeBuilder child : this.regexChildren) {
+                        if(child.segment.equals(segment)) {
+                            return child;
+                        }
+                    }
+
+                    NodeBuilder child = new NodeBuilder(this, type, segment);
+                    this.regexChildren.add(child);
+                    return child;
+                }
+            }
+        }
+
+        /**
+         * Binds the {@link Route} to this node for each of its {@link HttpMethod}s.  If a method is already bound, the
+         * first {@link Route} registered wins.
+         *
+         * @param route
+         */
+        void bind(Route route) {
+            for(HttpMethod method : route.getMethods()) {
+                Route bound = this.routes[method.ordinal()];
+                if(bound == null) {
+                    this.routes[method.ordinal()] = route;
+                    this.routeMask |= method.mask();
+                }
+                else if(bound != route) {
+                    LOG.warning("Route '" + route.getUriTemplate() + "' is shadowed by '" + bound.getUriTemplate() + "' for " + method);
+                }
+            }
+        }
+
+        /**
+         * @return true if this is a regular expression segment that accepts any segment (i.e., <code>{rest:.*}</code>)
+         */
+        boolean isWildcard() {
+            return this.template != null && this.literals == 0 && this.wildcards == this.template.getVariableNames().size();
+        }
+    }
+
+    /**
+     * The path variable values captured while walking down the trie
+     *
+     * @author Tony
+     *
+     */
+    static class Captures {
+        String[] values = new String[4];
+        int size;
+
+        void push(String value) {
+            ensureCapacity(1);
+            this.values[this.size++] = value;
+        }
+
+        void ensureCapacity(int additional) {
+            if(this.size + additional > this.values.length) {
+                this.values = Arrays.copyOf(this.values, Math.max(this.values.length * 2, this.size + additional));
+            }
+        }
+    }
+
+    /**
+     * Matches any method
+     */
+    private static final int ANY_METHOD = ~0;
+
+    private final Node root;
+
+    /**
+     * Compiles the supplied {@link Route}s into a trie.  If more than one {@link Route} is bound to the same path
+     * and method, the first one wins.
+     *
+     * @param routes
+     */
+    public RouteTrie(Collection<Route> routes) {
+        NodeBuilder root = new NodeBuilder(null, NodeType.STATIC, "");
+        for(Route route : routes) {
+            int mask = 0;
+            for(HttpMethod method : route.getMethods()) {
+                mask |= method.mask();
+            }
+
+            NodeBuilder node = root;
+            node.subtreeMask |= mask;
+            for(String segment : segments(route.getUriTemplate().toString())) {
+                node = node.child(segment);
+                node.subtreeMask |= mask;
+            }
+
+            node.bind(route);
+        }
+
+        this.root = new Node(root);
+    }
+
+    /**
+     * Attempts to find the {@link Route} bound to the supplied request path that supports the supplied method type.
+     *
+     * @param methodType the request method type
+     * @param path the request path
+     * @return the {@link RouteMatch}, containing the {@link Route} and captured path variables, if present
+     */
+    public Optional<RouteMatch> findRoute(String methodType, String path) {
+        HttpMethod method = HttpMethod.fromString(methodType);
+        if(method == null) {
+            return Optional.empty();
+        }
+
+        return findRoute(method, path);
+    }
+
+    /**
+     * Attempts to find the {@link Route} bound to the supplied request path that supports the supplied method.  Only
+     * the branches of the trie that contain a {@link Route} for the method are considered.
+     *
+     * @param method the request method
+     * @param path the request path
+     * @return the {@link RouteMatch}, containing the {@link Route} and captured path variables, if present
+     */
+    public Optional<RouteMatch> findRoute(HttpMethod method, String path) {
+        if(path == null || method == null) {
+            return Optional.empty();
+        }
+
+        Captures captures = new Captures();
+        Node node = find(this.root, method.mask(), path, 0, captures);
+        if(node == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new RouteMatch(node.routes[method.ordinal()], method.name(), path, Arrays.copyOf(captures.values, captures.size)));
+    }
+
+    /**
+     * Finds the methods that are bound to the supplied request path, regardless of the request method.
+     *
+     * @param path the request path
+     * @return the <code>Allow</code> header value (i.e., "GET, POST") if the path is bound to any {@link Route}
+     */
+    public Optional<String> findAllowedMethods(String path) {
+        if(path == null || rejects(path)) {
+            return Optional.empty();
+        }
+
+        Node node = find(this.root, ANY_METHOD, path, 0, new Captures());
+        if(node == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(node.allow);
+    }
+
+    /**
+     * Determines if the supplied request path can not possibly match any {@link Route}, by only inspecting its first
+     * path segment.  If every bound {@link Route} starts with a static segment, a request path whose first segment is not
+     * one of those is rejected without walking the trie.
+     *
+     * @param path the request path
+     * @return true if the path does not match any {@link Route}
+     */
+    public boolean rejects(String path) {
+        Node root = this.root;
+        if(root.paramChild != null || root.regexChildren.length > 0) {
+            return false;
+        }
+
+        int length = path.length();
+        int index = 0;
+        while(index < length && path.charAt(index) == '/') {
+            index++;
+        }
+
+        if(index >= length) {
+            return root.routeMask == 0;
+        }
+
+        int end = path.indexOf('/', index);
+        if(end < 0) {
+            end = length;
+        }
+
+        return root.staticChild(path, index, end) == null;
+    }
+
+    /**
+     * Walks the trie from the supplied node, starting at the supplied index of the request path.
+     *
+     * @param node the current node
+     * @param mask the method mask that the found node must have bound
+     * @param path the request path
+     * @param index the index into the request path in which the next segment begins
+     * @param captures the captured path variable values
+     * @return the {@link Node} if found, otherwise null
+     */
+    private Node find(Node node, int mask, String path, int index, Captures captures) {
+        int length = path.length();
+
+        /* skip over the separator; the RoutingTable canonicalizes the request path before
+         * it is resolved, this only tolerates paths that are looked up directly
+         */
+        while(index < length && path.charAt(index) == '/') {
+            index++;
+        }
+
+        if(index >= length) {
+            return (node.routeMask & mask) != 0 ? node : null;
+        }
+
+        int end = path.indexOf('/', index);
+        if(end < 0) {
+            end = length;
+        }
+
+        int mark = captures.size;
+
+        if(node.staticChildren.length > 0) {
+            Node child = node.staticChild(path, index, end);
+            if(child != null && (child.subtreeMask & mask) != 0) {
+                Node found = find(child, mask, path, end, captures);
+                if(found != null) {
+                    return found;
+                }
+            }
+        }
+
+        Node[] regexChildren = node.regexChildren;
+        for(int i = 0; i < node.wildcardStart; i++) {
+            Node found = find(regexChildren[i], mask, path, index, end, captures, mark);
+            if(found != null) {
+                return found;
+            }
+        }
+
+        Node child = node.paramChild;
+        if(child != null) {
+            Node found = find(child, mask, path, index, end, captures, mark);
+            if(found != null) {
+                return found;
+            }
+        }
+
+        for(int i = node.wildcardStart; i < regexChildren.length; i++) {
+            Node found = find(regexChildren[i], mask, path, index, end, captures, mark);
+            if(found != null) {
+                return found;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Captures the segment at the start/end indexes with the supplied child node, and walks the trie from the child.  If
+     * the walk fails, the captures are rolled back to the supplied mark.
+     *
+     * <p>
+     * A {@link NodeType#SPAN} child is matched against the rest of the request path first, and then against one less segment
+     * at a time, until the walk from the child succeeds.
+     *
+     * @param child the child node
+     * @param mask the method mask that the found node must have bound
+     * @param path the request path
+     * @param index the index into the request path in which the segment begins
+     * @param end the index into the request path in which the segment ends
+     * @param captures the captured path variable values
+     * @param mark the number of captured values before the segment
+     * @return the {@link Node} if found, otherwise null
+     */
+    private Node find(Node child, int mask, String path, int index, int end, Captures captures, int mark) {
+        if((child.subtreeMask & mask) == 0) {
+            return null;
+        }
+
+        if(child.type != NodeType.SPAN) {
+            return capture(child, mask, path, index, end, captures, mark);
+        }
+
+        for(int spanEnd = path.length(); spanEnd >= end; spanEnd = path.lastIndexOf('/', spanEnd - 1)) {
+            Node found = capture(child, mask, path, index, spanEnd, captures, mark);
+            if(found != null) {
+                return found;
+            }
+        }
+
+        return null;
+    }
+
+    private Node capture(Node child, int mask, String path, int index, int end, Captures captures, int mark) {
+        if(!child.capture(path, index, end, captures)) {
+            return null;
+        }
+
+        Node found = find(child, mask, path, end, captures);
+        if(found == null) {
+            captures.size = mark;
+        }
+        return found;
+    }
+
+    /**
+     * Determines the {@link NodeType} of the template segment
+     *
+     * @param segment
+     * @return the {@link NodeType}
+     */
+    static NodeType typeOf(String segment) {
+        int open = segment.indexOf('{');
+        if(open < 0) {
+            return NodeType.STATIC;
+        }
+
+        if(open == 0 && segment.indexOf('}') == segment.length() - 1 && segment.indexOf(':') < 0) {
+            return NodeType.PARAM;
+        }
+
+        int depth = 0;
+        int start = 0;
+        for(int i = open; i < segment.length(); i++) {
+            char c = segment.charAt(i);
+            if(c == '{') {
+                if(depth++ == 0) {
+                    start = i + 1;
+                }
+            }
+            else if(c == '}') {
+                if(--depth == 0) {
+                    int colon = segment.indexOf(':', start);
+                    if(colon > -1 && colon < i && spans(segment.substring(colon + 1, i))) {
+                        return NodeType.SPAN;
+                    }
+                }
+            }
+        }
+
+        return NodeType.REGEX;
+    }
+
+    /**
+     * Determines if the variable expression may match a separator, in which case the variable may span more than one
+     * path segment (i.e., <code>.+</code>, <code>[a-z/]+</code> or <code>\S*</code>)
+     *
+     * @param expression
+     * @return true if the expression may match a separator
+     */
+    static boolean spans(String expression) {
+        /* a separator outside of a negated character class (i.e., <code>\d+/\d+</code>) */
+        if(NEGATED_CLASSES.matcher(expression).replaceAll("").indexOf('/') > -1) {
+            return true;
+        }
+
+        Matcher matcher = Pattern.compile(expression).matcher(SEPARATORS);
+        while(matcher.find()) {
+            if(matcher.end() > matcher.start()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Splits the template path into its segments.  Separators that are nested within a variable
+     * definition (i.e., <code>{path:[a-z/]+}</code>) do not split the segment, such a segment is a {@link NodeType#SPAN}.
+     *
+     * @param template
+     * @return the non-empty segments of the template
+     */
+    static List<String> segments(String template) {
+        List<String> segments = new ArrayList<String>();
+
+        int depth = 0;
+        int start = 0;
+        for(int i = 0; i < template.length(); i++) {
+            char c = template.charAt(i);
+            if(c == '{') {
+                depth++;
+            }
+            else if(c == '}') {
+                depth--;
+            }
+            else if(c == '/' && depth == 0) {
+                if(i > start) {
+                    segments.add(template.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+
+        if(start < template.length()) {
+            segments.add(template.substring(start));
+        }
+
+        return segments;
+    }
+}
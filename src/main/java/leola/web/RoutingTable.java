@@ -1,165 +1,877 @@
-/*
- * see license.txt
- */
-package leola.web;
-
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
-
-import leola.vm.types.LeoArray;
-import leola.vm.types.LeoMap;
-import leola.vm.types.LeoObject;
-
-/**
- * A means for binding {@link LeoObject} functions to HTTP requests.  The {@link Route}s expect a path (which may contain path variables) and
- * a list of valid method request types (i.e., GET, POST, etc.).  When a request comes to the web server, it will use this RoutingTable to determine
- * which {@link Route} to use.
- * 
- * @author Tony
- *
- */
-public class RoutingTable {
-
-    /**
-     * A route into the web server
-     * 
-     * @author Tony
-     *
-     */
-    public static class Route {
-        private LeoMap config;
-        private LeoObject function;
-        
-        private UriTemplate template;
-        private Set<String> methodTypes;
-        
-        /**
-         * @param config
-         * @param function
-         */
-        public Route(LeoMap config, LeoObject function) {
-            this.config = config;
-            this.function = function;
-            
-            if(!config.containsKeyByString("path")) {
-                throw new IllegalArgumentException("The supplied route does not specify a 'path' : " + config);
-            }
-            
-            String path = config.getString("path");
-            this.template = new UriTemplate(path);
-            
-            this.methodTypes = new HashSet<String>();
-            if(config.containsKeyByString("methods")) {
-                LeoObject methods = config.getByString("methods");
-                if(methods.isArray()) {
-                    LeoArray array = methods.as();
-                    array.forEach(method -> methodTypes.add(method.toString()));
-                }
-            }
-            
-            if(this.methodTypes.isEmpty()) {
-                this.methodTypes.add("GET");
-            }
-            
-        }
-        
-        /**
-         * @return the configuration of the {@link Route}.  The configuration will contain the route <b>path</b> (i.e., <code>path -> "/users/{userid}"</code>) and the
-         * request <b>methods</b> (i.e., <code>methods -> ["GET", "PUT", "POST"]</code>).  This identifies the request route an incoming HTTP request should take.
-         */
-        public LeoMap getConfig() {
-            return config;
-        }
-        
-        /**
-         * @return the function that is bound to the {@link Route}.  This function will be invoked when a {@link Route} is found from an HTTP request.
-         */
-        public LeoObject getFunction() {
-            return function;
-        }
-        
-        
-        /**
-         * @return the {@link UriTemplate} contains the information for path parameters (i.e., <code>"/users/{userid}"</code>, 'userid' is a path
-         * parameter.
-         */
-        public UriTemplate getUriTemplate() {                        
-            return this.template;
-        }
-        
-        /**
-         * The route parameters from the supplied path.
-         * 
-         * @param path
-         * @return the key/value pair where the key is the name of the variable name, and the value is what was
-         * in place in the supplied path
-         */
-        public Map<String, String> getRouteParameters(String path) {
-            return this.template.match(path);
-        }
-        
-        /**
-         * Determines if the supplied method type is supported by this route.
-         * 
-         * @param methodType
-         * @return true if and only if the supplied method type is supported
-         */
-        public boolean isMethodTypeSupported(String methodType) {
-            return this.methodTypes.contains(methodType.toUpperCase());
-        }
-    }
-    
-    private Map<UriTemplate, Route> routes;
-    private Collection<UriTemplate> routePatterns;
-    
-    /**
-     * 
-     */
-    public RoutingTable() {
-        this.routes = new ConcurrentHashMap<UriTemplate, RoutingTable.Route>();
-        this.routePatterns = new ConcurrentLinkedDeque<UriTemplate>();
-    }
-
-    /**
-     * Adds the {@link Route} to the routing table
-     * 
-     * @param route
-     */
-    public void addRoute(Route route) {
-        UriTemplate pattern = route.getUriTemplate();
-        this.routes.put(pattern, route);
-        this.routePatterns.add(pattern);
-    }
-
-    /**
-     * Attempts to find the best route path for the supplied request path
-     * @param requestPath
-     * @return the best pattern that matches the request path
-     */
-    private Optional<UriTemplate> findBestRoute(String methodType, String requestPath) {
-        return this.routePatterns.stream()
-                .filter(p -> p.matches(requestPath))
-                .filter(p -> {
-                    Route r = routes.get(p);
-                    if(r!=null) return r.isMethodTypeSupported(methodType);
-                    return false;
-                })
-                .findFirst();
-    }
-    
-    /**
-     * Attempts to retrieve the {@link Route} bounded to the supplied
-     * path.
-     * 
-     * @param path
-     * @return the Route if present
-     */
-    public Optional<Route> getRoute(String methodType, String path) {
-        return findBestRoute(methodType, path).map(r -> this.routes.get(r));
-    }
-}
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import leola.vm.types.LeoArray;
+import leola.vm.types.LeoDouble;
+import leola.vm.types.LeoLong;
+import leola.vm.types.LeoMap;
+import leola.vm.types.LeoObject;
+
+/**
+ * A means for binding {@link LeoObject} functions to HTTP requests.  The {@link Route}s expect a path (which may contain path variables) and
+ * a list of valid method request types (i.e., GET, POST, etc.).  When a request comes to the web server, it will use this RoutingTable to determine
+ * which {@link Route} to use.
+ * 
+ * <p>
+ * The bound {@link Route}s are held in an immutable snapshot, which is replaced as a whole whenever the {@link Route}s change.  Resolving
+ * a request never locks, and the {@link Route}s may be changed while the web server is running.
+ * 
+ * <p>
+ * Request paths are canonicalized once, before they are resolved (see {@link #canonicalPath(String)}): duplicate separators are
+ * collapsed and a trailing separator is dropped, so <code>//api//users/</code> resolves as <code>/api/users</code>.  The canonical
+ * path is kept on the {@link RouteMatch}, and everything that inspects the path of a routed request (i.e., the {@link WebFilterChain}) 
+ * must use it rather than the raw request path.
+ * 
+ * @author Tony
+ *
+ */
+public class RoutingTable {
+
+    /**
+     * A route into the web server
+     * 
+     * @author Tony
+     *
+     */
+    public static class Route {
+        
+        /**
+         * The request headers that distinguish coalesced requests, unless the route selects its own; the response of one user
+         * must never be written to another
+         */
+        private static final List<String> DEFAULT_COALESCE_HEADERS = Collections.unmodifiableList(Arrays.asList("Accept", "Authorization", "Cookie"));
+        
+        private LeoMap config;
+        private LeoObject function;
+        
+        private UriTemplate template;
+        private Set<HttpMethod> methodTypes;
+        
+        private long timeout;
+        private LongAdder timeouts;
+        
+        private List<String> coalesceHeaders;
+        
+        private Optional<String> lane;
+        
+        private long maxBodySize;
+        
+        /**
+         * @param config
+         * @param function
+         */
+        public Route(LeoMap config, LeoObject function) {
+            this.config = config;
+            this.function = function;
+            
+            if(!config.containsKeyByString("path")) {
+                throw new IllegalArgumentException("The supplied route does not specify a 'path' : " + config);
+            }
+            
+            String path = config.getString("path");
+            this.template = new UriTemplate(path);
+            
+            this.methodTypes = EnumSet.noneOf(HttpMethod.class);
+            if(config.containsKeyByString("methods")) {
+                LeoObject methods = config.getByString("methods");
+                if(methods.isArray()) {
+                    LeoArray array = methods.as();
+                    array.forEach(method -> {
+                        HttpMethod methodType = HttpMethod.fromString(method.toString());
+                        if(methodType == null) {
+                            throw new IllegalArgumentException("The supplied route specifies an unknown method '" + method + "' : " + config);
+                        }
+                        methodTypes.add(methodType);
+                    });
+                }
+            }
+            
+            if(this.methodTypes.isEmpty()) {
+                this.methodTypes.add(HttpMethod.GET);
+            }
+            
+            this.methodTypes = Collections.unmodifiableSet(this.methodTypes);
+            
+            this.timeout = config.containsKeyByString("timeout") ? config.getByString("timeout").asLong() : 0;
+            if(this.timeout < 0) {
+                throw new IllegalArgumentException("The supplied route specifies an invalid 'timeout' : " + config);
+            }
+            
+            this.timeouts = new LongAdder();
+            
+            if(config.containsKeyByString("coalesce")) {
+                LeoObject coalesce = config.getByString("coalesce");
+                if(coalesce.isMap()) {
+                    LeoMap coalesceConfig = coalesce.as();
+                    List<String> headers = new ArrayList<String>();
+                    if(coalesceConfig.containsKeyByString("headers")) {
+                        LeoArray array = coalesceConfig.getByString("headers").as();
+                        array.forEach(header -> headers.add(header.toString()));
+                    }
+                    this.coalesceHeaders = Collections.unmodifiableList(headers);
+                }
+                else if(LeoObject.isTrue(coalesce)) {
+                    this.coalesceHeaders = DEFAULT_COALESCE_HEADERS;
+                }
+            }
+            
+            this.lane = config.containsKeyByString("lane") 
+                    ? Optional.of(config.getString("lane"))
+                    : Optional.empty();
+            
+            this.maxBodySize = config.containsKeyByString("maxBodySize") ? config.getByString("maxBodySize").asLong() : -1;
+            if(config.containsKeyByString("maxBodySize") && this.maxBodySize < 0) {
+                throw new IllegalArgumentException("The supplied route specifies an invalid 'maxBodySize' : " + config);
+            }
+        }
+        
+        /**
+         * @return the configuration of the {@link Route}.  The configuration will contain the route <b>path</b> (i.e., <code>path -> "/users/{userid}"</code>) and the
+         * request <b>methods</b> (i.e., <code>methods -> ["GET", "PUT", "POST"]</code>).  This identifies the request route an incoming HTTP request should take.  It
+         * may also contain a <b>timeout</b>, in milliseconds, after which the request is responded to with a 504 (i.e., <code>timeout -> 500</code>), and
+         * whether identical concurrent <code>GET</code> requests are <b>coalesced</b> (i.e., <code>coalesce -> true</code> or 
+         * <code>coalesce -> { headers -> ["Accept", "Authorization"] }</code>, see {@link Coalescer}), and the <b>lane</b> whose executor runs the
+         * route function (i.e., <code>lane -> "health"</code>, see {@link WebApp#getHandlerExecutor(Route)}), and the <b>maxBodySize</b>, in bytes,
+         * of the request body, above which the request is responded to with a 413 (i.e., <code>maxBodySize -> 1048576</code>).
+         */
+        public LeoMap getConfig() {
+            return config;
+        }
+        
+        /**
+         * @return the function that is bound to the {@link Route}.  This function will be invoked when a {@link Route} is found from an HTTP request.
+         */
+        public LeoObject getFunction() {
+            return function;
+        }
+        
+        
+        /**
+         * @return the {@link UriTemplate} contains the information for path parameters (i.e., <code>"/users/{userid}"</code>, 'userid' is a path
+         * parameter.
+         */
+        public UriTemplate getUriTemplate() {                        
+            return this.template;
+        }
+        
+        /**
+         * The route parameters from the supplied path.  This re-matches the path against the {@link UriTemplate}, prefer
+         * the parameters captured by the {@link RouteMatch} when available.
+         * 
+         * @see RouteMatch#getParameters()
+         * @param path
+         * @return the key/value pair where the key is the name of the variable name, and the value is what was
+         * in place in the supplied path
+         */
+        public Map<String, String> getRouteParameters(String path) {
+            return this.template.match(path);
+        }
+        
+        /**
+         * Determines if the supplied method type is supported by this route.
+         * 
+         * @param methodType
+         * @return true if and only if the supplied method type is supported
+         */
+        public boolean isMethodTypeSupported(String methodType) {
+            HttpMethod method = HttpMethod.fromString(methodType);
+            return method != null && this.methodTypes.contains(method);
+        }
+        
+        /**
+         * @return the {@link HttpMethod}s this route supports
+         */
+        public Set<HttpMethod> getMethods() {
+            return this.methodTypes;
+        }
+        
+        /**
+         * @return the number of milliseconds the route function may run before the request is responded to with a 504, or 0 if the
+         * route does not specify a <b>timeout</b>
+         */
+        public long getTimeout() {
+            return this.timeout;
+        }
+        
+        /**
+         * @return the number of requests of this route that exceeded their timeout
+         */
+        public long getTimeouts() {
+            return this.timeouts.sum();
+        }
+        
+        /**
+         * @return true if identical concurrent <code>GET</code> requests of this route are coalesced (see {@link Coalescer})
+         */
+        public boolean isCoalesced() {
+            return this.coalesceHeaders != null;
+        }
+        
+        /**
+         * @return the request headers whose values, along with the request method, path and query, identify identical requests
+         * of a coalesced route.  By default these are <code>Accept</code>, <code>Authorization</code> and <code>Cookie</code>.
+         */
+        public List<String> getCoalesceHeaders() {
+            return (this.coalesceHeaders != null) ? this.coalesceHeaders : Collections.<String>emptyList();
+        }
+        
+        /**
+         * @return the name of the lane whose executor runs the route function, if the route specifies a <b>lane</b>
+         */
+        public Optional<String> getLane() {
+            return this.lane;
+        }
+        
+        /**
+         * @return the maximum number of bytes of the request body, or -1 if the route does not specify a <b>maxBodySize</b>
+         */
+        public long getMaxBodySize() {
+            return this.maxBodySize;
+        }
+        
+        /**
+         * Records a request of this route that exceeded its timeout
+         */
+        void timedOut() {
+            this.timeouts.increment();
+        }
+    }
+    
+    /**
+     * A request method and path that did not resolve to a {@link Route}
+     * 
+     * @author Tony
+     *
+     */
+    private static class Miss {
+        final String method;
+        final String path;
+        final String allowedMethods;
+        
+        Miss(String method, String path, String allowedMethods) {
+            this.method = method;
+            this.path = path;
+            this.allowedMethods = allowedMethods;
+        }
+    }
+    
+    /**
+     * A {@link WebApp} mounted under a static path prefix, which resolves every request under that prefix
+     * 
+     * @author Tony
+     *
+     */
+    private static class Mount {
+        final String prefix;
+        final String[] segments;
+        final WebApp app;
+        
+        Mount(String prefix, WebApp app) {
+            List<String> segments = RouteTrie.segments(prefix);
+            if(segments.isEmpty() || prefix.indexOf('{') > -1) {
+                throw new IllegalArgumentException("The mount path must be a non-root static path: '" + prefix + "'");
+            }
+            
+            this.segments = segments.toArray(new String[0]);
+            this.prefix = "/" + String.join("/", segments);
+            this.app = app;
+        }
+        
+        /**
+         * Determines where the remainder of the supplied request path begins, if the path is under this mount
+         * 
+         * @param path the request path
+         * @return the index of the remainder of the path, or -1 if the path is not under this mount
+         */
+        int remainder(String path) {
+            int length = path.length();
+            int index = 0;
+            for(String segment : this.segments) {
+                while(index < length && path.charAt(index) == '/') {
+                    index++;
+                }
+                
+                int end = path.indexOf('/', index);
+                if(end < 0) {
+                    end = length;
+                }
+                
+                if(end - index != segment.length() || !path.regionMatches(index, segment, 0, end - index)) {
+                    return -1;
+                }
+                
+                index = end;
+            }
+            
+            return index;
+        }
+    }
+    
+    /**
+     * An immutable set of {@link Route}s.  The lookup structures are compiled the first time the snapshot is read, so that
+     * adding many {@link Route}s one at a time (as is done while a script registers its routes) does not compile each 
+     * intermediate snapshot.
+     * 
+     * @author Tony
+     *
+     */
+    private static final class Snapshot {
+        final List<Route> routes;
+        final List<Mount> mounts;
+        final int missCacheSize;
+        
+        private volatile Compiled compiled;
+        
+        Snapshot(List<Route> routes, List<Mount> mounts, int missCacheSize) {
+            this.routes = Collections.unmodifiableList(routes);
+            this.mounts = Collections.unmodifiableList(mounts);
+            this.missCacheSize = missCacheSize;
+        }
+        
+        Compiled compiled() {
+            Compiled result = this.compiled;
+            if(result == null) {
+                synchronized (this) {
+                    result = this.compiled;
+                    if(result == null) {
+                        this.compiled = result = new Compiled(this.routes, this.mounts, this.missCacheSize);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * The compiled lookup structures of a {@link Snapshot}.  None of these are modified once compiled, with the exception 
+     * of the miss cache.
+     * 
+     * @author Tony
+     *
+     */
+    private static final class Compiled {
+        final RouteTrie trie;
+        
+        /**
+         * The {@link Route}s whose path does not contain any path variables, keyed by the normalized path and 
+         * indexed by the {@link HttpMethod} ordinal.  These are resolved with a single hash lookup before
+         * walking the {@link RouteTrie}
+         */
+        final Map<String, Route[]> exactRoutes;
+        
+        /**
+         * A direct mapped cache of recent misses, so that repeated requests for unknown paths (i.e., from scanners) 
+         * do not walk the {@link RouteTrie}.  Colliding entries simply replace one another.  As the cache belongs to
+         * the snapshot, changing the {@link Route}s discards it.
+         */
+        final AtomicReferenceArray<Miss> missCache;
+        final int missCacheMask;
+        
+        /**
+         * The mounted {@link WebApp}s keyed by the first segment of their prefix, longest prefix first
+         */
+        final Map<String, Mount[]> mounts;
+        
+        Compiled(List<Route> routes, List<Mount> mounts, int missCacheSize) {
+            this.trie = new RouteTrie(routes);
+            this.exactRoutes = new HashMap<String, Route[]>();
+            
+            this.mounts = new HashMap<String, Mount[]>();
+            for(Mount mount : mounts) {
+                Mount[] bound = this.mounts.getOrDefault(mount.segments[0], new Mount[0]);
+                bound = Arrays.copyOf(bound, bound.length + 1);
+                bound[bound.length - 1] = mount;
+                Arrays.sort(bound, (a, b) -> b.segments.length - a.segments.length);
+                
+                this.mounts.put(mount.segments[0], bound);
+            }
+            
+            for(Route route : routes) {
+                UriTemplate template = route.getUriTemplate();
+                if(template.getVariableNames().isEmpty()) {
+                    String path = "/" + String.join("/", RouteTrie.segments(template.toString()));
+                    Route[] bound = this.exactRoutes.computeIfAbsent(path, p -> new Route[HttpMethod.values().length]);
+                    
+                    /* as with the trie, the first route bound to a method wins */
+                    for(HttpMethod method : route.getMethods()) {
+                        if(bound[method.ordinal()] == null) {
+                            bound[method.ordinal()] = route;
+                        }
+                    }
+                }
+            }
+            
+            this.missCacheMask = missCacheSize - 1;
+            this.missCache = new AtomicReferenceArray<Miss>(missCacheSize);
+        }
+        
+        /**
+         * Finds the {@link Route} that is bound to exactly the supplied path.  A single trailing separator on the
+         * request path is ignored.
+         * 
+         * @param method
+         * @param path
+         * @return the {@link Route} or null if no variable free {@link Route} is bound to the path
+         */
+        Route findExact(HttpMethod method, String path) {
+            Route[] bound = this.exactRoutes.get(path);
+            if(bound == null) {
+                int length = path.length();
+                if(length < 2 || path.charAt(length - 1) != '/') {
+                    return null;
+                }
+                
+                bound = this.exactRoutes.get(path.substring(0, length - 1));
+                if(bound == null) {
+                    return null;
+                }
+            }
+            
+            return bound[method.ordinal()];
+        }
+        
+        /**
+         * Finds the {@link Mount} the supplied request path is under
+         * 
+         * @param path
+         * @return the {@link Mount} or null if the path is not under a {@link Mount}
+         */
+        Mount findMount(String path) {
+            if(this.mounts.isEmpty()) {
+                return null;
+            }
+            
+            int length = path.length();
+            int index = 0;
+            while(index < length && path.charAt(index) == '/') {
+                index++;
+            }
+            
+            int end = path.indexOf('/', index);
+            Mount[] candidates = this.mounts.get(path.substring(index, (end < 0) ? length : end));
+            if(candidates != null) {
+                for(Mount mount : candidates) {
+                    if(mount.remainder(path) > -1) {
+                        return mount;
+                    }
+                }
+            }
+            
+            return null;
+        }
+        
+        /**
+         * @param methodType
+         * @param path
+         * @return the miss cache slot for the supplied request method and path, or -1 if the cache is disabled
+         */
+        int slot(String methodType, String path) {
+            if(this.missCacheMask < 0) {
+                return -1;
+            }
+            
+            int hash = path.hashCode() * 31 + methodType.hashCode();
+            return (hash ^ (hash >>> 16)) & this.missCacheMask;
+        }
+    }
+    
+    /**
+     * The default number of entries in the miss cache
+     */
+    public static final int DEFAULT_MISS_CACHE_SIZE = 1024;
+    
+    private static final String[] NO_VALUES = new String[0];
+    
+    /**
+     * The current {@link Snapshot}.  Readers only ever dereference this once per lookup; writers
+     * build a new {@link Snapshot} and swap it in.
+     */
+    private final AtomicReference<Snapshot> snapshot;
+    private final int missCacheSize;
+    
+    private LongAdder exactHits;
+    private LongAdder dynamicHits;
+    private LongAdder misses;
+    private LongAdder cachedMisses;
+    
+    /**
+     * 
+     */
+    public RoutingTable() {
+        this(DEFAULT_MISS_CACHE_SIZE);
+    }
+    
+    /**
+     * @param missCacheSize the number of entries of the miss cache, which is rounded up to a power of two.  A size of 
+     * zero disables the miss cache.
+     */
+    public RoutingTable(int missCacheSize) {
+        this.missCacheSize = (missCacheSize > 0) ? Integer.highestOneBit(Math.min(missCacheSize, 1 << 20) * 2 - 1) : 0;
+        this.snapshot = new AtomicReference<Snapshot>(new Snapshot(new ArrayList<Route>(), new ArrayList<Mount>(), this.missCacheSize));
+        
+        this.exactHits = new LongAdder();
+        this.dynamicHits = new LongAdder();
+        this.misses = new LongAdder();
+        this.cachedMisses = new LongAdder();
+    }
+
+    /**
+     * Adds the {@link Route} to the routing table
+     * 
+     * @param route
+     */
+    public synchronized void addRoute(Route route) {
+        List<Route> routes = new ArrayList<Route>(this.snapshot.get().routes);
+        routes.add(route);
+        publish(routes);
+    }
+    
+    /**
+     * Removes the {@link Route} from the routing table
+     * 
+     * @param route
+     * @return true if the {@link Route} was bound and has been removed
+     */
+    public synchronized boolean removeRoute(Route route) {
+        List<Route> routes = new ArrayList<Route>(this.snapshot.get().routes);
+        if(!routes.remove(route)) {
+            return false;
+        }
+        
+        publish(routes);
+        return true;
+    }
+    
+    /**
+     * Removes all of the {@link Route}s bound to the supplied template path (i.e., <code>"/users/{userid}"</code>)
+     * 
+     * @param path the route template path, as it was bound
+     * @return true if any {@link Route} has been removed
+     */
+    public synchronized boolean removeRoute(String path) {
+        List<Route> routes = new ArrayList<Route>(this.snapshot.get().routes);
+        if(!routes.removeIf(route -> route.getUriTemplate().toString().equals(path))) {
+            return false;
+        }
+        
+        publish(routes);
+        return true;
+    }
+    
+    /**
+     * Atomically replaces all of the {@link Route}s of the routing table.  Requests resolve against either the
+     * previous set or the supplied set, never a mix of the two.
+     * 
+     * @param routes the new {@link Route}s
+     */
+    public synchronized void replaceAll(Collection<Route> routes) {
+        publish(new ArrayList<Route>(routes));
+    }
+    
+    /**
+     * Mounts the supplied {@link WebApp} under the supplied path prefix.  Every request under the prefix is resolved by the 
+     * routing table of the mounted {@link WebApp}, against the remainder of the request path; {@link Route}s of this routing table
+     * under the prefix are no longer reachable.  Mounting another {@link WebApp} under the same prefix replaces the previous one.
+     * 
+     * @param prefix the static path prefix (i.e., <code>"/api/v2"</code>)
+     * @param app the {@link WebApp} to mount
+     */
+    public synchronized void mount(String prefix, WebApp app) {
+        Mount mount = new Mount(prefix, app);
+        
+        Snapshot current = this.snapshot.get();
+        List<Mount> mounts = new ArrayList<Mount>(current.mounts);
+        mounts.removeIf(m -> m.prefix.equals(mount.prefix));
+        mounts.add(mount);
+        
+        this.snapshot.set(new Snapshot(current.routes, mounts, this.missCacheSize));
+    }
+    
+    /**
+     * Removes the {@link WebApp} mounted under the supplied path prefix
+     * 
+     * @param prefix the static path prefix
+     * @return true if a {@link WebApp} was mounted under the prefix and has been removed
+     */
+    public synchronized boolean unmount(String prefix) {
+        String normalized = "/" + String.join("/", RouteTrie.segments(prefix));
+        
+        Snapshot current = this.snapshot.get();
+        List<Mount> mounts = new ArrayList<Mount>(current.mounts);
+        if(!mounts.removeIf(m -> m.prefix.equals(normalized))) {
+            return false;
+        }
+        
+        this.snapshot.set(new Snapshot(current.routes, mounts, this.missCacheSize));
+        return true;
+    }
+    
+    /**
+     * @return the mounted {@link WebApp}s keyed by their path prefix
+     */
+    public Map<String, WebApp> getMounts() {
+        Map<String, WebApp> mounts = new LinkedHashMap<String, WebApp>();
+        this.snapshot.get().mounts.forEach(mount -> mounts.put(mount.prefix, mount.app));
+        return mounts;
+    }
+    
+    /**
+     * Compiles the current {@link Route}s, if they have not already been compiled.  Otherwise this happens on the first
+     * lookup after the {@link Route}s change.
+     */
+    public void compile() {
+        this.snapshot.get().compiled();
+    }
+    
+    /**
+     * @return the currently bound {@link Route}s, in the order they were added
+     */
+    public List<Route> getRoutes() {
+        return this.snapshot.get().routes;
+    }
+    
+    /**
+     * Attempts to match the supplied request method and path to a {@link Route}.  Paths without any variables are resolved
+     * from an exact match map; otherwise the lookup walks the {@link RouteTrie} one path segment at a time, so the cost is 
+     * bounded by the depth of the path and not the number of routes.  The path variables are captured during the same walk.
+     * 
+     * @param methodType the request method type
+     * @param path the request path
+     * @return the {@link RouteMatch} if present
+     */
+    public Optional<RouteMatch> match(String methodType, String path) {
+        Compiled compiled = this.snapshot.get().compiled();
+        path = canonicalPath(path);
+        
+        if(methodType != null && path != null) {
+            RouteMatch mounted = resolveMount(compiled, methodType, path);
+            if(mounted != null) {
+                return mounted.isMatched() ? Optional.of(mounted) : Optional.empty();
+            }
+        }
+        
+        return match(compiled, methodType, path);
+    }
+    
+    /**
+     * Canonicalizes the supplied request path, by collapsing duplicate separators and dropping a trailing separator
+     * (i.e., <code>//api//users/</code> is <code>/api/users</code>).  A path that is already canonical is returned as is.
+     * 
+     * @param path the request path
+     * @return the canonical path, or null if the path is null
+     */
+    public static String canonicalPath(String path) {
+        if(path == null) {
+            return null;
+        }
+        
+        int length = path.length();
+        int index = 1;
+        while(index < length && !(path.charAt(index) == '/' && (path.charAt(index - 1) == '/' || index == length - 1))) {
+            index++;
+        }
+        
+        if(index >= length) {
+            return path;
+        }
+        
+        StringBuilder sb = new StringBuilder(length);
+        sb.append(path, 0, index);
+        for(; index < length; index++) {
+            char c = path.charAt(index);
+            if(c != '/' || sb.length() == 0 || sb.charAt(sb.length() - 1) != '/') {
+                sb.append(c);
+            }
+        }
+        
+        if(sb.length() > 1 && sb.charAt(sb.length() - 1) == '/') {
+            sb.setLength(sb.length() - 1);
+        }
+        
+        return sb.toString();
+    }
+    
+    /**
+     * Resolves the supplied request method and path.  If no {@link Route} matches, the returned {@link RouteMatch} will contain the
+     * <code>Allow</code> header value if the path is bound under different methods (see {@link RouteMatch#getAllowedMethods()}).  
+     * The path of the returned {@link RouteMatch} is the canonical path (see {@link #canonicalPath(String)}).
+     * 
+     * @param methodType the request method type
+     * @param path the request path
+     * @return the {@link RouteMatch}, which may or may not be matched
+     */
+    public RouteMatch resolve(String methodType, String path) {
+        if(methodType == null || path == null) {
+            this.misses.increment();
+            return RouteMatch.noMatch(methodType, path, null);
+        }
+        
+        path = canonicalPath(path);
+        
+        Compiled compiled = this.snapshot.get().compiled();
+        
+        /* the mounted app has its own miss cache, so these are not cached here */
+        RouteMatch mounted = resolveMount(compiled, methodType, path);
+        if(mounted != null) {
+            return mounted;
+        }
+        
+        /* a path whose first segment no route starts with is rejected without walking the trie */
+        if(compiled.trie.rejects(path)) {
+            this.misses.increment();
+            return RouteMatch.noMatch(methodType, path, null);
+        }
+        
+        int slot = compiled.slot(methodType, path);
+        if(slot > -1) {
+            Miss miss = compiled.missCache.get(slot);
+            if(miss != null && miss.path.equals(path) && miss.method.equals(methodType)) {
+                this.misses.increment();
+                this.cachedMisses.increment();
+                return RouteMatch.noMatch(methodType, path, miss.allowedMethods);
+            }
+        }
+        
+        Optional<RouteMatch> match = match(compiled, methodType, path);
+        if(match.isPresent()) {
+            return match.get();
+        }
+        
+        String allowedMethods = compiled.trie.findAllowedMethods(path).orElse(null);
+        if(slot > -1) {
+            compiled.missCache.set(slot, new Miss(methodType, path, allowedMethods));
+        }
+        
+        return RouteMatch.noMatch(methodType, path, allowedMethods);
+    }
+    
+    /**
+     * Attempts to retrieve the {@link Route} bounded to the supplied
+     * path.
+     * 
+     * @see RoutingTable#match(String, String)
+     * @param methodType the request method type
+     * @param path the request path
+     * @return the Route if present
+     */
+    public Optional<Route> getRoute(String methodType, String path) {
+        return match(methodType, path).map(RouteMatch::getRoute);
+    }
+    
+    /**
+     * The lookup statistics of this routing table:
+     * 
+     * <ul>
+     *  <li><b>exactHits</b> - the number of lookups resolved by the exact match map</li>
+     *  <li><b>dynamicHits</b> - the number of lookups resolved by walking the {@link RouteTrie}</li>
+     *  <li><b>misses</b> - the number of lookups that did not resolve to a {@link Route}</li>
+     *  <li><b>cachedMisses</b> - the number of misses that were answered by the miss cache</li>
+     *  <li><b>exactHitRatio</b> - the ratio of exact hits to all lookups</li>
+     *  <li><b>timeouts</b> - for each route that exceeded its timeout, the number of requests that did</li>
+     * </ul>
+     * 
+     * @return the statistics
+     */
+    public LeoMap getStatistics() {
+        long exact = this.exactHits.sum();
+        long dynamic = this.dynamicHits.sum();
+        long missed = this.misses.sum();
+        long total = exact + dynamic + missed;
+        
+        LeoMap stats = new LeoMap();
+        stats.putByString("exactHits", LeoLong.valueOf(exact));
+        stats.putByString("dynamicHits", LeoLong.valueOf(dynamic));
+        stats.putByString("misses", LeoLong.valueOf(missed));
+        stats.putByString("cachedMisses", LeoLong.valueOf(this.cachedMisses.sum()));
+        stats.putByString("exactHitRatio", LeoDouble.valueOf(total > 0 ? (double)exact / total : 0.0));
+        
+        LeoMap timeouts = new LeoMap();
+        this.snapshot.get().routes.forEach(route -> {
+            long count = route.getTimeouts();
+            if(count > 0) {
+                timeouts.putByString(route.getUriTemplate().toString(), LeoLong.valueOf(count));
+            }
+        });
+        stats.putByString("timeouts", timeouts);
+        return stats;
+    }
+    
+    /**
+     * Publishes a new {@link Snapshot} of the supplied {@link Route}s
+     * 
+     * @param routes
+     */
+    private void publish(List<Route> routes) {
+        this.snapshot.set(new Snapshot(routes, this.snapshot.get().mounts, this.missCacheSize));
+    }
+    
+    /**
+     * Resolves the supplied request method and path with the mounted {@link WebApp} the path is under
+     * 
+     * @param compiled
+     * @param methodType
+     * @param path
+     * @return the {@link RouteMatch} of the mounted {@link WebApp}, or null if the path is not under a mount
+     */
+    private RouteMatch resolveMount(Compiled compiled, String methodType, String path) {
+        Mount mount = compiled.findMount(path);
+        if(mount == null) {
+            return null;
+        }
+        
+        int index = mount.remainder(path);
+        String remainder = (index < path.length()) ? path.substring(index) : "/";
+        
+        return mount.app.getRoutingTable().resolve(methodType, remainder).mountedAt(mount.app, path);
+    }
+    
+    /**
+     * Matches the supplied request method and path against the {@link Route}s of the supplied {@link Compiled} snapshot,
+     * the caller has already ruled out the mounted {@link WebApp}s
+     * 
+     * @param compiled
+     * @param methodType
+     * @param path
+     * @return the {@link RouteMatch} if present
+     */
+    private Optional<RouteMatch> match(Compiled compiled, String methodType, String path) {
+        HttpMethod method = HttpMethod.fromString(methodType);
+        if(method == null || path == null) {
+            this.misses.increment();
+            return Optional.empty();
+        }
+        
+        Route route = compiled.findExact(method, path);
+        if(route != null) {
+            this.exactHits.increment();
+            return Optional.of(new RouteMatch(route, method.name(), path, NO_VALUES));
+        }
+        
+        Optional<RouteMatch> match = compiled.trie.findRoute(method, path);
+        if(match.isPresent()) {
+            this.dynamicHits.increment();
+        }
+        else {
+            this.misses.increment();
+        }
+        
+        return match;
+    }
+}
\ No newline at end of file
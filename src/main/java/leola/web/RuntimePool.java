@@ -0,0 +1,282 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import leola.vm.Leola;
+import leola.vm.types.LeoArray;
+import leola.vm.types.LeoBoolean;
+import leola.vm.types.LeoInteger;
+import leola.vm.types.LeoLong;
+import leola.vm.types.LeoMap;
+import leola.vm.types.LeoObject;
+
+/**
+ * A pool of isolated {@link Leola} runtimes.  Each runtime evaluates the application script, which builds its own {@link WebApp}
+ * with its own routes and globals; instead of starting a server, that {@link WebApp} is handed to the pool (see {@link WebApp#start()}).
+ * Each request is dispatched to a free runtime, and its route function is resolved against that runtime's {@link RoutingTable}, so
+ * route functions run in parallel without sharing interpreter state across requests.
+ *
+ * <p>
+ * The configuration is:
+ * <pre>
+ *   runtimes -> {
+ *      size -> 4, // the number of runtimes, defaults to the number of processors
+ *      acquireTimeoutMs -> 1000, // the number of milliseconds a request may wait for a free runtime before responding with a 503
+ *   }
+ * </pre>
+ *
+ * The filters, not found and web socket handlers remain on the runtime that started the server.
+ *
+ * @author Tony
+ *
+ */
+public class RuntimePool {
+
+    /**
+     * The runtime being loaded on the current thread, whose {@link WebApp} has not yet been started
+     */
+    private static final ThreadLocal<PooledRuntime> loading = new ThreadLocal<PooledRuntime>();
+
+    /**
+     * Evaluates the application script in a runtime
+     */
+    static interface Loader {
+
+        /**
+         * @param runtime
+         * @return the result of the application script
+         * @throws Exception
+         */
+        LeoObject load(Leola runtime) throws Exception;
+    }
+
+    /**
+     * An isolated runtime and the {@link WebApp} its application script built
+     */
+    public static class PooledRuntime {
+        private final int id;
+        private final Leola runtime;
+        private WebApp app;
+
+        private final LongAdder requests;
+        private final LongAdder busyNanos;
+        private volatile boolean busy;
+        private long acquiredAt;
+
+        PooledRuntime(int id, Leola runtime) {
+            this.id = id;
+            this.runtime = runtime;
+            this.requests = new LongAdder();
+            this.busyNanos = new LongAdder();
+        }
+
+        /**
+         * @return the {@link WebApp} this runtime's application script built
+         */
+        public WebApp getApp() {
+            return this.app;
+        }
+
+        /**
+         * @return the {@link Leola} runtime
+         */
+        public Leola getRuntime() {
+            return this.runtime;
+        }
+
+        /**
+         * Resolves the request against this runtime's routes
+         *
+         * @param method
+         * @param path
+         * @return the {@link RouteMatch} from this runtime's {@link WebApp}
+         */
+        public RouteMatch resolve(String method, String path) {
+            return this.app.getRoutingTable().resolve(method, path);
+        }
+
+        LeoMap getStatistics() {
+            LeoMap stats = new LeoMap();
+            stats.putByString("id", LeoInteger.valueOf(this.id));
+            stats.putByString("busy", LeoBoolean.valueOf(this.busy));
+            stats.putByString("requests", LeoLong.valueOf(this.requests.sum()));
+            stats.putByString("busyMs", LeoLong.valueOf(TimeUnit.NANOSECONDS.toMillis(this.busyNanos.sum())));
+            return stats;
+        }
+    }
+
+    private final List<PooledRuntime> runtimes;
+    private final BlockingQueue<PooledRuntime> available;
+    private final long acquireTimeoutMs;
+
+    private final LongAdder timeouts;
+
+    /**
+     * Creates the runtimes, each of which evaluates the supplied application script and runs its warm up handler
+     * (see {@link WebApp#warmUpHandler(LeoObject)}).
+     *
+     * @param script the application script
+     * @param config the <code>runtimes</code> configuration
+     * @throws Exception if a runtime fails to evaluate the script
+     */
+    public RuntimePool(File script, LeoMap config) throws Exception {
+        this(script.toString(), config, runtime -> runtime.eval(script));
+    }
+
+    /**
+     * Creates the runtimes, each of which is loaded by the supplied {@link Loader}
+     *
+     * @param script the name of the application script
+     * @param config the <code>runtimes</code> configuration
+     * @param loader evaluates the application script in each runtime
+     * @throws Exception if a runtime fails to evaluate the script
+     */
+    RuntimePool(String script, LeoMap config, Loader loader) throws Exception {
+        int size = config.getInt("size");
+        if(size < 1) {
+            throw new IllegalArgumentException("Invalid runtimes configuration: " + config);
+        }
+
+        this.acquireTimeoutMs = config.getByString("acquireTimeoutMs").asLong();
+        this.runtimes = new ArrayList<PooledRuntime>(size);
+        this.available = new ArrayBlockingQueue<PooledRuntime>(size);
+        this.timeouts = new LongAdder();
+
+        for(int i = 0; i < size; i++) {
+            PooledRuntime pooled = load(i, script, loader);
+            this.runtimes.add(pooled);
+            this.available.add(pooled);
+        }
+    }
+
+    /**
+     * Evaluates the application script in a new runtime
+     *
+     * @param id
+     * @param script
+     * @param loader
+     * @return the {@link PooledRuntime}
+     * @throws Exception
+     */
+    private static PooledRuntime load(int id, String script, Loader loader) throws Exception {
+        PooledRuntime pooled = new PooledRuntime(id, new Leola());
+
+        loading.set(pooled);
+        try {
+            LeoObject result = loader.load(pooled.runtime);
+            if(result != null && result.isError()) {
+                throw new IllegalStateException("Error loading runtime " + id + ": " + result);
+            }
+        }
+        finally {
+            loading.remove();
+        }
+
+        if(pooled.app == null) {
+            throw new IllegalStateException("The script '" + script + "' did not start a WebApp in runtime " + id);
+        }
+
+        pooled.app.getRoutingTable().compile();
+        pooled.app.warmUp();
+        return pooled;
+    }
+
+    /**
+     * @return true if a runtime of a {@link RuntimePool} is being loaded on the current thread
+     */
+    static boolean isLoading() {
+        return loading.get() != null;
+    }
+
+    /**
+     * Hands the supplied {@link WebApp} to the runtime being loaded on the current thread, in place of starting a server.
+     *
+     * @param app
+     * @return true if the {@link WebApp} was built by a pooled runtime, and should therefore not start a server
+     */
+    static boolean register(WebApp app) {
+        PooledRuntime pooled = loading.get();
+        if(pooled == null) {
+            return false;
+        }
+
+        if(pooled.app == null) {
+            pooled.app = app;
+        }
+        return true;
+    }
+
+    /**
+     * Waits up to the <code>acquireTimeoutMs</code> for a free runtime.  The runtime must be returned with
+     * {@link #release(PooledRuntime)}.
+     *
+     * @return the free runtime, or empty if none became free in time
+     * @throws InterruptedException
+     */
+    public Optional<PooledRuntime> acquire() throws InterruptedException {
+        PooledRuntime pooled = this.available.poll(this.acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        if(pooled == null) {
+            this.timeouts.increment();
+            return Optional.empty();
+        }
+
+        pooled.busy = true;
+        pooled.acquiredAt = System.nanoTime();
+        return Optional.of(pooled);
+    }
+
+    /**
+     * Returns the runtime to the pool
+     *
+     * @param pooled
+     */
+    public void release(PooledRuntime pooled) {
+        pooled.requests.increment();
+        pooled.busyNanos.add(System.nanoTime() - pooled.acquiredAt);
+        pooled.busy = false;
+
+        this.available.offer(pooled);
+    }
+
+    /**
+     * The statistics of this pool:
+     *
+     * <ul>
+     *  <li><b>size</b> - the number of runtimes</li>
+     *  <li><b>available</b> - the number of free runtimes</li>
+     *  <li><b>timeouts</b> - the number of requests rejected because no runtime became free in time</li>
+     *  <li><b>runtimes</b> - for each runtime, its <b>id</b>, whether it is <b>busy</b>, the number of <b>requests</b> it handled and
+     *  the total time, in milliseconds, it was busy (<b>busyMs</b>)</li>
+     * </ul>
+     *
+     * @return the statistics
+     */
+    public LeoMap getStatistics() {
+        LeoArray runtimeStats = new LeoArray();
+        this.runtimes.forEach(pooled -> runtimeStats.add(pooled.getStatistics()));
+
+        LeoMap stats = new LeoMap();
+        stats.putByString("size", LeoInteger.valueOf(this.runtimes.size()));
+        stats.putByString("available", LeoInteger.valueOf(this.available.size()));
+        stats.putByString("timeouts", LeoLong.valueOf(this.timeouts.sum()));
+        stats.putByString("runtimes", runtimeStats);
+        return stats;
+    }
+
+    /**
+     * Shuts down the {@link WebApp} of each runtime
+     */
+    public void shutdown() {
+        this.runtimes.forEach(pooled -> pooled.app.shutdown());
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Logger;
+
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.AbstractHTTP2ServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.SecureRequestCustomizer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.ExecutorThreadPool;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import leola.vm.types.LeoMap;
+import leola.vm.types.LeoObject;
+
+/**
+ * Builds the Jetty {@link Server} of a {@link WebApp}, its thread pool and connectors, from the <code>server</code> configuration:
+ *
+ * <pre>
+ *   server -> {
+ *      minThreads -> 8, // the minimum number of server threads
+ *      maxThreads -> 200, // the maximum number of server threads, at least minThreads
+ *      threadIdleTimeout -> 60000, // the number of milliseconds an idle server thread is kept above minThreads
+ *      acceptors -> -1, // the number of threads accepting connections, -1 to derive it from the number of processors
+ *      selectors -> -1, // the number of threads selecting connections, -1 to derive it from the number of processors
+ *      idleTimeout -> 30000, // the number of milliseconds a connection may be idle before it is closed
+ *      acceptQueueSize -> 0, // the backlog of connections waiting to be accepted, 0 for the operating system default
+ *      outputBufferSize -> 32768, // the size, in bytes, of the response buffer
+ *      requestHeaderSize -> 8192, // the maximum size, in bytes, of the request headers
+ *      responseHeaderSize -> 8192, // the maximum size, in bytes, of the response headers
+ *      sendDateHeader -> true, // whether responses include the Date header
+ *      sendServerVersion -> true, // whether responses include the Server header
+ *      stopTimeout -> 30000, // the number of milliseconds a shutdown waits for in-flight requests and web sockets to finish, 0 to stop at once
+ *      http2 -> { // optional, enables HTTP/2
+ *          h2c -> true, // whether the HTTP connector accepts cleartext HTTP/2 (prior knowledge or upgrade)
+ *          h2 -> true, // whether the HTTPS connector negotiates HTTP/2 with ALPN
+ *          maxConcurrentStreams -> 128, // the number of streams a client may open at once on a connection, -1 for no limit
+ *          initialStreamSendWindow -> 65535, // the initial flow control window, in bytes, of each stream
+ *          maxDynamicTableSize -> 4096, // the size, in bytes, of the HPACK header compression table
+ *      }
+ *   }
+ * </pre>
+ *
+ * The thread settings are ignored when the application handles requests on virtual threads.  Negotiating HTTP/2 over TLS
+ * requires ALPN; on Java 8 the <code>alpn-boot</code> jar matching the JVM must be on the boot class path, otherwise the
+ * HTTPS connector falls back to HTTP/1.1.
+ *
+ * @author Tony
+ *
+ */
+public class ServerFactory {
+
+    private static final Logger LOG = Logger.getLogger(ServerFactory.class.getName());
+
+    private final LeoMap config;
+    private final Optional<LeoMap> http2;
+
+    /**
+     * @param config the <code>server</code> configuration
+     * @throws IllegalArgumentException if the configuration is invalid
+     */
+    public ServerFactory(LeoMap config) {
+        this.config = config;
+
+        int minThreads = config.getInt("minThreads");
+        int maxThreads = config.getInt("maxThreads");
+        if(minThreads < 1 || maxThreads < minThreads) {
+            throw new IllegalArgumentException("Invalid server configuration, 'maxThreads' must be at least 'minThreads' which must be at least 1: " + config);
+        }
+
+        if(config.getInt("acceptors") < -1 || config.getInt("selectors") < -1 || config.getInt("selectors") == 0) {
+            throw new IllegalArgumentException("Invalid server configuration, 'acceptors' must be at least 0 and 'selectors' at least 1, or -1 for the default: " + config);
+        }
+
+        for(String key : new String[] { "threadIdleTimeout", "idleTimeout", "acceptQueueSize", "stopTimeout" }) {
+            if(getLong(key) < 0) {
+                throw new IllegalArgumentException("Invalid server configuration, '" + key + "' must not be negative: " + config);
+            }
+        }
+
+        for(String key : new String[] { "outputBufferSize", "requestHeaderSize", "responseHeaderSize" }) {
+            if(config.getInt(key) < 1) {
+                throw new IllegalArgumentException("Invalid server configuration, '" + key + "' must be positive: " + config);
+            }
+        }
+
+        this.http2 = config.containsKeyByString("http2")
+                ? Optional.of(config.getByString("http2").as())
+                : Optional.empty();
+
+        this.http2.ifPresent(http2 -> {
+            int maxConcurrentStreams = http2.getInt("maxConcurrentStreams");
+            if(maxConcurrentStreams == 0 || maxConcurrentStreams < -1) {
+                throw new IllegalArgumentException("Invalid http2 configuration, 'maxConcurrentStreams' must be positive, or -1 for no limit: " + http2);
+            }
+            if(http2.getInt("initialStreamSendWindow") < 1 || http2.getInt("maxDynamicTableSize") < 0) {
+                throw new IllegalArgumentException("Invalid http2 configuration, 'initialStreamSendWindow' must be positive and 'maxDynamicTableSize' must not be negative: " + http2);
+            }
+        });
+    }
+
+    /**
+     * @param key
+     * @return true if HTTP/2 is enabled and the supplied http2 setting is true
+     */
+    private boolean isHttp2(String key) {
+        return this.http2.map(http2 -> LeoObject.isTrue(http2.getByString(key))).orElse(false);
+    }
+
+    private long getLong(String key) {
+        return this.config.getByString(key).asLong();
+    }
+
+    /**
+     * @return the number of milliseconds a shutdown waits for in-flight requests and web sockets to finish
+     */
+    public long getStopTimeout() {
+        return getLong("stopTimeout");
+    }
+
+    /**
+     * Creates the {@link Server} and its HTTP connector.  The supplied handler is wrapped in a {@link StatisticsHandler}, which
+     * tracks the in-flight requests so that stopping the {@link Server} waits up to the <code>stopTimeout</code> for them to finish.
+     *
+     * @param port the port of the HTTP connector
+     * @param handler handles the requests
+     * @param executor runs the server tasks in place of a pool of server threads (i.e., virtual threads), or null
+     * @return the {@link Server}
+     */
+    public Server newServer(int port, Handler handler, ExecutorService executor) {
+        ThreadPool threadPool = null;
+        if(executor != null) {
+            threadPool = new ExecutorThreadPool(executor);
+        }
+        else {
+            QueuedThreadPool queuedThreadPool = new QueuedThreadPool(this.config.getInt("maxThreads"), this.config.getInt("minThreads"),
+                    (int)getLong("threadIdleTimeout"));
+            queuedThreadPool.setName("leola-web");
+            threadPool = queuedThreadPool;
+        }
+
+        Server server = new Server(threadPool);
+
+        StatisticsHandler statistics = new StatisticsHandler();
+        statistics.setHandler(handler);
+        server.setHandler(statistics);
+        server.setStopTimeout(getStopTimeout());
+
+        HttpConfiguration httpConfig = newHttpConfiguration();
+        ServerConnector httpConnector = isHttp2("h2c")
+                ? newConnector(server, new HttpConnectionFactory(httpConfig), configure(new HTTP2CServerConnectionFactory(httpConfig)))
+                : newConnector(server, new HttpConnectionFactory(httpConfig));
+        httpConnector.setPort(port);
+        server.addConnector(httpConnector);
+
+        return server;
+    }
+
+    /**
+     * Creates an HTTPS connector for the supplied {@link Server}
+     *
+     * @param server
+     * @param sslContextFactory
+     * @param port the port of the HTTPS connector
+     * @return the connector
+     */
+    public ServerConnector newSslConnector(Server server, SslContextFactory sslContextFactory, int port) {
+        HttpConfiguration httpsConfig = newHttpConfiguration();
+        httpsConfig.addCustomizer(new SecureRequestCustomizer());
+
+        Optional<ALPNServerConnectionFactory> alpn = isHttp2("h2") ? newAlpn() : Optional.empty();
+        if(alpn.isPresent()) {
+            sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+            sslContextFactory.setUseCipherSuitesOrder(true);
+
+            ServerConnector httpsConnector = newConnector(server,
+                    new SslConnectionFactory(sslContextFactory, alpn.get().getProtocol()),
+                    alpn.get(),
+                    configure(new HTTP2ServerConnectionFactory(httpsConfig)),
+                    new HttpConnectionFactory(httpsConfig));
+            httpsConnector.setPort(port);
+            return httpsConnector;
+        }
+
+        ServerConnector httpsConnector = newConnector(server,
+                new SslConnectionFactory(sslContextFactory, "HTTP/1.1"),
+                new HttpConnectionFactory(httpsConfig));
+        httpsConnector.setPort(port);
+        return httpsConnector;
+    }
+
+    /**
+     * Negotiates HTTP/2, falling back to HTTP/1.1 for clients that do not support it
+     *
+     * @return the ALPN connection factory, or empty if ALPN is not available in this JVM
+     */
+    private static Optional<ALPNServerConnectionFactory> newAlpn() {
+        try {
+            ALPNServerConnectionFactory alpn = new ALPNServerConnectionFactory("h2", HttpVersion.HTTP_1_1.asString());
+            alpn.setDefaultProtocol(HttpVersion.HTTP_1_1.asString());
+            return Optional.of(alpn);
+        }
+        catch(IllegalStateException | LinkageError e) {
+            LOG.warning("ALPN is not available, the HTTPS connector will only support HTTP/1.1: " + e);
+            return Optional.empty();
+        }
+    }
+
+    private <T extends AbstractHTTP2ServerConnectionFactory> T configure(T factory) {
+        LeoMap http2 = this.http2.get();
+        factory.setMaxConcurrentStreams(http2.getInt("maxConcurrentStreams"));
+        factory.setInitialStreamSendWindow(http2.getInt("initialStreamSendWindow"));
+        factory.setMaxDynamicTableSize(http2.getInt("maxDynamicTableSize"));
+        return factory;
+    }
+
+    private ServerConnector newConnector(Server server, ConnectionFactory ... factories) {
+        ServerConnector connector = new ServerConnector(server, this.config.getInt("acceptors"), this.config.getInt("selectors"), factories);
+        connector.setIdleTimeout(getLong("idleTimeout"));
+        connector.setAcceptQueueSize(this.config.getInt("acceptQueueSize"));
+        return connector;
+    }
+
+    private HttpConfiguration newHttpConfiguration() {
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        httpConfig.setOutputBufferSize(this.config.getInt("outputBufferSize"));
+        httpConfig.setRequestHeaderSize(this.config.getInt("requestHeaderSize"));
+        httpConfig.setResponseHeaderSize(this.config.getInt("responseHeaderSize"));
+        httpConfig.setSendDateHeader(LeoObject.isTrue(this.config.getByString("sendDateHeader")));
+        httpConfig.setSendServerVersion(LeoObject.isTrue(this.config.getByString("sendServerVersion")));
+        return httpConfig;
+    }
+}
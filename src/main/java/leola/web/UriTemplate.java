@@ -1,184 +1,331 @@
-/*
- * Copyright 2002-2014 the original author or authors.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package leola.web;
-
-import java.io.Serializable;
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-
-/**
- * Represents a URI template. A URI template is a URI-like String that contains variables enclosed
- * by braces ({@code {}}), which can be expanded to produce an actual URI.
- *
- * <p>See {@link #expand(Map)}, {@link #expand(Object[])}, and {@link #match(String)} for example usages.
- *
- * @author Arjen Poutsma
- * @author Juergen Hoeller
- * @since 3.0
- * @see <a href="http://bitworking.org/projects/URI-Templates/">URI Templates</a>
- */
-@SuppressWarnings("serial")
-public class UriTemplate implements Serializable {
-
-	/** Captures URI template variable names. */
-	private static final Pattern NAMES_PATTERN = Pattern.compile("\\{([^/]+?)\\}");
-
-	/** Replaces template variables in the URI template. */
-	private static final String DEFAULT_VARIABLE_PATTERN = "(.+)";
-
-	private final List<String> variableNames;
-
-	private final Pattern matchPattern;
-
-	private final String uriTemplate;
-
-
-	/**
-	 * Construct a new {@code UriTemplate} with the given URI String.
-	 * @param uriTemplate the URI template string
-	 */
-	public UriTemplate(String uriTemplate) {
-		Parser parser = new Parser(uriTemplate);
-		this.uriTemplate = uriTemplate;
-		this.variableNames = parser.getVariableNames();
-		this.matchPattern = parser.getMatchPattern();
-	}
-
-	/**
-     * @return the matchPattern
-     */
-    public Pattern getMatchPattern() {
-        return matchPattern;
-    }
-
-	/**
-	 * Return the names of the variables in the template, in order.
-	 * @return the template variable names
-	 */
-	public List<String> getVariableNames() {
-		return this.variableNames;
-	}
-
-
-	/**
-	 * Indicate whether the given URI matches this template.
-	 * @param uri the URI to match to
-	 * @return {@code true} if it matches; {@code false} otherwise
-	 */
-	public boolean matches(String uri) {
-		if (uri == null) {
-			return false;
-		}
-		Matcher matcher = this.matchPattern.matcher(uri);
-		return matcher.matches();
-	}
-
-	/**
-	 * Match the given URI to a map of variable values. Keys in the returned map are variable names,
-	 * values are variable values, as occurred in the given URI.
-	 * <p>Example:
-	 * <pre class="code">
-	 * UriTemplate template = new UriTemplate("http://example.com/hotels/{hotel}/bookings/{booking}");
-	 * System.out.println(template.match("http://example.com/hotels/1/bookings/42"));
-	 * </pre>
-	 * will print: <blockquote>{@code {hotel=1, booking=42}}</blockquote>
-	 * @param uri the URI to match to
-	 * @return a map of variable values
-	 */
-	public Map<String, String> match(String uri) {		
-		Map<String, String> result = new LinkedHashMap<String, String>(this.variableNames.size());
-		Matcher matcher = this.matchPattern.matcher(uri);
-		if (matcher.find()) {
-			for (int i = 1; i <= matcher.groupCount(); i++) {
-				String name = this.variableNames.get(i - 1);
-				String value = matcher.group(i);
-				result.put(name, value);
-			}
-		}
-		return result;
-	}
-
-	@Override
-	public String toString() {
-		return this.uriTemplate;
-	}
-
-
-	/**
-	 * Static inner class to parse URI template strings into a matching regular expression.
-	 */
-	private static class Parser {
-
-		private final List<String> variableNames = new LinkedList<String>();
-
-		private final StringBuilder patternBuilder = new StringBuilder();
-
-		private Parser(String uriTemplate) {			
-			Matcher matcher = NAMES_PATTERN.matcher(uriTemplate);
-			int end = 0;
-			while (matcher.find()) {
-				this.patternBuilder.append(quote(uriTemplate, end, matcher.start()));
-				String match = matcher.group(1);
-				int colonIdx = match.indexOf(':');
-				if (colonIdx == -1) {
-					this.patternBuilder.append(DEFAULT_VARIABLE_PATTERN);
-					this.variableNames.add(match);
-				}
-				else {
-					if (colonIdx + 1 == match.length()) {
-						throw new IllegalArgumentException(
-								"No custom regular expression specified after ':' in \"" + match + "\"");
-					}
-					String variablePattern = match.substring(colonIdx + 1, match.length());
-					this.patternBuilder.append('(');
-					this.patternBuilder.append(variablePattern);
-					this.patternBuilder.append(')');
-					String variableName = match.substring(0, colonIdx);
-					this.variableNames.add(variableName);
-				}
-				end = matcher.end();
-			}
-			this.patternBuilder.append(quote(uriTemplate, end, uriTemplate.length()));
-			int lastIdx = this.patternBuilder.length() - 1;
-			if (lastIdx >= 0 && this.patternBuilder.charAt(lastIdx) == '/') {
-				this.patternBuilder.deleteCharAt(lastIdx);
-			}
-		}
-
-		private String quote(String fullPath, int start, int end) {
-			if (start == end) {
-				return "";
-			}
-			return Pattern.quote(fullPath.substring(start, end));
-		}
-
-		private List<String> getVariableNames() {
-			return Collections.unmodifiableList(this.variableNames);
-		}
-
-		private Pattern getMatchPattern() {
-			return Pattern.compile(this.patternBuilder.toString());
-		}
-	}
-
+/*
+ * Copyright 2002-2014 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package leola.web;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Represents a URI template. A URI template is a URI-like String that contains variables enclosed
+ * by braces ({@code {}}), which can be expanded to produce an actual URI.
+ *
+ * <p>See {@link #expand(Map)}, {@link #expand(Object[])}, and {@link #match(String)} for example usages.
+ *
+ * <p>Templates that only contain plain variables (i.e., {@code /users/{id}/orders/{orderId}}) are compiled
+ * into a {@link SegmentMatcher}, which matches using {@code indexOf}/{@code regionMatches} and does not allocate
+ * a {@link Matcher}.  A regular expression is only used for templates with {@code {name:regex}} variables.
+ * A plain variable matches a single path segment, that is, it does not span a {@code /}.
+ *
+ * @author Arjen Poutsma
+ * @author Juergen Hoeller
+ * @since 3.0
+ * @see <a href="http://bitworking.org/projects/URI-Templates/">URI Templates</a>
+ */
+@SuppressWarnings("serial")
+public class UriTemplate implements Serializable {
+
+	/** Captures URI template variable names. */
+	private static final Pattern NAMES_PATTERN = Pattern.compile("\\{([^}]+?)\\}");
+
+	/** Replaces template variables in the URI template. */
+	private static final String DEFAULT_VARIABLE_PATTERN = "([^/]+)";
+
+	private final List<String> variableNames;
+
+	private final String matchRegex;
+
+	private final SegmentMatcher segmentMatcher;
+
+	private volatile Pattern matchPattern;
+
+	private final String uriTemplate;
+
+
+	/**
+	 * Construct a new {@code UriTemplate} with the given URI String.
+	 * @param uriTemplate the URI template string
+	 */
+	public UriTemplate(String uriTemplate) {
+		Parser parser = new Parser(uriTemplate);
+		this.uriTemplate = uriTemplate;
+		this.variableNames = parser.getVariableNames();
+		this.matchRegex = parser.getMatchRegex();
+		this.segmentMatcher = parser.getSegmentMatcher();
+		if (this.segmentMatcher == null) {
+			this.matchPattern = Pattern.compile(this.matchRegex);
+		}
+	}
+
+	/**
+     * @return the matchPattern, which for templates compiled into a {@link SegmentMatcher} is only
+     * compiled on demand
+     */
+    public Pattern getMatchPattern() {
+        Pattern pattern = this.matchPattern;
+        if (pattern == null) {
+            pattern = Pattern.compile(this.matchRegex);
+            this.matchPattern = pattern;
+        }
+        return pattern;
+    }
+
+	/**
+	 * @return {@code true} if this template is matched without the use of a regular expression
+	 */
+	public boolean isRegexFree() {
+		return this.segmentMatcher != null;
+	}
+
+	/**
+	 * Return the names of the variables in the template, in order.
+	 * @return the template variable names
+	 */
+	public List<String> getVariableNames() {
+		return this.variableNames;
+	}
+
+
+	/**
+	 * Indicate whether the given URI matches this template.
+	 * @param uri the URI to match to
+	 * @return {@code true} if it matches; {@code false} otherwise
+	 */
+	public boolean matches(String uri) {
+		if (uri == null) {
+			return false;
+		}
+		return match(uri, 0, uri.length(), null, 0);
+	}
+
+	/**
+	 * Match the given URI to a map of variable values. Keys in the returned map are variable names,
+	 * values are variable values, as occurred in the given URI.
+	 * <p>Example:
+	 * <pre class="code">
+	 * UriTemplate template = new UriTemplate("http://example.com/hotels/{hotel}/bookings/{booking}");
+	 * System.out.println(template.match("http://example.com/hotels/1/bookings/42"));
+	 * </pre>
+	 * will print: <blockquote>{@code {hotel=1, booking=42}}</blockquote>
+	 * <p>Unlike {@link #matches(String)}, the template only has to be found within the URI, so a URI with a
+	 * leading prefix or trailing segments (i.e., {@code /context/hotels/1/bookings/42/rooms}) still yields its values.
+	 * @param uri the URI to match to
+	 * @return a map of variable values
+	 */
+	public Map<String, String> match(String uri) {		
+		Map<String, String> result = new LinkedHashMap<String, String>(this.variableNames.size());
+		if (uri == null) {
+			return result;
+		}
+		Matcher matcher = getMatchPattern().matcher(uri);
+		if (matcher.find()) {
+			int size = Math.min(this.variableNames.size(), matcher.groupCount());
+			for (int i = 0; i < size; i++) {
+				result.put(this.variableNames.get(i), matcher.group(i + 1));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Match the region of the given URI against this template, storing the variable values in the supplied array.
+	 * A single trailing {@code /} in the region is ignored.
+	 * @param uri the URI to match to
+	 * @param start the start index of the region (inclusive)
+	 * @param end the end index of the region (exclusive)
+	 * @param values the array in which to store the variable values (in order of {@link #getVariableNames()}), may be null
+	 * @param offset the index into the values array to start storing values
+	 * @return {@code true} if the region matches; {@code false} otherwise
+	 */
+	boolean match(String uri, int start, int end, String[] values, int offset) {
+		if (end > start && uri.charAt(end - 1) == '/') {
+			end--;
+		}
+
+		if (this.segmentMatcher != null) {
+			return this.segmentMatcher.match(uri, start, end, values, offset);
+		}
+
+		Matcher matcher = this.matchPattern.matcher(uri).region(start, end);
+		if (!matcher.matches()) {
+			return false;
+		}
+		if (values != null) {
+			int size = Math.min(this.variableNames.size(), matcher.groupCount());
+			for (int i = 0; i < size; i++) {
+				values[offset + i] = matcher.group(i + 1);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return this.uriTemplate;
+	}
+
+
+	/**
+	 * Matches a template that only contains plain variables, without the use of a regular expression.  The
+	 * template is broken into the literals that surround each variable, a variable spans up to the next
+	 * literal within the current path segment.
+	 */
+	private static class SegmentMatcher implements Serializable {
+
+		/** literals[i] precedes variable i, the last literal trails the last variable */
+		private final String[] literals;
+
+		private SegmentMatcher(List<String> literals) {
+			this.literals = literals.toArray(new String[literals.size()]);
+		}
+
+		private boolean match(String uri, int start, int end, String[] values, int offset) {
+			String literal = this.literals[0];
+			if (!regionMatches(uri, start, end, literal)) {
+				return false;
+			}
+
+			int pos = start + literal.length();
+			int variables = this.literals.length - 1;
+			for (int i = 0; i < variables; i++) {
+				String next = this.literals[i + 1];
+
+				int segmentEnd = uri.indexOf('/', pos);
+				if (segmentEnd < 0 || segmentEnd > end) {
+					segmentEnd = end;
+				}
+
+				int variableEnd;
+				if (next.isEmpty() || next.charAt(0) == '/') {
+					variableEnd = segmentEnd;
+				}
+				else {
+					int slash = next.indexOf('/');
+					String prefix = (slash < 0) ? next : next.substring(0, slash);
+					variableEnd = uri.lastIndexOf(prefix, segmentEnd - prefix.length());
+				}
+
+				if (variableEnd <= pos) {
+					return false;
+				}
+
+				if (values != null) {
+					values[offset + i] = uri.substring(pos, variableEnd);
+				}
+
+				if (!regionMatches(uri, variableEnd, end, next)) {
+					return false;
+				}
+				pos = variableEnd + next.length();
+			}
+
+			return pos == end;
+		}
+
+		private static boolean regionMatches(String uri, int start, int end, String literal) {
+			int length = literal.length();
+			return start + length <= end && uri.regionMatches(start, literal, 0, length);
+		}
+	}
+
+
+	/**
+	 * Static inner class to parse URI template strings into a matching regular expression and, if the template
+	 * only contains plain variables, a {@link SegmentMatcher}.
+	 */
+	private static class Parser {
+
+		private final List<String> variableNames = new LinkedList<String>();
+
+		private final StringBuilder patternBuilder = new StringBuilder();
+
+		private final List<String> literals = new LinkedList<String>();
+
+		private boolean regexFree = true;
+
+		private Parser(String uriTemplate) {			
+			Matcher matcher = NAMES_PATTERN.matcher(uriTemplate);
+			int end = 0;
+			while (matcher.find()) {
+				this.patternBuilder.append(quote(uriTemplate, end, matcher.start()));
+				String literal = uriTemplate.substring(end, matcher.start());
+				if (literal.isEmpty() && !this.literals.isEmpty()) {
+					/* adjacent variables can only be told apart by a regular expression */
+					this.regexFree = false;
+				}
+				this.literals.add(literal);
+				String match = matcher.group(1);
+				int colonIdx = match.indexOf(':');
+				if (colonIdx == -1) {
+					this.patternBuilder.append(DEFAULT_VARIABLE_PATTERN);
+					this.variableNames.add(match);
+				}
+				else {
+					if (colonIdx + 1 == match.length()) {
+						throw new IllegalArgumentException(
+								"No custom regular expression specified after ':' in \"" + match + "\"");
+					}
+					String variablePattern = match.substring(colonIdx + 1, match.length());
+					this.patternBuilder.append('(');
+					this.patternBuilder.append(variablePattern);
+					this.patternBuilder.append(')');
+					String variableName = match.substring(0, colonIdx);
+					this.variableNames.add(variableName);
+					this.regexFree = false;
+				}
+				end = matcher.end();
+			}
+			this.patternBuilder.append(quote(uriTemplate, end, uriTemplate.length()));
+			int lastIdx = this.patternBuilder.length() - 1;
+			if (lastIdx >= 0 && this.patternBuilder.charAt(lastIdx) == '/') {
+				this.patternBuilder.deleteCharAt(lastIdx);
+			}
+
+			String literal = uriTemplate.substring(end);
+			if (literal.endsWith("/")) {
+				literal = literal.substring(0, literal.length() - 1);
+			}
+			this.literals.add(literal);
+		}
+
+		private String quote(String fullPath, int start, int end) {
+			if (start == end) {
+				return "";
+			}
+			return Pattern.quote(fullPath.substring(start, end));
+		}
+
+		private List<String> getVariableNames() {
+			return Collections.unmodifiableList(this.variableNames);
+		}
+
+		private String getMatchRegex() {
+			return this.patternBuilder.toString();
+		}
+
+		private SegmentMatcher getSegmentMatcher() {
+			return this.regexFree ? new SegmentMatcher(this.literals) : null;
+		}
+	}
+
 }
\ No newline at end of file
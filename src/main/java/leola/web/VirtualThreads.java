@@ -0,0 +1,45 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads, for the <code>executor -> "virtual"</code> mode of a {@link WebApp}.  Virtual threads require JDK 21; this
+ * is the Java 8 version, which does not support them.  The <code>jdk21</code> build profile compiles the version under
+ * <code>src/main/java21</code> into the multi-release jar, which is used in its place when running on JDK 21 or later.
+ *
+ * @author Tony
+ *
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if virtual threads are supported by this runtime
+     */
+    static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * @param name the prefix of the thread names
+     * @return a {@link ThreadFactory} that creates virtual threads, if supported
+     */
+    static Optional<ThreadFactory> newThreadFactory(String name) {
+        return Optional.empty();
+    }
+
+    /**
+     * @param name the prefix of the thread names
+     * @return an {@link ExecutorService} that runs each task on a new virtual thread, if supported
+     */
+    static Optional<ExecutorService> newExecutor(String name) {
+        return Optional.empty();
+    }
+}
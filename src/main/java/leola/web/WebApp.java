@@ -1,864 +1,1626 @@
-/*
- * see license.txt
- */
-package leola.web;
-
-import java.io.File;
-import java.io.IOException;
-import java.io.StringReader;
-import java.net.URI;
-import java.util.ArrayList;
-import java.util.EnumSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.function.Function;
-import java.util.logging.Logger;
-
-import javax.servlet.DispatcherType;
-import javax.servlet.MultipartConfigElement;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-
-import org.eclipse.jetty.server.*;
-import org.eclipse.jetty.server.handler.HandlerList;
-import org.eclipse.jetty.server.handler.ResourceHandler;
-import org.eclipse.jetty.servlet.FilterHolder;
-import org.eclipse.jetty.servlet.ServletHolder;
-import org.eclipse.jetty.util.ssl.SslContextFactory;
-import org.eclipse.jetty.webapp.WebAppContext;
-
-import leola.vm.Leola;
-import leola.vm.lib.LeolaIgnore;
-import leola.vm.types.LeoArray;
-import leola.vm.types.LeoBoolean;
-import leola.vm.types.LeoInteger;
-import leola.vm.types.LeoLong;
-import leola.vm.types.LeoMap;
-import leola.vm.types.LeoObject;
-import leola.vm.types.LeoString;
-import leola.vm.types.LeoUserFunction;
-import leola.web.RoutingTable.Route;
-import leola.web.event.EventDispatcher;
-import leola.web.filewatcher.FileModifiedEvent;
-import leola.web.filewatcher.FileModifiedEvent.ModificationType;
-import leola.web.filewatcher.FileModifiedListener;
-import leola.web.filewatcher.FileWatcher;
-import leola.web.templates.TemplateEngine;
-import leola.web.templates.handlebars.HandlebarsTemplateEngine;
-import leola.web.templates.mustache.MustacheTemplateEngine;
-
-/**
- * A {@link WebApp} is an instance of a web application. A {@link WebApp} contains
- * web {@link Route}s and our bound to {@link URI} and are executed to a corresponding {@link LeoObject} function.
- * 
- * @author Tony
- *
- */
-public class WebApp {
-    
-    /**
-     * Not found web-page
-     */
-    private static final String NOT_FOUND = "<html><body><h2>404 Not found</h2></body></html>";
-    
-    /**
-     * The bounded Leola runtime
-     */
-    private Leola runtime;
-    
-    
-    /**
-     * The routing table
-     */
-    private RoutingTable routes;
-    
-    /**
-     * The embedded web server
-     */
-    private Server server;
-    
-    /**
-     * The application configuration
-     */
-    private LeoMap config;
-    
-    private Optional<LeoObject> errorHandler;
-    private Optional<LeoObject> notFoundHandler;
-    private Optional<LeoObject> contextHandler;
-    private Optional<LeoObject> shutdownHandler;
-    
-    private List<LeoMap> webSocketConfigs;
-    private List<WebFilter> filters;
-    
-    /**
-     * For Auto-Reload enabled applications, this will
-     * watch the Resource Directory for any leola scripts to
-     * be reloaded
-     */
-    private FileWatcher fileWatcher;
-    
-    
-    /**
-     * The template engine to use
-     */
-    private TemplateEngine templateEngine;
-    
-    /**
-     * The supplied configuration should have properties:
-     * 
-     * <pre>
-     *   {
-     *      resourceBase -> "", // a String that denotes the home directory of where to look for html/css/javascript files
-     *      context -> "", // a String that denotes the context of the web application: http://localhost:8121/context
-     *      port -> 8181, // an Integer that denotes the port number the web server should use
-     *   }
-     * </pre>
-     * 
-     * @param runtime
-     * @param suppliedConfig
-     */
-    public WebApp(final Leola runtime, LeoMap suppliedConfig) {    
-        this.routes = new RoutingTable();
-        this.errorHandler = Optional.empty();
-        this.notFoundHandler = Optional.empty();
-        this.contextHandler = Optional.empty();
-        this.shutdownHandler = Optional.empty();                
-        
-        this.webSocketConfigs = new ArrayList<LeoMap>();
-        this.filters = new ArrayList<WebFilter>();                
-        
-        Runtime.getRuntime().addShutdownHook(new Thread() {
-            public void run() {
-                try {
-                    shutdown();
-                } catch (Exception e) {
-                }
-            }
-        });
-        
-        config = (suppliedConfig==null) ? new LeoMap() : suppliedConfig;
-        
-        if(!config.containsKeyByString("resourceBase")) {
-        	File executionScript = runtime.getExecutionScript();
-        	if(executionScript != null) {
-        		config.putByString("resourceBase", LeoString.valueOf(executionScript.getParentFile().getAbsolutePath()));
-        	}
-        	else {
-        		config.putByString("resourceBase", LeoString.valueOf(runtime.getWorkingDirectory()));
-        	}
-        }
-        if(!config.containsKeyByString("context")) 
-            config.putByString("context", LeoString.valueOf(""));
-                
-        if(!config.containsKeyByString("welcomeFile")) 
-            config.putByString("welcomeFile", LeoString.valueOf("index.html"));
-        
-        if(!config.containsKeyByString("port")) 
-            config.putByString("port", LeoInteger.valueOf(8121));
-        
-        if(!config.containsKeyByString("showDirectory")) 
-            config.putByString("showDirectory", LeoBoolean.LEOTRUE);
-        
-        if(!config.containsKeyByString("multiPart")) {
-            LeoMap multipart = new LeoMap();
-            config.putByString("multiPart", multipart);
-        }
-        
-        LeoMap multipart = config.getByString("multiPart").as();
-        if(!multipart.containsKeyByString("maxFileSize")) {
-            multipart.putByString("maxFileSize", LeoLong.valueOf(1024 * 1024 * 100));
-        }
-        if(!multipart.containsKeyByString("maxRequestSize")) {
-            multipart.putByString("maxRequestSize", LeoLong.valueOf(1024 * 1024 * 200));
-        }
-        
-        initializeWatcher(runtime);
-        
-        if(config.containsKeyByString("templateEngine")) {
-            LeoObject templateEngine = config.getByString("templateEngine");
-            String type = "mustache";
-            LeoMap tempConfig = new LeoMap();
-            if(templateEngine.isMap()) {
-                tempConfig = templateEngine.as();
-                type = tempConfig.getString("type");
-            }
-            else {
-                type = templateEngine.toString();
-            }
-            
-            switch(type.toLowerCase()) {                
-                case "handlebars": {                    
-                    this.templateEngine = new HandlebarsTemplateEngine(getRootDirectory(), tempConfig);
-                    break;
-                }
-                default: {
-                    this.templateEngine = new MustacheTemplateEngine(this);
-                    break;
-                }
-            }            
-        }
-        else {
-            this.templateEngine = new MustacheTemplateEngine(this);
-        }
-    }
-
-    
-    /**
-     * Initializes the {@link FileWatcher} if enabled.
-     * 
-     * @param runtime
-     */
-    private void initializeWatcher(final Leola runtime) {
-        EventDispatcher eventDispatcher = new EventDispatcher();
-        
-        final File executionScript = runtime.getExecutionScript() != null ? 
-                                        runtime.getExecutionScript() : 
-                                        runtime.getWorkingDirectory();
-        
-        
-        this.fileWatcher = new FileWatcher(eventDispatcher, getRootDirectory(), executionScript.getParentFile());
-        
-        /* If we have autoReload enabled, let's go ahead and register
-         * a FileModificationListener so that we can reload our application
-         */
-        if(config.containsKeyByString("autoReload") && runtime.getExecutionScript() != null ) {
-            
-            if(LeoObject.isTrue(config.getByString("autoReload"))) {
-                eventDispatcher.addEventListener(FileModifiedEvent.class, new FileModifiedListener() {
-                    
-                    @Override
-                    public void onFileModified(FileModifiedEvent event) {                        
-                        if( event.getModType().equals(ModificationType.MODIFIED)) {
-
-                            File file = event.getFile();
-                            if(file.isFile() && file.getName().toLowerCase().endsWith(".leola")) {
-                                try {
-                                    System.out.println("Restarting the server.");
-                                    
-                                    System.out.println("Shutdown of current server.");
-                                    shutdown();
-                                    System.out.println("Shutdown complete.");
-                                    
-                                    System.out.println("Starting new server.");
-                                    
-                                    /* Spawn in a new thread so that we actually
-                                     * return from this function call -- the executionScript
-                                     * blocks because it spawns the web-server
-                                     */
-                                    new Thread( () -> {
-                                        try {
-                                            LeoObject result = runtime.eval(executionScript);
-                                            if(result.isError()) {
-                                                System.out.println("Error restarting: " + result);
-                                            }    
-                                        }
-                                        catch(Exception e) {
-                                            e.printStackTrace();
-                                        }
-                                    }, "leola-web-app-thread").start();
-                                }
-                                catch (Exception e) {
-                                    e.printStackTrace();
-                                }
-                            }
-                        }
-                    }
-                });
-                this.fileWatcher.startWatching();                
-            }
-        }
-    }
-    
-    
-    /**
-     * Sets the {@link TemplateEngine}
-     * 
-     * @param templateEngine
-     * @return this instance for method chaining
-     */
-    public WebApp templateEngine(TemplateEngine templateEngine) {
-        this.templateEngine = templateEngine;
-        return this;
-    }
-    
-    /**
-     * @return the {@link TemplateEngine}
-     */
-    public TemplateEngine getTemplateEngine() {
-        return this.templateEngine;
-    }
-    
-    /**
-     * A convenience method for applying the template with the supplied data
-     * 
-     * @param template the in-lined template
-     * @param data
-     * @return the resolved template
-     * @throws IOException
-     */
-    public String applyTemplate(String template, Object data) throws IOException {
-        return this.templateEngine.getTemplate(new StringReader(template)).apply(data);
-    }
-    
-    /**
-     * @return the {@link Leola} runtime bound to this {@link WebApp}
-     */
-    public Leola getRuntime() {
-        return this.runtime;
-    }
-    
-    /**
-     * @see WebApp#getRootDirectory()
-     * @return the root directory's absolute path
-     */
-    public String rootDir() {
-        return getRootDirectory().getAbsolutePath();
-    }
-    
-    /**
-     * @return the root directory as to where the web application is installed.  In general, this is used
-     * for various modules to start looking for files
-     */
-    public File getRootDirectory() {
-        return new File(config.getString("resourceBase"));
-    }
-    
-    
-    /**
-     * Binds the supplied {@link LeoObject} function to the supplied path.
-     * 
-     * @see WebApp#route(LeoMap, LeoObject)
-     * @param path the route path
-     * @param function the function to execute
-     * @return this {@link WebApp} instance for method chaining
-     */
-    public WebApp get(String path, LeoObject function) {
-        return route(path, "GET", function);
-    }
-    
-    /**
-     * Binds the supplied {@link LeoObject} function to the supplied path.
-     * 
-     * @see WebApp#route(LeoMap, LeoObject)
-     * @param path the route path
-     * @param function the function to execute
-     * @return this {@link WebApp} instance for method chaining
-     */
-    public WebApp post(String path, LeoObject function) {
-        return route(path, "POST", function);
-    }
-    
-    /**
-     * Binds the supplied {@link LeoObject} function to the supplied path.
-     * 
-     * @see WebApp#route(LeoMap, LeoObject)
-     * @param path the route path
-     * @param function the function to execute
-     * @return this {@link WebApp} instance for method chaining
-     */
-    public WebApp delete(String path, LeoObject function) {
-        return route(path, "DELETE", function);
-    }
-    
-    /**
-     * Binds the supplied {@link LeoObject} function to the supplied path.
-     * 
-     * @see WebApp#route(LeoMap, LeoObject)
-     * @param path the route path
-     * @param function the function to execute
-     * @return this {@link WebApp} instance for method chaining
-     */
-    public WebApp put(String path, LeoObject function) {
-        return route(path, "PUT", function);
-    }
-    
-    /**
-     * Binds the supplied {@link LeoObject} function to the supplied path.
-     * 
-     * @see WebApp#route(LeoMap, LeoObject)
-     * @param path the route path
-     * @param function the function to execute
-     * @return this {@link WebApp} instance for method chaining
-     */
-    public WebApp head(String path, LeoObject function) {
-        return route(path, "HEAD", function);
-    }
-    
-    
-    /**
-     * Binds the supplied {@link LeoObject} function to the supplied path.
-     * 
-     * @see WebApp#route(LeoMap, LeoObject)
-     * @param path the route path
-     * @param function the function to execute
-     * @return this {@link WebApp} instance for method chaining
-     */
-    public WebApp options(String path, LeoObject function) {
-        return route(path, "OPTIONS", function);
-    }
-    
-    /**
-     * Binds the supplied {@link LeoObject} function to the supplied path.
-     * 
-     * @see WebApp#route(LeoMap, LeoObject)
-     * @param path the route path
-     * @param function the function to execute
-     * @return this {@link WebApp} instance for method chaining
-     */
-    public WebApp trace(String path, LeoObject function) {
-        return route(path, "TRACE", function);
-    }
-    
-    
-    /**
-     * Binds a {@link URI} with the supplied {@link LeoObject} function.
-     * 
-     * @param config
-     * @param function
-     * @return this {@link WebApp} instance for method chaining
-     */
-    public WebApp route(LeoMap config, LeoObject function) {
-       this.routes.addRoute(new Route(config, function)); 
-       return this;
-    }    
-    
-    /**
-     * Binds the supplied {@link LeoObject} function to the supplied path.
-     * 
-     * @see WebApp#route(LeoMap, LeoObject)
-     * @param path the route path
-     * @param method the request method 
-     * @param function the function to execute
-     * @return this {@link WebApp} instance for method chaining
-     */    
-    @LeolaIgnore
-    public WebApp route(String path, String method, LeoObject function) {
-        LeoMap config = new LeoMap();
-        config.putByString("path", LeoString.valueOf(path));
-        config.putByString("methods", LeoArray.newLeoArray(LeoString.valueOf(method.toUpperCase())));
-        return route(config, function);
-    }
-    
-    /**
-     * Binds a {@link URI} with the supplied {@link LeoObject} function for the GET request
-     * method type.
-     * 
-     * @param path the route path
-     * @param function the function to run for the route
-     * @return this {@link WebApp} instance for method chaining
-     */
-    @LeolaIgnore
-    public WebApp get(String path, Function<RequestContext, WebResponse> function) {
-        return route(path, "GET", function);
-    }
-    
-    /**
-     * Binds a {@link URI} with the supplied {@link LeoObject} function for the POST request
-     * method type.
-     * 
-     * @param path the route path
-     * @param function the function to run for the route
-     * @return this {@link WebApp} instance for method chaining
-     */
-    @LeolaIgnore
-    public WebApp post(String path, Function<RequestContext, WebResponse> function) {
-        return route(path, "POST", function);
-    }
-    
-    /**
-     * Binds a {@link URI} with the supplied {@link LeoObject} function for the PUT request
-     * method type.
-     * 
-     * @param path the route path
-     * @param function the function to run for the route
-     * @return this {@link WebApp} instance for method chaining
-     */
-    @LeolaIgnore
-    public WebApp put(String path, Function<RequestContext, WebResponse> function) {
-        return route(path, "PUT", function);
-    }
-    
-    /**
-     * Binds a {@link URI} with the supplied {@link LeoObject} function for the DELETE request
-     * method type.
-     * 
-     * @param path the route path
-     * @param function the function to run for the route
-     * @return this {@link WebApp} instance for method chaining
-     */
-    @LeolaIgnore
-    public WebApp delete(String path, Function<RequestContext, WebResponse> function) {
-        return route(path, "DELETE", function);
-    }
-    
-    /**
-     * Binds a {@link URI} with the supplied {@link LeoObject} function for the HEAD request
-     * method type.
-     * 
-     * @param path the route path
-     * @param function the function to run for the route
-     * @return this {@link WebApp} instance for method chaining
-     */
-    @LeolaIgnore
-    public WebApp head(String path, Function<RequestContext, WebResponse> function) {
-        return route(path, "HEAD", function);
-    }
-    
-    /**
-     * Binds a {@link URI} with the supplied {@link LeoObject} function for the OPTIONS request
-     * method type.
-     * 
-     * @param path the route path
-     * @param function the function to run for the route
-     * @return this {@link WebApp} instance for method chaining
-     */
-    @LeolaIgnore
-    public WebApp options(String path, Function<RequestContext, WebResponse> function) {
-        return route(path, "OPTIONS", function);
-    }
-    
-    /**
-     * Binds a {@link URI} with the supplied {@link LeoObject} function for the TRACE request
-     * method type.
-     * 
-     * @param path the route path
-     * @param function the function to run for the route
-     * @return this {@link WebApp} instance for method chaining
-     */
-    @LeolaIgnore
-    public WebApp trace(String path, Function<RequestContext, WebResponse> function) {
-        return route(path, "TRACE", function);
-    }
-
-    
-    /**
-     * Binds a {@link URI} with the supplied {@link LeoObject} function.
-     * 
-     * @param path the route path
-     * @param method the request method
-     * @param function the function to run for the route
-     * @return this {@link WebApp} instance for method chaining
-     */
-    @LeolaIgnore
-    public WebApp route(String path, String method, Function<RequestContext, WebResponse> function) {
-        LeoMap config = new LeoMap();
-        config.putByString("path", LeoString.valueOf(path));
-        config.putByString("methods", LeoArray.newLeoArray(LeoString.valueOf(method.toUpperCase())));
-        return route(config, new LeoUserFunction() {
-           
-            @Override
-            public LeoObject call(LeoObject[] args) {
-                return LeoObject.valueOf(function.apply((RequestContext) args[0].getValue(RequestContext.class)));
-            } 
-        });
-    }
-    
-    /**
-     * Get the {@link Route} based on the supplied request method and request URI.
-     * 
-     * @param request the HTTP request
-     * @return the {@link Route} if a match was found
-     */
-    @LeolaIgnore
-    public Optional<Route> getRoute(HttpServletRequest request) {
-        return getRoute(request.getMethod(), request.getRequestURI());
-    }
-    
-    /**
-     * Get the {@link Route} based on the supplied request method and request URI.
-     * 
-     * @param method the request method
-     * @param requestURI the request URI
-     * @return the {@link Route} if a match was found
-     */
-    @LeolaIgnore
-    public Optional<Route> getRoute(String method, String requestURI) {
-        return this.routes.getRoute(method, requestURI);
-    }
-    
-    /**
-     * Bind a shutdown handler function.  The supplied function will be invoked when the system shuts down,
-     * this allows the application code to safely free and close opened resources.
-     * 
-     * @param function
-     * @return this {@link WebApp} instance for method chaining
-     */
-    public WebApp shutdownHandler(LeoObject function) {
-        this.shutdownHandler = Optional.ofNullable(function);
-        return this;
-    }
-    
-    /**
-     * Bind an error handler function.  The supplied function will be invoked whenever an Exception or
-     * error occurs during a Routing request.
-     * 
-     * @param function
-     * @return this {@link WebApp} instance for method chaining
-     */
-    public WebApp errorHandler(LeoObject function) {
-        this.errorHandler = Optional.ofNullable(function);
-        return this;
-    }
-    
-    
-    /**
-     * Bind a function to be invoked when a route and a static file is not found (404) error.  This allows you
-     * to customize the response.
-     * 
-     * @param function
-     * @return this {@link WebApp} instance for method chaining 
-     */
-    public WebApp notFoundHandler(LeoObject function) {
-        this.notFoundHandler = Optional.ofNullable(function);
-        return this;
-    }
-    
-    /**
-     * Bind a context handler function.  The supplied function will be invoked after the creation of a 
-     * {@link RequestContext}.  This allows the application to inject specific properties into the
-     * request.
-     * 
-     * 
-     * @param function
-     * @return this {@link WebApp} instance for method chaining
-     */
-    public WebApp contextHandler(LeoObject function) {
-        this.contextHandler = Optional.ofNullable(function);
-        return this;
-    }
-
-    
-    /**
-     * Handles an exception and/or error during a request.  This will attempt to delegate the
-     * handling of the error to the registered errorHandler.
-     * 
-     * @see WebApp#errorHandler
-     * @param requestContext
-     * @param exception
-     * @return the {@link WebResponse} generated from the error handler
-     */
-    @LeolaIgnore
-    public WebResponse handleException(LeoObject requestContext, Object exception) {
-        return this.errorHandler.map(function -> {
-            LeoObject result = function.call(requestContext, LeoObject.valueOf(exception));
-            if(result.isError()) {
-                return new WebResponse(result, HttpStatus.INTERNAL_SERVER_ERROR);
-            }
-            
-            return (WebResponse) result.getValue(WebResponse.class);
-        }).orElse(new WebResponse(HttpStatus.INTERNAL_SERVER_ERROR));
-    }
-    
-    /**
-     * Handles a 404 NOT found.
-     * 
-     * @return the {@link WebResponse} generated from the notFound handler
-     */
-    public WebResponse handle404(HttpServletRequest req, HttpServletResponse resp) {
-        return this.notFoundHandler.map(function -> {
-            LeoObject context = buildContext(Optional.empty(), req, resp);
-            
-            LeoObject result = function.call(context);
-            if(result.isError()) {
-                return new WebResponse(result, HttpStatus.INTERNAL_SERVER_ERROR);
-            }
-            
-            return (WebResponse) result.getValue(WebResponse.class);
-        })
-        .orElse(new WebResponse(HttpStatus.NOT_FOUND).text(LeoString.valueOf(NOT_FOUND)));
-    }
-    
-    /**
-     * Builds the {@link RequestContext} off of the supplied request/response objects.
-     * This will apply the registered contextHandler function if there is one.
-     * 
-     * @param req
-     * @param resp
-     * @return the {@link RequestContext} as a {@link LeoObject}
-     */
-    @LeolaIgnore
-    public LeoObject buildContext(Optional<Route> route, HttpServletRequest req, HttpServletResponse resp) {
-        LeoMap pathParams = new LeoMap();
-        route.ifPresent(r -> {
-            Map<String, String> pathValues = r.getRouteParameters(req.getRequestURI());
-            pathParams.putAll(LeoMap.toMap(pathValues));    
-        });
-           
-        
-        RequestContext context = new RequestContext(req, resp, this, pathParams);
-        LeoObject leoContext = LeoObject.valueOf(context);
-        this.contextHandler.ifPresent(function -> function.call(leoContext));
-        return leoContext;
-    }
-    
-    /**
-     * Bind a websocket server endpoint with the supplied configuration.
-     * 
-     * <p>
-     * The supplied configuration should have the following properties:
-     * 
-     * <pre>
-     *   {
-     *     route -> "", // A String that denotes the path of the websocket (ex. "/socketTest", could map to: ws://localhost:8121/context/socketTest)
-     *     onOpen -> def(session) {}, // a Function that will be invoked when a WebSocket is connected to the server
-     *     onClose -> def(session, reason) {}, // a Function that will be invoked when a WebSocket is disconnected from the server
-     *     onMessage -> def(session, message) {}, // a Function that will be invoked when a message comes in on a WebSocket
-     *     onError -> def(session, exception) {}, // a Function that will be invoked when a problem occurs on a WebSocket
-     *   }
-     * </pre>
-     * 
-     * @param config
-     * @return this {@link WebApp} instance for method chaining
-     */
-    public WebApp webSocket(LeoMap config) {
-        this.webSocketConfigs.add(config);
-        return this;
-    }
-    
-    /**
-     * Add's a {@link WebFilter} to this server's configuration.
-     * 
-     * @param config
-     * @param function
-     * @return this {@link WebApp} instance for method chaining
-     */
-    public WebApp filter(LeoMap config, LeoObject function) {
-        this.filters.add(new WebFilter(this, config, function));
-        return this;
-    }
-    
-    /**
-     * Get the {@link Logger}
-     * 
-     * @param name
-     * @return the {@link Logger}
-     */
-    public Logger logger(String name) {
-        return Logger.getLogger(name);
-    }
-    
-    /**
-     * @return this {@link WebApp} configuration
-     */
-    public LeoMap config() {
-        return this.config;
-    }
-    
-    /**
-     * Start the application
-     * 
-     * @throws Exception
-     */
-    public void start() throws Exception {      
-        if(this.server == null || this.server.isStopped()) {
-            String resourceBase = config.getString("resourceBase");
-            String context = config.getString("context");
-            String welcomeFile = config.getString("welcomeFile");
-            int port = config.getInt("port");
-            LeoObject security = config.getByString("security");
-            
-            
-            // Handles the servlet requests (routes)
-            WebAppContext servletContext = new WebAppContext();
-            servletContext.setInitParameter("useFileMappedBuffer", "false");
-            servletContext.setContextPath("/" + context );
-            servletContext.setResourceBase( resourceBase );
-            servletContext.setWelcomeFiles(new String[] { welcomeFile });
-            
-            this.filters.forEach(filter -> {            
-                FilterHolder holder = new FilterHolder(filter);                 
-                servletContext.addFilter(holder, filter.getPathSpec(), EnumSet.allOf(DispatcherType.class));
-            });
-            
-            
-            WebServlet webServlet = new WebServlet(this);
-            ServletHolder leolaServlet = new ServletHolder(webServlet);
-            leolaServlet.getRegistration().setMultipartConfig(new MultipartConfigElement(webServlet.getMultipartConfig()));
-            servletContext.addServlet(leolaServlet, "/*");            
-            
-            
-            // Serves up Static content
-            ResourceHandler resourceContext = new ResourceHandler();      
-            resourceContext.setMinMemoryMappedContentLength(-1);
-            resourceContext.setResourceBase(resourceBase);
-            resourceContext.setDirectoriesListed(config.getBoolean("showDirectory"));
-            
-            
-            // Handles Web Sockets (if there are any)
-            LeolaWebSocketCreator.configureWebsocketContextHandler(servletContext, this.webSocketConfigs);
-                                
-            HandlerList handlers = new HandlerList();
-            handlers.addHandler(resourceContext);      
-            handlers.addHandler(servletContext);           
-            
-            this.server = new Server(port);
-            this.server.setHandler(handlers);
-            if(security != null && security.isMap()) {
-                LeoMap securityConfig = security.as();
-                String keyStorePath = securityConfig.getString("keyStorePath");
-                String keyStorePw = securityConfig.getString("keyStorePassword");
-                String trustStorePath = securityConfig.getString("trustStorePath");
-                String trustStorePw = securityConfig.getString("trustStorePassword");
-                String keyPassword = securityConfig.getString("keyPassword");
-                int sslPort = securityConfig.getInt("port");
-                
-                SslContextFactory sslContextFactory = new SslContextFactory();
-                sslContextFactory.setKeyStorePath(keyStorePath);
-                sslContextFactory.setKeyStorePassword(keyStorePw);
-                sslContextFactory.setTrustStorePath(trustStorePath);
-                sslContextFactory.setTrustStorePassword(trustStorePw);
-                sslContextFactory.setKeyManagerPassword(keyPassword);
-                
-                ServerConnector httpsConnector = new ServerConnector(this.server, 
-                        new SslConnectionFactory(sslContextFactory, "HTTP/1.1"),
-                        new HttpConnectionFactory());
-                
-                httpsConnector.setPort(sslPort);                 
-                this.server.addConnector(httpsConnector);
-            }
-        
-            this.server.start();
-            this.server.join();
-        }
-    }
-    
-    /**
-     * Shutdown the web app
-     * 
-     * @throws Exception
-     */
-    public void shutdown() {        
-        this.fileWatcher.stopWatching();
-        this.webSocketConfigs.clear();
-        
-        try {
-            this.shutdownHandler.ifPresent( function -> function.call() ); 
-        }
-        finally {
-            
-            /* Ensure we clear-out the Leola runtime
-             */
-            try {
-                this.runtime.reset();
-            }
-            catch(Exception ignore) {                
-            }
-            
-            /* This will always ensure that we terminate the server
-             * if it is currently running, regardless of if the 
-             * user supplied shutdown handler fails or not.
-             */
-            
-            if (this.server != null && this.server.isRunning()) {
-                try {
-                    try { this.server.stop(); }
-                    catch(Exception ignore) {}
-                }
-                finally {
-                    this.server.destroy();
-                }
-            }
-        }
-    }
-}
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+import javax.servlet.MultipartConfigElement;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.*;
+import org.eclipse.jetty.server.handler.ResourceHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.webapp.WebAppContext;
+import org.eclipse.jetty.websocket.api.StatusCode;
+
+import leola.vm.Leola;
+import leola.vm.lib.LeolaIgnore;
+import leola.vm.types.LeoArray;
+import leola.vm.types.LeoBoolean;
+import leola.vm.types.LeoInteger;
+import leola.vm.types.LeoLong;
+import leola.vm.types.LeoMap;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoString;
+import leola.vm.types.LeoUserFunction;
+import leola.web.RoutingTable.Route;
+import leola.web.event.EventDispatcher;
+import leola.web.filewatcher.FileModifiedEvent;
+import leola.web.filewatcher.FileModifiedEvent.ModificationType;
+import leola.web.filewatcher.FileModifiedListener;
+import leola.web.filewatcher.FileWatcher;
+import leola.web.templates.TemplateEngine;
+import leola.web.templates.handlebars.HandlebarsTemplateEngine;
+import leola.web.templates.mustache.MustacheTemplateEngine;
+
+/**
+ * A {@link WebApp} is an instance of a web application. A {@link WebApp} contains
+ * web {@link Route}s and our bound to {@link URI} and are executed to a corresponding {@link LeoObject} function.
+ * 
+ * @author Tony
+ *
+ */
+public class WebApp {
+    
+    /**
+     * Not found web-page
+     */
+    static final String NOT_FOUND = "<html><body><h2>404 Not found</h2></body></html>";
+    
+    /**
+     * The bounded Leola runtime
+     */
+    private Leola runtime;
+    
+    
+    /**
+     * The routing table
+     */
+    private RoutingTable routes;
+    
+    /**
+     * The embedded web server
+     */
+    private Server server;
+    
+    /**
+     * The application configuration
+     */
+    private LeoMap config;
+    
+    private Optional<LeoObject> errorHandler;
+    private Optional<LeoObject> notFoundHandler;
+    private Optional<LeoObject> contextHandler;
+    private Optional<LeoObject> shutdownHandler;
+    private Optional<LeoObject> warmUpHandler;
+    
+    private List<LeoMap> webSocketConfigs;
+    private List<WebFilter> filters;
+    
+    /**
+     * The sessions of the connected web sockets, which are closed when the application shuts down
+     */
+    private Set<WebSocketSession> webSocketSessions;
+    
+    /**
+     * Runs the route functions, if the application is configured with <code>handlers</code>
+     */
+    private Optional<HandlerExecutor> handlerExecutor;
+    
+    /**
+     * Runs the route functions of the routes configured with a <code>lane</code>, by lane name
+     */
+    private Map<String, HandlerExecutor> lanes;
+    
+    /**
+     * Builds the server from the <code>server</code> configuration
+     */
+    private ServerFactory serverFactory;
+    
+    /**
+     * Coalesces the identical, concurrent requests of the routes configured with <code>coalesce</code>
+     */
+    private Coalescer coalescer;
+    
+    /**
+     * Serves the batch route, if the application is configured with <code>batch</code>
+     */
+    private Optional<Batch> batch;
+    
+    /**
+     * Runs the sub-requests of batch requests, the responses of coalesced requests and the functions of web:async, when
+     * the application is not configured with <code>handlers</code>.  It is bounded by the <code>maxThreads</code> of the server.
+     */
+    private ExecutorService deadlineExecutor;
+    
+    /**
+     * Responds with a 504 once the timeout of a route elapses, while its route function keeps running on its own thread
+     */
+    private ScheduledThreadPoolExecutor deadlineTimer;
+    
+    /**
+     * The isolated runtimes that run the route functions, if the application is configured with <code>runtimes</code>
+     */
+    private Optional<RuntimePool> runtimePool;
+    
+    /**
+     * The {@link WebApp} this application is mounted in, or null if this is not mounted
+     */
+    private WebApp parent;
+    
+    /**
+     * Shuts down this application when the JVM exits, registered once this application starts its server
+     */
+    private Thread shutdownHook;
+    
+    /**
+     * Set once this application has been shut down
+     */
+    private AtomicBoolean isShutdown;
+    
+    /**
+     * For Auto-Reload enabled applications, this will
+     * watch the Resource Directory for any leola scripts to
+     * be reloaded
+     */
+    private FileWatcher fileWatcher;
+    
+    
+    /**
+     * The template engine to use
+     */
+    private TemplateEngine templateEngine;
+    
+    /**
+     * The supplied configuration should have properties:
+     * 
+     * <pre>
+     *   {
+     *      resourceBase -> "", // a String that denotes the home directory of where to look for html/css/javascript files
+     *      context -> "", // a String that denotes the context of the web application: http://localhost:8121/context
+     *      port -> 8181, // an Integer that denotes the port number the web server should use
+     *      server -> { minThreads -> 8, maxThreads -> 200, idleTimeout -> 30000, http2 -> { maxConcurrentStreams -> 128 }, ... }, // the server threads, connectors, HTTP and HTTP/2 settings (see ServerFactory for all of the settings and their defaults)
+     *      missCacheSize -> 1024, // an Integer that denotes the number of unmatched request paths to remember, 0 to disable
+     *      executor -> "platform", // "virtual" to handle each request on its own virtual thread (requires JDK 21), otherwise a pool of platform threads
+     *      handlers -> { maxConcurrent -> 200, maxQueue -> 100, queueTimeoutMs -> 1000, retryAfter -> 1 }, // run the route functions on a bounded executor (see HandlerExecutor), by default they run on the server threads
+     *      lanes -> { health -> { maxConcurrent -> 4 }, reports -> { maxConcurrent -> 16, maxQueue -> 32 } }, // named bounded executors, with the same settings as handlers, that run the functions of the routes configured with their lane
+     *      batch -> { path -> "/_batch", maxRequests -> 20, maxBodySize -> 1048576 }, // or true, serve a route that runs a JSON array of sub-requests in parallel and responds with all of their responses (see Batch)
+     *      runtimes -> { size -> 4, acquireTimeoutMs -> 1000 }, // evaluate the script in a pool of isolated runtimes that run the route functions in parallel (see RuntimePool)
+     *      routeTimeout -> 0, // the number of milliseconds a route function may run before responding with a 504, unless the route specifies its own timeout; 0 for no limit
+     *      asyncTimeout -> 30000, // the number of milliseconds to wait on a route that returned a future (see web:async), before responding with a 504
+     *   }
+     * </pre>
+     * 
+     * @param runtime
+     * @param suppliedConfig
+     */
+    public WebApp(final Leola runtime, LeoMap suppliedConfig) {    
+        this.errorHandler = Optional.empty();
+        this.notFoundHandler = Optional.empty();
+        this.contextHandler = Optional.empty();
+        this.shutdownHandler = Optional.empty();                
+        this.warmUpHandler = Optional.empty();
+        this.coalescer = new Coalescer();
+        this.runtimePool = Optional.empty();
+        this.runtime = runtime;
+        
+        this.webSocketConfigs = new ArrayList<LeoMap>();
+        this.filters = new ArrayList<WebFilter>();                
+        this.webSocketSessions = ConcurrentHashMap.newKeySet();
+        this.isShutdown = new AtomicBoolean();
+        
+        config = (suppliedConfig==null) ? new LeoMap() : suppliedConfig;
+        
+        if(!config.containsKeyByString("resourceBase")) {
+        	File executionScript = runtime.getExecutionScript();
+        	if(executionScript != null) {
+        		config.putByString("resourceBase", LeoString.valueOf(executionScript.getParentFile().getAbsolutePath()));
+        	}
+        	else {
+        		config.putByString("resourceBase", LeoString.valueOf(runtime.getWorkingDirectory()));
+        	}
+        }
+        if(!config.containsKeyByString("context")) 
+            config.putByString("context", LeoString.valueOf(""));
+                
+        if(!config.containsKeyByString("welcomeFile")) 
+            config.putByString("welcomeFile", LeoString.valueOf("index.html"));
+        
+        if(!config.containsKeyByString("port")) 
+            config.putByString("port", LeoInteger.valueOf(8121));
+        
+        if(!config.containsKeyByString("showDirectory")) 
+            config.putByString("showDirectory", LeoBoolean.LEOTRUE);
+        
+        if(!config.containsKeyByString("asyncTimeout")) 
+            config.putByString("asyncTimeout", LeoLong.valueOf(30_000));
+        
+        if(!config.containsKeyByString("routeTimeout")) 
+            config.putByString("routeTimeout", LeoLong.valueOf(0));
+        
+        if(!config.containsKeyByString("maxBodySize")) 
+            config.putByString("maxBodySize", LeoLong.valueOf(-1));
+        
+        if(!config.containsKeyByString("executor")) 
+            config.putByString("executor", LeoString.valueOf("platform"));
+        
+        if(isVirtual() && !VirtualThreads.isSupported()) {
+            Logger.getLogger(WebApp.class.getName()).warning("Virtual threads require JDK 21 or later, the 'platform' executor will be used instead");
+            config.putByString("executor", LeoString.valueOf("platform"));
+        }
+        
+        if(!config.containsKeyByString("server")) {
+            config.putByString("server", new LeoMap());
+        }
+        
+        LeoMap server = config.getByString("server").as();
+        putDefault(server, "minThreads", LeoInteger.valueOf(8));
+        putDefault(server, "maxThreads", LeoInteger.valueOf(200));
+        putDefault(server, "threadIdleTimeout", LeoLong.valueOf(60_000));
+        putDefault(server, "acceptors", LeoInteger.valueOf(-1));
+        putDefault(server, "selectors", LeoInteger.valueOf(-1));
+        putDefault(server, "idleTimeout", LeoLong.valueOf(30_000));
+        putDefault(server, "acceptQueueSize", LeoInteger.valueOf(0));
+        putDefault(server, "outputBufferSize", LeoInteger.valueOf(32 * 1024));
+        putDefault(server, "requestHeaderSize", LeoInteger.valueOf(8 * 1024));
+        putDefault(server, "responseHeaderSize", LeoInteger.valueOf(8 * 1024));
+        putDefault(server, "sendDateHeader", LeoBoolean.LEOTRUE);
+        putDefault(server, "sendServerVersion", LeoBoolean.LEOTRUE);
+        putDefault(server, "stopTimeout", LeoLong.valueOf(30_000));
+        
+        if(server.containsKeyByString("http2")) {
+            LeoMap http2 = server.getByString("http2").as();
+            putDefault(http2, "h2c", LeoBoolean.LEOTRUE);
+            putDefault(http2, "h2", LeoBoolean.LEOTRUE);
+            putDefault(http2, "maxConcurrentStreams", LeoInteger.valueOf(128));
+            putDefault(http2, "initialStreamSendWindow", LeoInteger.valueOf(65535));
+            putDefault(http2, "maxDynamicTableSize", LeoInteger.valueOf(4096));
+        }
+        
+        /* the application of a pooled runtime only builds its routes, the server and the
+         * executors belong to the application that owns the pool (see RuntimePool)
+         */
+        boolean pooled = RuntimePool.isLoading();
+        if(!pooled) {
+            this.serverFactory = new ServerFactory(server);
+        }
+        
+        if(!config.containsKeyByString("missCacheSize")) 
+            config.putByString("missCacheSize", LeoInteger.valueOf(RoutingTable.DEFAULT_MISS_CACHE_SIZE));
+        
+        this.routes = new RoutingTable(config.getInt("missCacheSize"));
+        
+        if(!config.containsKeyByString("multiPart")) {
+            LeoMap multipart = new LeoMap();
+            config.putByString("multiPart", multipart);
+        }
+        
+        LeoMap multipart = config.getByString("multiPart").as();
+        if(!multipart.containsKeyByString("maxFileSize")) {
+            multipart.putByString("maxFileSize", LeoLong.valueOf(1024 * 1024 * 100));
+        }
+        if(!multipart.containsKeyByString("maxRequestSize")) {
+            multipart.putByString("maxRequestSize", LeoLong.valueOf(1024 * 1024 * 200));
+        }
+        
+        if(!pooled) {
+            /* once the server's maxThreads are busy, further tasks are rejected rather than growing the threads */
+            this.deadlineExecutor = isVirtual() 
+                    ? VirtualThreads.newExecutor("leola-web-deadline").get()
+                    : new ThreadPoolExecutor(0, server.getInt("maxThreads"), 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), 
+                                             daemonThreads("leola-web-deadline-"));
+            
+            this.deadlineTimer = new ScheduledThreadPoolExecutor(1, daemonThreads("leola-web-deadline-timer-"));
+            this.deadlineTimer.setRemoveOnCancelPolicy(true);
+        }
+        
+        this.handlerExecutor = Optional.empty();
+        if(config.containsKeyByString("handlers") && !pooled) {
+            this.handlerExecutor = Optional.of(newHandlerExecutor("leola-web-handler", config.getByString("handlers").as()));
+        }
+        
+        this.batch = Optional.empty();
+        if(config.containsKeyByString("batch")) {
+            LeoObject batch = config.getByString("batch");
+            if(batch.isMap() || LeoObject.isTrue(batch)) {
+                LeoMap batchConfig = batch.isMap() ? batch.as() : new LeoMap();
+                putDefault(batchConfig, "path", LeoString.valueOf("/_batch"));
+                putDefault(batchConfig, "maxRequests", LeoInteger.valueOf(20));
+                putDefault(batchConfig, "maxBodySize", LeoLong.valueOf(1024 * 1024));
+                
+                this.batch = Optional.of(new Batch(batchConfig));
+            }
+        }
+        
+        /* each lane has its own threads, so that a saturated lane never
+         * delays the route functions of another
+         */
+        this.lanes = new LinkedHashMap<String, HandlerExecutor>();
+        if(config.containsKeyByString("lanes") && !pooled) {
+            LeoMap lanes = config.getByString("lanes").as();
+            lanes.keySet().forEach(name -> {
+                this.lanes.put(name.toString(), newHandlerExecutor("leola-web-lane-" + name, lanes.getByString(name.toString()).as()));
+            });
+        }
+        
+        if(config.containsKeyByString("runtimes")) {
+            LeoMap runtimes = config.getByString("runtimes").as();
+            if(!runtimes.containsKeyByString("size")) {
+                runtimes.putByString("size", LeoInteger.valueOf(Runtime.getRuntime().availableProcessors()));
+            }
+            if(!runtimes.containsKeyByString("acquireTimeoutMs")) {
+                runtimes.putByString("acquireTimeoutMs", LeoLong.valueOf(1000));
+            }
+        }
+        
+        initializeWatcher(runtime);
+        
+        if(config.containsKeyByString("templateEngine")) {
+            LeoObject templateEngine = config.getByString("templateEngine");
+            String type = "mustache";
+            LeoMap tempConfig = new LeoMap();
+            if(templateEngine.isMap()) {
+                tempConfig = templateEngine.as();
+                type = tempConfig.getString("type");
+            }
+            else {
+                type = templateEngine.toString();
+            }
+            
+            switch(type.toLowerCase()) {                
+                case "handlebars": {                    
+                    this.templateEngine = new HandlebarsTemplateEngine(getRootDirectory(), tempConfig);
+                    break;
+                }
+                default: {
+                    this.templateEngine = new MustacheTemplateEngine(this);
+                    break;
+                }
+            }            
+        }
+        else {
+            this.templateEngine = new MustacheTemplateEngine(this);
+        }
+    }
+
+    
+    /**
+     * Puts the default value into the supplied configuration, if the key is not present
+     * 
+     * @param config
+     * @param key
+     * @param value
+     */
+    private static void putDefault(LeoMap config, String key, LeoObject value) {
+        if(!config.containsKeyByString(key)) {
+            config.putByString(key, value);
+        }
+    }
+    
+    /**
+     * Creates a {@link HandlerExecutor}, filling in the defaults of its configuration
+     * 
+     * @param name the name of the executor, used to name its threads
+     * @param handlers the <code>handlers</code> (or lane) configuration
+     * @return the {@link HandlerExecutor}
+     */
+    private HandlerExecutor newHandlerExecutor(String name, LeoMap handlers) {
+        putDefault(handlers, "maxConcurrent", LeoInteger.valueOf(200));
+        putDefault(handlers, "maxQueue", LeoInteger.valueOf(100));
+        putDefault(handlers, "queueTimeoutMs", LeoLong.valueOf(1000));
+        putDefault(handlers, "retryAfter", LeoInteger.valueOf(1));
+        
+        return isVirtual() 
+                ? new HandlerExecutor(name, handlers, VirtualThreads.newThreadFactory(name).get())
+                : new HandlerExecutor(name, handlers);
+    }
+    
+    /**
+     * @param prefix the prefix of the names of the threads
+     * @return a {@link ThreadFactory} of daemon threads, named by the supplied prefix and a sequence number
+     */
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger id = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + id.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    /**
+     * Initializes the {@link FileWatcher} if enabled.
+     * 
+     * @param runtime
+     */
+    private void initializeWatcher(final Leola runtime) {
+        EventDispatcher eventDispatcher = new EventDispatcher();
+        
+        final File executionScript = runtime.getExecutionScript() != null ? 
+                                        runtime.getExecutionScript() : 
+                                        runtime.getWorkingDirectory();
+        
+        
+        this.fileWatcher = new FileWatcher(eventDispatcher, getRootDirectory(), executionScript.getParentFile());
+        
+        /* If we have autoReload enabled, let's go ahead and register
+         * a FileModificationListener so that we can reload our application
+         */
+        if(config.containsKeyByString("autoReload") && runtime.getExecutionScript() != null && !RuntimePool.isLoading()) {
+            
+            if(LeoObject.isTrue(config.getByString("autoReload"))) {
+                eventDispatcher.addEventListener(FileModifiedEvent.class, new FileModifiedListener() {
+                    
+                    @Override
+                    public void onFileModified(FileModifiedEvent event) {                        
+                        if( event.getModType().equals(ModificationType.MODIFIED)) {
+
+                            File file = event.getFile();
+                            if(file.isFile() && file.getName().toLowerCase().endsWith(".leola")) {
+                                try {
+                                    System.out.println("Restarting the server.");
+                                    
+                                    System.out.println("Shutdown of current server.");
+                                    shutdown();
+                                    System.out.println("Shutdown complete.");
+                                    
+                                    System.out.println("Starting new server.");
+                                    
+                                    /* Spawn in a new thread so that we actually
+                                     * return from this function call -- the executionScript
+                                     * blocks because it spawns the web-server
+                                     */
+                                    new Thread( () -> {
+                                        try {
+                                            LeoObject result = runtime.eval(executionScript);
+                                            if(result.isError()) {
+                                                System.out.println("Error restarting: " + result);
+                                            }    
+                                        }
+                                        catch(Exception e) {
+                                            e.printStackTrace();
+                                        }
+                                    }, "leola-web-app-thread").start();
+                                }
+                                catch (Exception e) {
+                                    e.printStackTrace();
+                                }
+                            }
+                        }
+                    }
+                });
+                this.fileWatcher.startWatching();                
+            }
+        }
+    }
+    
+    
+    /**
+     * Sets the {@link TemplateEngine}
+     * 
+     * @param templateEngine
+     * @return this instance for method chaining
+     */
+    public WebApp templateEngine(TemplateEngine templateEngine) {
+        this.templateEngine = templateEngine;
+        return this;
+    }
+    
+    /**
+     * @return the {@link TemplateEngine}
+     */
+    public TemplateEngine getTemplateEngine() {
+        return this.templateEngine;
+    }
+    
+    /**
+     * A convenience method for applying the template with the supplied data
+     * 
+     * @param template the in-lined template
+     * @param data
+     * @return the resolved template
+     * @throws IOException
+     */
+    public String applyTemplate(String template, Object data) throws IOException {
+        return this.templateEngine.getTemplate(new StringReader(template)).apply(data);
+    }
+    
+    /**
+     * @return the {@link Leola} runtime bound to this {@link WebApp}
+     */
+    public Leola getRuntime() {
+        return this.runtime;
+    }
+    
+    /**
+     * @see WebApp#getRootDirectory()
+     * @return the root directory's absolute path
+     */
+    public String rootDir() {
+        return getRootDirectory().getAbsolutePath();
+    }
+    
+    /**
+     * @return the root directory as to where the web application is installed.  In general, this is used
+     * for various modules to start looking for files
+     */
+    public File getRootDirectory() {
+        return new File(config.getString("resourceBase"));
+    }
+    
+    
+    /**
+     * Binds the supplied {@link LeoObject} function to the supplied path.
+     * 
+     * @see WebApp#route(LeoMap, LeoObject)
+     * @param path the route path
+     * @param function the function to execute
+     * @return this {@link WebApp} instance for method chaining
+     */
+    public WebApp get(String path, LeoObject function) {
+        return route(path, "GET", function);
+    }
+    
+    /**
+     * Binds the supplied {@link LeoObject} function to the supplied path.
+     * 
+     * @see WebApp#route(LeoMap, LeoObject)
+     * @param path the route path
+     * @param function the function to execute
+     * @return this {@link WebApp} instance for method chaining
+     */
+    public WebApp post(String path, LeoObject function) {
+        return route(path, "POST", function);
+    }
+    
+    /**
+     * Binds the supplied {@link LeoObject} function to the supplied path.
+     * 
+     * @see WebApp#route(LeoMap, LeoObject)
+     * @param path the route path
+     * @param function the function to execute
+     * @return this {@link WebApp} instance for method chaining
+     */
+    public WebApp delete(String path, LeoObject function) {
+        return route(path, "DELETE", function);
+    }
+    
+    /**
+     * Binds the supplied {@link LeoObject} function to the supplied path.
+     * 
+     * @see WebApp#route(LeoMap, LeoObject)
+     * @param path the route path
+     * @param function the function to execute
+     * @return this {@link WebApp} instance for method chaining
+     */
+    public WebApp put(String path, LeoObject function) {
+        return route(path, "PUT", function);
+    }
+    
+    /**
+     * Binds the supplied {@link LeoObject} function to the supplied path.
+     * 
+     * @see WebApp#route(LeoMap, LeoObject)
+     * @param path the route path
+     * @param function the function to execute
+     * @return this {@link WebApp} instance for method chaining
+     */
+    public WebApp head(String path, LeoObject function) {
+        return route(path, "HEAD", function);
+    }
+    
+    
+    /**
+     * Binds the supplied {@link LeoObject} function to the supplied path.
+     * 
+     * @see WebApp#route(LeoMap, LeoObject)
+     * @param path the route path
+     * @param function the function to execute
+     * @return this {@link WebApp} instance for method chaining
+     */
+    public WebApp options(String path, LeoObject function) {
+        return route(path, "OPTIONS", function);
+    }
+    
+    /**
+     * Binds the supplied {@link LeoObject} function to the supplied path.
+     * 
+     * @see WebApp#route(LeoMap, LeoObject)
+     * @param path the route path
+     * @param function the function to execute
+     * @return this {@link WebApp} instance for method chaining
+     */
+    public WebApp trace(String path, LeoObject function) {
+        return route(path, "TRACE", function);
+    }
+    
+    
+    /**
+     * Binds a {@link URI} with the supplied {@link LeoObject} function.
+     * 
+     * @param config
+     * @param function
+     * @return this {@link WebApp} instance for method chaining
+     */
+    public WebApp route(LeoMap config, LeoObject function) {
+       this.routes.addRoute(new Route(config, function)); 
+       return this;
+    }    
+    
+    /**
+     * Removes all of the routes bound to the supplied path.  This may be done while the {@link WebApp} is running,
+     * requests in flight continue with the routes they were matched against.
+     * 
+     * @param path the route path, as it was bound (i.e., <code>"/users/{userid}"</code>)
+     * @return true if any route was removed
+     */
+    public boolean removeRoute(String path) {
+        return this.routes.removeRoute(path);
+    }
+    
+    /**
+     * Atomically replaces all of the bound routes with the supplied {@link Route}s.  This may be done while the {@link WebApp}
+     * is running; each request is resolved against either the previous or the new routes, never a mix of the two.
+     * 
+     * @param routes the new routes
+     * @return this {@link WebApp} instance for method chaining
+     */
+    @LeolaIgnore
+    public WebApp replaceRoutes(Collection<Route> routes) {
+        this.routes.replaceAll(routes);
+        return this;
+    }
+    
+    /**
+     * @return the currently bound {@link Route}s
+     */
+    @LeolaIgnore
+    public List<Route> getRoutes() {
+        return this.routes.getRoutes();
+    }
+    
+    /**
+     * Mounts the supplied {@link WebApp} under the supplied path prefix.  Every request under the prefix is routed by the mounted
+     * application, against the remainder of the request path; so a route of <code>"/users/{id}"</code> in an application mounted under 
+     * <code>"/api/v2"</code> serves <code>"/api/v2/users/42"</code>.  The mounted application's context, error and not found handlers apply
+     * to its requests, and its filters apply under the prefix.
+     * 
+     * <pre>
+     *   var api = web:newWebApp({})
+     *   api.get("/users/{id}", def(context) { ... })
+     *   app.mount("/api/v2", api)
+     * </pre>
+     * 
+     * @param prefix the static path prefix
+     * @param app the {@link WebApp} to mount
+     * @return this {@link WebApp} instance for method chaining
+     */
+    public WebApp mount(String prefix, WebApp app) {
+        if(app == this) {
+            throw new IllegalArgumentException("A WebApp can not be mounted in itself");
+        }
+        
+        this.routes.mount(prefix, app);
+        app.parent = this;
+        return this;
+    }
+    
+    /**
+     * Removes the {@link WebApp} mounted under the supplied path prefix
+     * 
+     * @param prefix the static path prefix
+     * @return true if a {@link WebApp} was mounted under the prefix
+     */
+    public boolean unmount(String prefix) {
+        return this.routes.unmount(prefix);
+    }
+    
+    /**
+     * @return the routing table of this application
+     */
+    RoutingTable getRoutingTable() {
+        return this.routes;
+    }
+    
+    /**
+     * Determines if the supplied {@link RouteMatch} was resolved by this application, or an application mounted within it
+     * 
+     * @param match
+     * @return true if the match belongs to this application
+     */
+    boolean owns(RouteMatch match) {
+        WebApp app = match.getApp().orElse(null);
+        while(app != null) {
+            if(app == this) {
+                return true;
+            }
+            app = app.parent;
+        }
+        
+        return this.parent == null;
+    }
+    
+    /**
+     * Binds the supplied {@link LeoObject} function to the supplied path.
+     * 
+     * @see WebApp#route(LeoMap, LeoObject)
+     * @param path the route path
+     * @param method the request method 
+     * @param function the function to execute
+     * @return this {@link WebApp} instance for method chaining
+     */    
+    @LeolaIgnore
+    public WebApp route(String path, String method, LeoObject function) {
+        LeoMap config = new LeoMap();
+        config.putByString("path", LeoString.valueOf(path));
+        config.putByString("methods", LeoArray.newLeoArray(LeoString.valueOf(method.toUpperCase())));
+        return route(config, function);
+    }
+    
+    /**
+     * Binds a {@link URI} with the supplied {@link LeoObject} function for the GET request
+     * method type.
+     * 
+     * @param path the route path
+     * @param function the function to run for the route
+     * @return this {@link WebApp} instance for method chaining
+     */
+    @LeolaIgnore
+    public WebApp get(String path, Function<RequestContext, WebResponse> function) {
+        return route(path, "GET", function);
+    }
+    
+    /**
+     * Binds a {@link URI} with the supplied {@link LeoObject} function for the POST request
+     * method type.
+     * 
+     * @param path the route path
+     * @param function the function to run for the route
+     * @return this {@link WebApp} instance for method chaining
+     */
+    @LeolaIgnore
+    public WebApp post(String path, Function<RequestContext, WebResponse> function) {
+        return route(path, "POST", function);
+    }
+    
+    /**
+     * Binds a {@link URI} with the supplied {@link LeoObject} function for the PUT request
+     * method type.
+     * 
+     * @param path the route path
+     * @param function the function to run for the route
+     * @return this {@link WebApp} instance for method chaining
+     */
+    @LeolaIgnore
+    public WebApp put(String path, Function<RequestContext, WebResponse> function) {
+        return route(path, "PUT", function);
+    }
+    
+    /**
+     * Binds a {@link URI} with the supplied {@link LeoObject} function for the DELETE request
+     * method type.
+     * 
+     * @param path the route path
+     * @param function the function to run for the route
+     * @return this {@link WebApp} instance for method chaining
+     */
+    @LeolaIgnore
+    public WebApp delete(String path, Function<RequestContext, WebResponse> function) {
+        return route(path, "DELETE", function);
+    }
+    
+    /**
+     * Binds a {@link URI} with the supplied {@link LeoObject} function for the HEAD request
+     * method type.
+     * 
+     * @param path the route path
+     * @param function the function to run for the route
+     * @return this {@link WebApp} instance for method chaining
+     */
+    @LeolaIgnore
+    public WebApp head(String path, Function<RequestContext, WebResponse> function) {
+        return route(path, "HEAD", function);
+    }
+    
+    /**
+     * Binds a {@link URI} with the supplied {@link LeoObject} function for the OPTIONS request
+     * method type.
+     * 
+     * @param path the route path
+     * @param function the function to run for the route
+     * @return this {@link WebApp} instance for method chaining
+     */
+    @LeolaIgnore
+    public WebApp options(String path, Function<RequestContext, WebResponse> function) {
+        return route(path, "OPTIONS", function);
+    }
+    
+    /**
+     * Binds a {@link URI} with the supplied {@link LeoObject} function for the TRACE request
+     * method type.
+     * 
+     * @param path the route path
+     * @param function the function to run for the route
+     * @return this {@link WebApp} instance for method chaining
+     */
+    @LeolaIgnore
+    public WebApp trace(String path, Function<RequestContext, WebResponse> function) {
+        return route(path, "TRACE", function);
+    }
+
+    
+    /**
+     * Binds a {@link URI} with the supplied {@link LeoObject} function.
+     * 
+     * @param path the route path
+     * @param method the request method
+     * @param function the function to run for the route
+     * @return this {@link WebApp} instance for method chaining
+     */
+    @LeolaIgnore
+    public WebApp route(String path, String method, Function<RequestContext, WebResponse> function) {
+        LeoMap config = new LeoMap();
+        config.putByString("path", LeoString.valueOf(path));
+        config.putByString("methods", LeoArray.newLeoArray(LeoString.valueOf(method.toUpperCase())));
+        return route(config, new LeoUserFunction() {
+           
+            @Override
+            public LeoObject call(LeoObject[] args) {
+                return LeoObject.valueOf(function.apply((RequestContext) args[0].getValue(RequestContext.class)));
+            } 
+        });
+    }
+    
+    /**
+     * Get the {@link Route} based on the supplied request method and request URI.
+     * 
+     * @param request the HTTP request
+     * @return the {@link Route} if a match was found
+     */
+    @LeolaIgnore
+    public Optional<Route> getRoute(HttpServletRequest request) {
+        return getRouteMatch(request).map(RouteMatch::getRoute);
+    }
+    
+    /**
+     * Get the {@link RouteMatch} based on the supplied request method and request URI.  The match is only
+     * resolved once per request, the result is stored on the request (see {@link RouteMatch#ATTRIBUTE}) and
+     * reused by subsequent calls.  The request URI is canonicalized first (see {@link RoutingTable#canonicalPath(String)}).
+     * 
+     * @param request the HTTP request
+     * @return the {@link RouteMatch} if a match was found
+     */
+    @LeolaIgnore
+    public Optional<RouteMatch> getRouteMatch(HttpServletRequest request) {
+        /* requests are always resolved from the root application, as the
+         * request path includes the mount prefix
+         */
+        if(this.parent != null) {
+            return this.parent.getRouteMatch(request);
+        }
+        
+        String method = request.getMethod();
+        String requestURI = RoutingTable.canonicalPath(request.getRequestURI());
+        
+        Object attribute = request.getAttribute(RouteMatch.ATTRIBUTE);
+        if(attribute instanceof RouteMatch) {
+            RouteMatch match = (RouteMatch)attribute;
+            if(match.isFor(method, requestURI)) {
+                return match.isMatched() ? Optional.of(match) : Optional.empty();
+            }
+        }
+        
+        RouteMatch match = this.routes.resolve(method, requestURI);
+        request.setAttribute(RouteMatch.ATTRIBUTE, match);
+        return match.isMatched() ? Optional.of(match) : Optional.empty();
+    }
+    
+    /**
+     * The application that handles the supplied request, which is the mounted application the request path is under
+     * (see {@link WebApp#mount(String, WebApp)}), or otherwise this application.  This expects the request to have been
+     * resolved (see {@link WebApp#getRouteMatch(HttpServletRequest)}).
+     * 
+     * @param request
+     * @return the {@link WebApp} that handles the request
+     */
+    @LeolaIgnore
+    public WebApp getRequestApp(HttpServletRequest request) {
+        Object attribute = request.getAttribute(RouteMatch.ATTRIBUTE);
+        if(attribute instanceof RouteMatch) {
+            return ((RouteMatch)attribute).getApp().orElse(this);
+        }
+        
+        return this;
+    }
+    
+    /**
+     * Handles a request that did not match any {@link Route}.  If the request path is bound under a different
+     * request method, this will result in a 405 Method Not Allowed with the <code>Allow</code> header; otherwise
+     * this is a 404 (see {@link WebApp#handle404(HttpServletRequest, HttpServletResponse)}).
+     * 
+     * @param req
+     * @param resp
+     * @return the {@link WebResponse}
+     */
+    @LeolaIgnore
+    public WebResponse handleNoRoute(HttpServletRequest req, HttpServletResponse resp) {
+        Object attribute = req.getAttribute(RouteMatch.ATTRIBUTE);
+        if(attribute instanceof RouteMatch) {
+            Optional<String> allow = ((RouteMatch)attribute).getAllowedMethods();
+            if(allow.isPresent()) {
+                return handle405(allow.get());
+            }
+        }
+        
+        return handle404(req, resp);
+    }
+    
+    /**
+     * Handles a 405 Method Not Allowed.
+     * 
+     * @param allowedMethods the value of the <code>Allow</code> header
+     * @return the {@link WebResponse} 
+     */
+    @LeolaIgnore
+    public WebResponse handle405(String allowedMethods) {
+        return new WebResponse(HttpStatus.METHOD_NOT_ALLOWED).header("Allow", allowedMethods);
+    }
+    
+    /**
+     * Get the {@link Route} based on the supplied request method and request URI.
+     * 
+     * @param method the request method
+     * @param requestURI the request URI
+     * @return the {@link Route} if a match was found
+     */
+    @LeolaIgnore
+    public Optional<Route> getRoute(String method, String requestURI) {
+        return this.routes.getRoute(method, requestURI);
+    }
+    
+    /**
+     * Bind a shutdown handler function.  The supplied function will be invoked when the system shuts down,
+     * this allows the application code to safely free and close opened resources.
+     * 
+     * @param function
+     * @return this {@link WebApp} instance for method chaining
+     */
+    public WebApp shutdownHandler(LeoObject function) {
+        this.shutdownHandler = Optional.ofNullable(function);
+        return this;
+    }
+    
+    /**
+     * Bind a warm up handler function.  The supplied function will be invoked once the routes are bound and before
+     * any requests are accepted, this allows the application code to prime caches and open connections.  When the 
+     * application is configured with <code>runtimes</code>, it is invoked once in each runtime.
+     * 
+     * @param function
+     * @return this {@link WebApp} instance for method chaining
+     */
+    public WebApp warmUpHandler(LeoObject function) {
+        this.warmUpHandler = Optional.ofNullable(function);
+        return this;
+    }
+    
+    /**
+     * Invokes the warm up handler, if one is bound
+     */
+    void warmUp() {
+        this.warmUpHandler.ifPresent( function -> {
+            LeoObject result = function.call();
+            if(result.isError()) {
+                throw new IllegalStateException("Error warming up: " + result);
+            }
+        });
+    }
+    
+    /**
+     * Bind an error handler function.  The supplied function will be invoked whenever an Exception or
+     * error occurs during a Routing request.
+     * 
+     * @param function
+     * @return this {@link WebApp} instance for method chaining
+     */
+    public WebApp errorHandler(LeoObject function) {
+        this.errorHandler = Optional.ofNullable(function);
+        return this;
+    }
+    
+    
+    /**
+     * Bind a function to be invoked when a route and a static file is not found (404) error.  This allows you
+     * to customize the response.
+     * 
+     * @param function
+     * @return this {@link WebApp} instance for method chaining 
+     */
+    public WebApp notFoundHandler(LeoObject function) {
+        this.notFoundHandler = Optional.ofNullable(function);
+        return this;
+    }
+    
+    /**
+     * Bind a context handler function.  The supplied function will be invoked after the creation of a 
+     * {@link RequestContext}.  This allows the application to inject specific properties into the
+     * request.
+     * 
+     * 
+     * @param function
+     * @return this {@link WebApp} instance for method chaining
+     */
+    public WebApp contextHandler(LeoObject function) {
+        this.contextHandler = Optional.ofNullable(function);
+        return this;
+    }
+
+    
+    /**
+     * Handles an exception and/or error during a request.  This will attempt to delegate the
+     * handling of the error to the registered errorHandler.  If the error is due to the request body 
+     * exceeding the <code>maxBodySize</code>, this is a 413 Request Entity Too Large instead; and if it is due to 
+     * the executor of the route being at capacity (see {@link WebLeolaLibrary#async(LeoObject)}), a 503 Service Unavailable.
+     * 
+     * @see WebApp#errorHandler
+     * @param requestContext
+     * @param exception
+     * @return the {@link WebResponse} generated from the error handler
+     */
+    @LeolaIgnore
+    public WebResponse handleException(LeoObject requestContext, Object exception) {
+        if(requestContext != null && requestContext.getValue() instanceof RequestContext 
+                && ((RequestContext)requestContext.getValue()).isBodyTooLarge()) {
+            return new WebResponse(HttpStatus.REQUEST_ENTITY_TOO_LARGE);
+        }
+        
+        if(exception instanceof RejectedExecutionException) {
+            return new WebResponse(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        
+        return this.errorHandler.map(function -> {
+            LeoObject result = function.call(requestContext, LeoObject.valueOf(exception));
+            if(result.isError()) {
+                return new WebResponse(result, HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+            
+            return (WebResponse) result.getValue(WebResponse.class);
+        }).orElse(new WebResponse(HttpStatus.INTERNAL_SERVER_ERROR));
+    }
+    
+    /**
+     * Handles a 404 NOT found.
+     * 
+     * @return the {@link WebResponse} generated from the notFound handler
+     */
+    public WebResponse handle404(HttpServletRequest req, HttpServletResponse resp) {
+        return handleNotFound(req, resp)
+                .orElseGet(() -> new WebResponse(HttpStatus.NOT_FOUND).text(LeoString.valueOf(NOT_FOUND)));
+    }
+    
+    /**
+     * Handles a 404 NOT found with the notFound handler, if one is bound
+     * 
+     * @param req
+     * @param resp
+     * @return the {@link WebResponse} generated from the notFound handler, or empty if there is no notFound handler
+     */
+    Optional<WebResponse> handleNotFound(HttpServletRequest req, HttpServletResponse resp) {
+        return this.notFoundHandler.map(function -> {
+            LeoObject context = buildContext((RouteMatch)null, req, resp);
+            
+            LeoObject result = function.call(context);
+            if(result.isError()) {
+                return new WebResponse(result, HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+            
+            return (WebResponse) result.getValue(WebResponse.class);
+        });
+    }
+    
+    /**
+     * Builds the {@link RequestContext} off of the supplied request/response objects.
+     * This will apply the registered contextHandler function if there is one.
+     * 
+     * @param req
+     * @param resp
+     * @return the {@link RequestContext} as a {@link LeoObject}
+     */
+    @LeolaIgnore
+    public LeoObject buildContext(Optional<Route> route, HttpServletRequest req, HttpServletResponse resp) {
+        if(!route.isPresent()) {
+            return buildContext((RouteMatch)null, req, resp);
+        }
+        
+        Optional<RouteMatch> match = getRouteMatch(req);
+        if(match.isPresent() && match.get().getRoute() == route.get()) {
+            return buildContext(match.get(), req, resp);
+        }
+        
+        LeoMap pathParams = LeoMap.toMap(route.get().getRouteParameters(req.getRequestURI()));
+        return buildContext(pathParams, getMaxBodySize(route.get()), req, resp);
+    }
+    
+    /**
+     * Builds the {@link RequestContext} off of the supplied request/response objects, using the path parameters
+     * captured by the supplied {@link RouteMatch}. This will apply the registered contextHandler function if there is one.
+     * 
+     * @param match the {@link RouteMatch}, may be null if no route matched the request
+     * @param req
+     * @param resp
+     * @return the {@link RequestContext} as a {@link LeoObject}
+     */
+    @LeolaIgnore
+    public LeoObject buildContext(RouteMatch match, HttpServletRequest req, HttpServletResponse resp) {
+        return buildContext(match != null ? match.getPathParams() : new LeoMap(), 
+                            getMaxBodySize(match != null ? match.getRoute() : null), req, resp);
+    }
+    
+    /**
+     * Builds the {@link RequestContext} with the supplied path parameters
+     * 
+     * @param pathParams
+     * @param maxBodySize the maximum number of bytes of the request body, or -1 if there is no limit
+     * @param req
+     * @param resp
+     * @return the {@link RequestContext} as a {@link LeoObject}
+     */
+    private LeoObject buildContext(LeoMap pathParams, long maxBodySize, HttpServletRequest req, HttpServletResponse resp) {
+        RequestContext context = new RequestContext(req, resp, this, pathParams, maxBodySize);
+        LeoObject leoContext = NativeBindings.valueOf(context);
+        this.contextHandler.ifPresent(function -> function.call(leoContext));
+        return leoContext;
+    }
+    
+    /**
+     * Bind a websocket server endpoint with the supplied configuration.
+     * 
+     * <p>
+     * The supplied configuration should have the following properties:
+     * 
+     * <pre>
+     *   {
+     *     route -> "", // A String that denotes the path of the websocket (ex. "/socketTest", could map to: ws://localhost:8121/context/socketTest)
+     *     onOpen -> def(session) {}, // a Function that will be invoked when a WebSocket is connected to the server
+     *     onClose -> def(session, reason) {}, // a Function that will be invoked when a WebSocket is disconnected from the server
+     *     onMessage -> def(session, message) {}, // a Function that will be invoked when a message comes in on a WebSocket
+     *     onError -> def(session, exception) {}, // a Function that will be invoked when a problem occurs on a WebSocket
+     *   }
+     * </pre>
+     * 
+     * @param config
+     * @return this {@link WebApp} instance for method chaining
+     */
+    public WebApp webSocket(LeoMap config) {
+        this.webSocketConfigs.add(config);
+        return this;
+    }
+    
+    /**
+     * Add's a {@link WebFilter} to this server's configuration.
+     * 
+     * @param config
+     * @param function
+     * @return this {@link WebApp} instance for method chaining
+     */
+    public WebApp filter(LeoMap config, LeoObject function) {
+        this.filters.add(new WebFilter(this, config, function));
+        return this;
+    }
+    
+    /**
+     * @return the {@link WebFilter}s of this application, in the order they were added
+     */
+    List<WebFilter> getFilters() {
+        return this.filters;
+    }
+    
+    /**
+     * Get the {@link Logger}
+     * 
+     * @param name
+     * @return the {@link Logger}
+     */
+    public Logger logger(String name) {
+        return Logger.getLogger(name);
+    }
+    
+    /**
+     * @return this {@link WebApp} configuration
+     */
+    public LeoMap config() {
+        return this.config;
+    }
+    
+    /**
+     * @return true if requests are handled on virtual threads
+     */
+    public boolean isVirtual() {
+        return "virtual".equals(this.config.getString("executor"));
+    }
+    
+    /**
+     * @return the pool of isolated runtimes that run the route functions, if the application is configured with <code>runtimes</code>
+     * and has been started
+     */
+    @LeolaIgnore
+    public Optional<RuntimePool> getRuntimePool() {
+        return this.runtimePool;
+    }
+    
+    /**
+     * Sets the pool of isolated runtimes that run the route functions, which is otherwise created on start up from the 
+     * <code>runtimes</code> configuration
+     * 
+     * @param runtimePool
+     */
+    void setRuntimePool(RuntimePool runtimePool) {
+        this.runtimePool = Optional.ofNullable(runtimePool);
+    }
+    
+    /**
+     * The runtime pool statistics, which contains the pool <b>size</b>, the number of <b>available</b> runtimes, the number of 
+     * requests that timed out waiting for a runtime (<b>timeouts</b>), and the statistics of each of the <b>runtimes</b>.  This is empty if the 
+     * application is not configured with <code>runtimes</code>.
+     * 
+     * @see RuntimePool#getStatistics()
+     * @return the runtime pool statistics
+     */
+    public LeoMap runtimeStats() {
+        return this.runtimePool.map(RuntimePool::getStatistics).orElseGet(LeoMap::new);
+    }
+    
+    /**
+     * @param route
+     * @return the number of milliseconds the supplied {@link Route} function may run before the request is responded to
+     * with a 504, or 0 if there is no limit
+     */
+    @LeolaIgnore
+    public long getRouteTimeout(Route route) {
+        return (route.getTimeout() > 0) ? route.getTimeout() : this.config.getByString("routeTimeout").asLong();
+    }
+    
+    /**
+     * @param route the matched {@link Route}, or null if the request did not match a route
+     * @return the maximum number of bytes of the request body of the supplied {@link Route}, above which the request is 
+     * responded to with a 413, or -1 if there is no limit
+     */
+    @LeolaIgnore
+    public long getMaxBodySize(Route route) {
+        return (route != null && route.getMaxBodySize() > -1) ? route.getMaxBodySize() : this.config.getByString("maxBodySize").asLong();
+    }
+    
+    /**
+     * @return the {@link Coalescer} of the routes configured with <code>coalesce</code>
+     */
+    @LeolaIgnore
+    public Coalescer getCoalescer() {
+        return this.coalescer;
+    }
+    
+    /**
+     * The coalesced request statistics, which contains the number of flights <b>inFlight</b>, and the number of <b>leaders</b>,
+     * <b>followers</b> and <b>abandoned</b> flights.
+     * 
+     * @see Coalescer#getStatistics()
+     * @return the coalesced request statistics
+     */
+    public LeoMap coalesceStats() {
+        return this.coalescer.getStatistics();
+    }
+    
+    /**
+     * @return the {@link Batch} that serves the batch route, if the application is configured with <code>batch</code>
+     */
+    @LeolaIgnore
+    public Optional<Batch> getBatch() {
+        return this.batch;
+    }
+    
+    /**
+     * The batch route statistics, which contains the number of <b>batches</b> served and the number of sub-<b>requests</b>
+     * they contained.  This is empty if the application is not configured with <code>batch</code>.
+     * 
+     * @see Batch#getStatistics()
+     * @return the batch route statistics
+     */
+    public LeoMap batchStats() {
+        return this.batch.map(Batch::getStatistics).orElseGet(LeoMap::new);
+    }
+    
+    /**
+     * @return the executor that runs the sub-requests of batch requests, the responses of coalesced requests and the functions
+     * of web:async, when the application is not configured with <code>handlers</code>; or null for the application of a pooled 
+     * runtime.  Once the <code>maxThreads</code> of the server are busy, it rejects further tasks.
+     */
+    @LeolaIgnore
+    public ExecutorService getDeadlineExecutor() {
+        return this.deadlineExecutor;
+    }
+    
+    /**
+     * @return the timer that responds with a 504 once the timeout of a route elapses, or null for the application of a pooled runtime
+     */
+    @LeolaIgnore
+    public ScheduledExecutorService getDeadlineTimer() {
+        return this.deadlineTimer;
+    }
+    
+    /**
+     * @return the {@link HandlerExecutor} that runs the route functions, if the application is configured with <code>handlers</code>
+     */
+    @LeolaIgnore
+    public Optional<HandlerExecutor> getHandlerExecutor() {
+        return this.handlerExecutor;
+    }
+    
+    /**
+     * @param route
+     * @return the {@link HandlerExecutor} of the lane of the supplied {@link Route}, otherwise the one that runs the route functions
+     * if the application is configured with <code>handlers</code>
+     */
+    @LeolaIgnore
+    public Optional<HandlerExecutor> getHandlerExecutor(Route route) {
+        Optional<HandlerExecutor> lane = route.getLane().map(this.lanes::get);
+        return lane.isPresent() ? lane : this.handlerExecutor;
+    }
+    
+    /**
+     * The route function executor statistics, which contains the number of <b>active</b> and <b>queued</b> requests, and the 
+     * number of requests <b>accepted</b>, <b>rejected</b> and <b>expired</b>.  This is empty if the application is not configured
+     * with <code>handlers</code>.
+     * 
+     * @see HandlerExecutor#getStatistics()
+     * @return the executor statistics
+     */
+    public LeoMap handlerStats() {
+        return this.handlerExecutor.map(HandlerExecutor::getStatistics).orElseGet(LeoMap::new);
+    }
+    
+    /**
+     * The statistics of the executor of each lane, by lane name.
+     * 
+     * @see WebApp#handlerStats()
+     * @return the lane statistics
+     */
+    public LeoMap laneStats() {
+        LeoMap stats = new LeoMap();
+        this.lanes.forEach((name, lane) -> stats.putByString(name, lane.getStatistics()));
+        return stats;
+    }
+    
+    /**
+     * The route lookup statistics, which contains the number of <b>exactHits</b>, <b>dynamicHits</b>, <b>misses</b>, 
+     * the <b>exactHitRatio</b> and the number of <b>timeouts</b> of each route.
+     * 
+     * @see RoutingTable#getStatistics()
+     * @return the route lookup statistics
+     */
+    public LeoMap routeStats() {
+        return this.routes.getStatistics();
+    }
+    
+    /**
+     * Start the application
+     * 
+     * @throws Exception
+     */
+    public void start() throws Exception {      
+        /* a pooled runtime only builds the routes; the server is
+         * started by the runtime that owns the pool
+         */
+        if(RuntimePool.register(this)) {
+            return;
+        }
+        
+        /* only the application that owns the server shuts down on exit, it drains the server 
+         * before it shuts down its mounted applications and runtime pool
+         */
+        if(this.shutdownHook == null) {
+            this.shutdownHook = new Thread( () -> shutdown(), "leola-web-shutdown");
+            Runtime.getRuntime().addShutdownHook(this.shutdownHook);
+        }
+        
+        if(this.server == null || this.server.isStopped()) {
+            String resourceBase = config.getString("resourceBase");
+            String context = config.getString("context");
+            String welcomeFile = config.getString("welcomeFile");
+            int port = config.getInt("port");
+            LeoObject security = config.getByString("security");
+            
+            // rank the routes now, so that any ambiguities are reported on start up
+            this.routes.compile();
+            
+            for(Route route : this.routes.getRoutes()) {
+                if(route.getLane().isPresent() && !this.lanes.containsKey(route.getLane().get())) {
+                    throw new IllegalArgumentException("The route '" + route.getUriTemplate() + "' specifies the unknown lane '" + route.getLane().get() + "'");
+                }
+            }
+            
+            if(config.containsKeyByString("runtimes")) {
+                File executionScript = this.runtime.getExecutionScript();
+                if(executionScript == null) {
+                    throw new IllegalStateException("The runtimes configuration requires the application to be started from a script");
+                }
+                
+                setRuntimePool(new RuntimePool(executionScript, config.getByString("runtimes").as()));
+            }
+            else {
+                warmUp();
+            }
+            
+            // Handles the servlet requests (routes)
+            WebAppContext servletContext = new WebAppContext();
+            servletContext.setInitParameter("useFileMappedBuffer", "false");
+            servletContext.setContextPath("/" + context );
+            servletContext.setResourceBase( resourceBase );
+            servletContext.setWelcomeFiles(new String[] { welcomeFile });
+            
+            // Serves up Static content, once a request does not match a route (see FallbackChain)
+            ResourceHandler resourceContext = new ResourceHandler();      
+            resourceContext.setMinMemoryMappedContentLength(-1);
+            resourceContext.setResourceBase(resourceBase);
+            resourceContext.setWelcomeFiles(new String[] { welcomeFile });
+            resourceContext.setDirectoriesListed(config.getBoolean("showDirectory"));
+            
+            // the filters are run in process by the servlet (see WebFilterChain)
+            WebServlet webServlet = new WebServlet(this, resourceContext);
+            ServletHolder leolaServlet = new ServletHolder(webServlet);
+            leolaServlet.setAsyncSupported(true);
+            leolaServlet.getRegistration().setMultipartConfig(new MultipartConfigElement(webServlet.getMultipartConfig()));
+            servletContext.addServlet(leolaServlet, "/*");            
+            
+            
+            // Handles Web Sockets (if there are any)
+            LeolaWebSocketCreator.configureWebsocketContextHandler(servletContext, this.webSocketConfigs, this.webSocketSessions);
+            
+            this.server = this.serverFactory.newServer(port, servletContext, isVirtual() ? VirtualThreads.newExecutor("leola-web").get() : null);
+            this.server.addBean(resourceContext);
+            if(security != null && security.isMap()) {
+                LeoMap securityConfig = security.as();
+                String keyStorePath = securityConfig.getString("keyStorePath");
+                String keyStorePw = securityConfig.getString("keyStorePassword");
+                String trustStorePath = securityConfig.getString("trustStorePath");
+                String trustStorePw = securityConfig.getString("trustStorePassword");
+                String keyPassword = securityConfig.getString("keyPassword");
+                int sslPort = securityConfig.getInt("port");
+                
+                SslContextFactory sslContextFactory = new SslContextFactory();
+                sslContextFactory.setKeyStorePath(keyStorePath);
+                sslContextFactory.setKeyStorePassword(keyStorePw);
+                sslContextFactory.setTrustStorePath(trustStorePath);
+                sslContextFactory.setTrustStorePassword(trustStorePw);
+                sslContextFactory.setKeyManagerPassword(keyPassword);
+                
+                this.server.addConnector(this.serverFactory.newSslConnector(this.server, sslContextFactory, sslPort));
+            }
+        
+            this.server.start();
+            this.server.join();
+        }
+    }
+    
+    /**
+     * Shutdown the web app.  The server stops accepting connections, and waits up to the <code>server.stopTimeout</code> for the
+     * in-flight requests to finish and for the connected web sockets to close; only then are the handlers, the mounted applications
+     * and the runtime pool shut down, the shutdown handler invoked and the Leola runtime cleared.  Only the first call shuts down
+     * the application, any later call does nothing.
+     * 
+     * @throws Exception
+     */
+    public void shutdown() {        
+        if(!this.isShutdown.compareAndSet(false, true)) {
+            return;
+        }
+        
+        if(this.shutdownHook != null && Thread.currentThread() != this.shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(this.shutdownHook);
+            }
+            catch(IllegalStateException ignore) {
+                /* the JVM is already exiting */
+            }
+        }
+        
+        this.fileWatcher.stopWatching();
+        this.webSocketConfigs.clear();
+        
+        try {
+            stopServer();
+            
+            this.handlerExecutor.ifPresent(HandlerExecutor::shutdown);
+            this.lanes.values().forEach(HandlerExecutor::shutdown);
+            if(this.deadlineExecutor != null) {
+                this.deadlineExecutor.shutdown();
+                this.deadlineTimer.shutdownNow();
+            }
+            this.routes.getMounts().values().forEach(WebApp::shutdown);
+            this.runtimePool.ifPresent(RuntimePool::shutdown);
+            
+            this.shutdownHandler.ifPresent( function -> function.call() ); 
+        }
+        finally {
+            
+            /* Ensure we clear-out the Leola runtime, a mounted application
+             * shares the runtime of the application it is mounted in, which
+             * clears it once it has shut down
+             */
+            if(this.parent == null) {
+                try {
+                    this.runtime.reset();
+                }
+                catch(Exception ignore) {                
+                }
+            }
+            
+            /* This will always ensure that we terminate the server,
+             * regardless of if the user supplied shutdown handler 
+             * fails or not.
+             */
+            
+            if (this.server != null) {
+                this.server.destroy();
+            }
+        }
+    }
+    
+    /**
+     * Gracefully stops the server, if it is running: the connectors stop accepting connections, the connected web sockets are
+     * closed and the in-flight requests are drained, all within the <code>server.stopTimeout</code>.
+     */
+    private void stopServer() {
+        if (this.server == null || !this.server.isRunning()) {
+            return;
+        }
+        
+        long stopTimeout = this.serverFactory.getStopTimeout();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(stopTimeout);
+        try {
+            if(stopTimeout > 0) {
+                for(Connector connector : this.server.getConnectors()) {
+                    connector.shutdown();
+                }
+                
+                closeWebSockets(deadline);
+                
+                /* the server waits for the in-flight requests with whatever
+                 * time is left
+                 */
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                this.server.setStopTimeout(Math.max(1, remaining));
+            }
+            
+            this.server.stop();
+        }
+        catch(Exception e) {
+            Logger.getLogger(WebApp.class.getName()).warning("Unable to gracefully stop the server: " + e);
+        }
+    }
+    
+    /**
+     * Closes the connected web sockets, and waits until the deadline for them to close
+     * 
+     * @param deadline the {@link System#nanoTime()} by which the web sockets should be closed
+     * @throws InterruptedException
+     */
+    private void closeWebSockets(long deadline) throws InterruptedException {
+        this.webSocketSessions.forEach(session -> {
+            if(session.isOpen()) {
+                session.getSession().close(StatusCode.SHUTDOWN, "Server shutting down");
+            }
+        });
+        
+        while(!this.webSocketSessions.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        
+        if(!this.webSocketSessions.isEmpty()) {
+            Logger.getLogger(WebApp.class.getName()).warning(this.webSocketSessions.size() + " web socket(s) did not close before the stop timeout");
+        }
+    }
+}
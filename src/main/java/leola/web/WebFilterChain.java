@@ -0,0 +1,147 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import leola.vm.types.LeoObject;
+
+/**
+ * The {@link WebFilter}s of a {@link WebApp}, and of the applications mounted within it, compiled into a single in-process chain that
+ * runs ahead of the route function.  The route is matched once, and one {@link RequestContext} is built for the request and shared by
+ * every filter and the route function, so a filter may pass values on through the context's <code>contents</code>.
+ *
+ * <p>
+ * The filters run in the order they were added, those of an application before those of the applications mounted within it.  A filter
+ * applies to the requests whose path matches its path specification, as a servlet filter mapping would (i.e., <code>"/api/*"</code>,
+ * <code>"/login"</code> or <code>"*.json"</code>), and that are routed to its application.  The path specification of a mounted application's
+ * filter is under its mount prefix.
+ *
+ * @author Tony
+ *
+ */
+public class WebFilterChain {
+
+    /**
+     * A filter and its compiled path specification
+     */
+    private static class Mapping {
+        final WebFilter filter;
+
+        /* the path must equal the exact path, or start with the prefix, or end with the suffix */
+        final String exact;
+        final String prefix;
+        final String suffix;
+
+        Mapping(WebFilter filter, String mountPrefix) {
+            this.filter = filter;
+
+            String pathSpec = filter.getPathSpec();
+            if(pathSpec.equals("/") || pathSpec.equals("/*")) {
+                this.exact = mountPrefix.isEmpty() ? null : mountPrefix;
+                this.prefix = mountPrefix + "/";
+                this.suffix = null;
+            }
+            else if(pathSpec.startsWith("*.")) {
+                this.exact = null;
+                this.prefix = mountPrefix.isEmpty() ? null : mountPrefix + "/";
+                this.suffix = pathSpec.substring(1);
+            }
+            else if(pathSpec.endsWith("/*")) {
+                this.exact = mountPrefix + pathSpec.substring(0, pathSpec.length() - 2);
+                this.prefix = this.exact + "/";
+                this.suffix = null;
+            }
+            else {
+                this.exact = mountPrefix + pathSpec;
+                this.prefix = null;
+                this.suffix = null;
+            }
+        }
+
+        boolean matches(String path) {
+            if(this.suffix != null) {
+                return path.endsWith(this.suffix) && (this.prefix == null || path.startsWith(this.prefix));
+            }
+
+            return path.equals(this.exact) || (this.prefix != null && path.startsWith(this.prefix));
+        }
+    }
+
+    private final List<Mapping> mappings;
+
+    /**
+     * @param app the root {@link WebApp}
+     */
+    public WebFilterChain(WebApp app) {
+        List<Mapping> mappings = new ArrayList<Mapping>();
+        compile(mappings, app, "");
+        this.mappings = Collections.unmodifiableList(mappings);
+    }
+
+    private static void compile(List<Mapping> mappings, WebApp app, String mountPrefix) {
+        app.getFilters().forEach(filter -> mappings.add(new Mapping(filter, mountPrefix)));
+        app.getRoutingTable().getMounts().forEach( (prefix, mounted) -> compile(mappings, mounted, mountPrefix + prefix));
+    }
+
+    /**
+     * @return true if there are no filters
+     */
+    public boolean isEmpty() {
+        return this.mappings.isEmpty();
+    }
+
+    /**
+     * The filters are matched against the canonical path the request was routed by (see {@link RouteMatch#getPath()}), not 
+     * the raw request path, so that <code>//admin/users</code> or <code>/login/</code> can not slip past the filters of the 
+     * route they resolve to.
+     *
+     * @param match the {@link RouteMatch} of the request
+     * @param req
+     * @return the filters that apply to the supplied request, in order
+     */
+    public List<WebFilter> getFilters(RouteMatch match, HttpServletRequest req) {
+        if(this.mappings.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        String path = match.getPath();
+        String contextPath = req.getContextPath();
+        if(contextPath != null && !contextPath.isEmpty() && path.startsWith(contextPath)) {
+            path = path.substring(contextPath.length());
+        }
+
+        List<WebFilter> filters = new ArrayList<WebFilter>(this.mappings.size());
+        for(Mapping mapping : this.mappings) {
+            if(mapping.matches(path) && mapping.filter.getWebApp().owns(match)) {
+                filters.add(mapping.filter);
+            }
+        }
+
+        return filters;
+    }
+
+    /**
+     * Runs the supplied filters, in order, until one of them blocks the request
+     *
+     * @param filters the filters that apply to the request (see {@link #getFilters(RouteMatch, HttpServletRequest)})
+     * @param context the {@link RequestContext} of the request
+     * @param resp
+     * @return true if every filter allowed the request to continue on to the route function
+     */
+    public static boolean doFilter(List<WebFilter> filters, LeoObject context, HttpServletResponse resp) {
+        for(WebFilter filter : filters) {
+            if(!filter.filter(context, resp)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -1,287 +1,387 @@
-/*
- * see license.txt
- */
-package leola.web;
-
-import java.io.*;
-import java.lang.reflect.Type;
-import java.net.InetAddress;
-import java.util.*;
-
-import com.google.gson.*;
-import com.google.gson.reflect.TypeToken;
-
-import leola.vm.Leola;
-import leola.vm.exceptions.LeolaRuntimeException;
-import leola.vm.lib.*;
-import leola.vm.types.*;
-
-/**
- * Library for creating web applications
- * 
- * @author Tony
- *
- */
-public class WebLeolaLibrary implements LeolaLibrary {
-    private static Gson gson = new GsonBuilder().create();
-    private Leola runtime;
-    
-    
-    /* (non-Javadoc)
-     * @see leola.vm.lib.LeolaLibrary#init(leola.vm.Leola, leola.vm.types.LeoNamespace)
-     */
-    @Override
-    public void init(Leola leola, LeoNamespace namespace) throws LeolaRuntimeException {
-        this.runtime = leola;
-        leola.putIntoNamespace(this, namespace);
-        
-    }
-
-    
-    /**
-     * constructs a new {@link WebApp} that contains an embedded web server that allows
-     * routes to be bound to {@link LeoObject} functions.
-     * 
-     * @return the {@link WebApp}
-     */
-    public WebApp newWebApp(LeoMap config) {
-        WebApp app = new WebApp(this.runtime, config);
-        return app;
-    }
-    
-    
-    public WebResponse ok() {
-        return new WebResponse(HttpStatus.OK);
-    }
-    public WebResponse noContent() {
-        return new WebResponse(HttpStatus.NO_CONTENT);
-    }
-    public WebResponse created() {
-        return new WebResponse(HttpStatus.CREATED);
-    }
-    public WebResponse accepted() {
-        return new WebResponse(HttpStatus.ACCEPTED);
-    }
-    
-    public WebResponse notModified() {
-        return new WebResponse(HttpStatus.NOT_MODIFIED);
-    }
-    public WebResponse notFound() {
-        return new WebResponse(HttpStatus.NOT_FOUND);
-    }
-    public WebResponse notAcceptable() {
-        return new WebResponse(HttpStatus.NOT_ACCEPTABLE);
-    }
-    public WebResponse unauthorized() {
-        return new WebResponse(HttpStatus.UNAUTHORIZED);
-    }
-    public WebResponse badRequest() {
-        return new WebResponse(HttpStatus.BAD_REQUEST);
-    }
-    public WebResponse forbidden() {
-        return new WebResponse(HttpStatus.FORBIDDEN);
-    }    
-    
-    
-    public WebResponse serverError() {
-        return new WebResponse(HttpStatus.INTERNAL_SERVER_ERROR);
-    }
- 
-    /**
-     * Issue a redirect
-     * 
-     * @param url
-     * @return the {@link WebResponse} configured for a redirect
-     */
-    public WebResponse redirect(String url) {
-        return new WebResponse(HttpStatus.MOVED_PERMANENTLY).redirect(url);
-    }
-    
-    /**
-     * Constructs a {@link WebResponse} with the supplied status HTTP code.
-     * 
-     * @param status the HTTP status code
-     * @return the {@link WebResponse}
-     */
-    public WebResponse status(int status) {
-        return new WebResponse(status);
-    }
-    
-    /**
-     * Converts the supplied {@link LeoObject} into a JSON {@link String}
-     * 
-     * @param obj
-     * @return the JSON string
-     */
-    public static String toJson(LeoObject obj) {           
-        return gson.toJson(toJsonElement(obj));    
-    }
-    
-    /**
-     * Converts the supplied JSON {@link String} into a {@link LeoObject}
-     * 
-     * @param message
-     * @return the {@link LeoObject}
-     */
-    @LeolaMethod(alias="fromJson")
-    public static LeoObject fromJson(String message) {
-        JsonElement element = gson.fromJson(message, JsonElement.class);
-        return toLeoObject(element);
-    }
-    
-    @LeolaIgnore
-    public static LeoObject fromJson(InputStream iStream) throws IOException {
-        JsonElement element = gson.fromJson(new InputStreamReader(iStream), JsonElement.class);
-        return toLeoObject(element);
-    }
-    
-    @LeolaIgnore
-    public static Object toJsonJavaObject(LeoObject obj) {
-        if(LeoObject.isNull(obj)) {
-            return null;
-        }
-        
-        if(obj.isString() || obj.isNumber() || obj.isBoolean()) {
-            return obj.getValue();
-        }
-        
-        // cheating for now...
-        if(obj.isArray()) {
-            Type type = new TypeToken<List<Object>>(){}.getType();
-            JsonElement elements = toJsonElement(obj);
-            return gson.fromJson(elements, type);
-        }
-        
-        if(obj.isMap()) {
-            Type type = new TypeToken<Map<String, Object>>(){}.getType();
-            JsonElement elements = toJsonElement(obj);
-            return gson.fromJson(elements, type);
-        }
-        
-        if(obj.isNativeClass()) {
-            return obj.getValue();
-        }
-        
-        return obj.getValue();   
-    }
-    
-    @LeolaIgnore
-    private static JsonElement toJsonElement(LeoObject obj) {
-        if(LeoObject.isNull(obj)) {
-            return JsonNull.INSTANCE;
-        }
-        
-        if(obj.isArray()) {
-            JsonArray array = new JsonArray();
-            LeoArray leoArray = obj.as();
-            for(int i = 0; i < leoArray.size(); i++) {
-                array.add(toJsonElement(leoArray.get(i)));
-            }
-            
-            return array;
-        }
-        
-        if(obj.isMap()) {
-            JsonObject object = new JsonObject();
-            LeoMap leoMap = obj.as();
-            for(LeoObject key : leoMap.keySet()) {
-                object.add(key.toString(), toJsonElement(leoMap.get(key)));
-            }
-            
-            return object;
-        }
-        
-        if(obj.isClass()) {
-            JsonObject object = new JsonObject();
-            LeoClass leoClass = obj.as();
-            for(LeoObject key : leoClass.getPropertyNames()) {
-                String name = key.toString();
-                if(!name.equals("this")) {
-                    object.add(key.toString(), toJsonElement(leoClass.getProperty(key))); 
-                }
-            }
-            
-            return object;
-        }
-        
-        if(obj.isString()) {
-            return new JsonPrimitive(obj.toString());
-        }
-        
-        if(obj.isNumber()) {
-            return new JsonPrimitive((Number)obj.getValue());
-        }
-        
-        if(obj.isBoolean()) {
-            return new JsonPrimitive(obj.isTrue());
-        }
-        
-        if(obj.isNativeClass()) {
-            LeoNativeClass nClass = obj.as();
-            return gson.toJsonTree(nClass.getInstance());
-        }
-        
-        return gson.toJsonTree(obj);
-    }
-    
-    /**
-     * Converts the {@link JsonElement} into the equivalent {@link LeoObject}
-     * 
-     * @param element
-     * @return the {@link LeoObject}
-     */
-    private static LeoObject toLeoObject(JsonElement element) {
-        if(element==null||element.isJsonNull()) {
-            return LeoObject.NULL;
-        }
-        
-        if(element.isJsonArray()) {
-            JsonArray array = element.getAsJsonArray();
-            LeoArray leoArray = new LeoArray(array.size());
-            array.forEach(e -> leoArray.add(toLeoObject(e)));
-            return leoArray;
-        }
-        
-        if(element.isJsonObject()) {
-            JsonObject object = element.getAsJsonObject();
-            LeoMap leoMap = new LeoMap();
-            object.entrySet().forEach( entry -> {
-                leoMap.putByString(entry.getKey(), toLeoObject(entry.getValue()));
-            });
-            
-            return leoMap;
-        }
-        
-        if(element.isJsonPrimitive()) {
-            JsonPrimitive primitive = element.getAsJsonPrimitive();
-            if(primitive.isBoolean()) {
-                return LeoObject.valueOf(primitive.getAsBoolean());
-            }
-            
-            if(primitive.isNumber()) {
-                return LeoObject.valueOf(primitive.getAsDouble());
-            }
-            
-            if(primitive.isString()) {
-                return LeoString.valueOf(primitive.getAsString());
-            }
-        }
-        
-        return LeoObject.NULL;
-    }
-    
-    /**
-     * @return the host name of the server this application is running on
-     */
-    public String hostname() {
-        try { 
-            return InetAddress.getLocalHost().getHostName(); 
-        }
-        catch(Exception e) {
-            throw new RuntimeException(e);
-        }
-    }
-}
-
-
-
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import java.io.*;
+import java.lang.reflect.Type;
+import java.net.InetAddress;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import com.google.gson.*;
+import com.google.gson.reflect.TypeToken;
+
+import leola.vm.Leola;
+import leola.vm.exceptions.LeolaRuntimeException;
+import leola.vm.lib.*;
+import leola.vm.types.*;
+
+/**
+ * Library for creating web applications
+ * 
+ * @author Tony
+ *
+ */
+public class WebLeolaLibrary implements LeolaLibrary {
+    private static Gson gson = new GsonBuilder().create();
+    
+    /**
+     * The executor of the route function running on the current thread, which runs the functions supplied to 
+     * {@link WebLeolaLibrary#async(LeoObject)}
+     */
+    private static final ThreadLocal<Executor> routeExecutor = new ThreadLocal<Executor>();
+    
+    private Leola runtime;
+    
+    
+    /* (non-Javadoc)
+     * @see leola.vm.lib.LeolaLibrary#init(leola.vm.Leola, leola.vm.types.LeoNamespace)
+     */
+    @Override
+    public void init(Leola leola, LeoNamespace namespace) throws LeolaRuntimeException {
+        this.runtime = leola;
+        leola.putIntoNamespace(this, namespace);
+        
+    }
+
+    
+    /**
+     * constructs a new {@link WebApp} that contains an embedded web server that allows
+     * routes to be bound to {@link LeoObject} functions.
+     * 
+     * @return the {@link WebApp}
+     */
+    public WebApp newWebApp(LeoMap config) {
+        WebApp app = new WebApp(this.runtime, config);
+        return app;
+    }
+    
+    
+    public LeoObject ok() {
+        return bind(new WebResponse(HttpStatus.OK));
+    }
+    public LeoObject noContent() {
+        return bind(new WebResponse(HttpStatus.NO_CONTENT));
+    }
+    public LeoObject created() {
+        return bind(new WebResponse(HttpStatus.CREATED));
+    }
+    public LeoObject accepted() {
+        return bind(new WebResponse(HttpStatus.ACCEPTED));
+    }
+    
+    public LeoObject notModified() {
+        return bind(new WebResponse(HttpStatus.NOT_MODIFIED));
+    }
+    public LeoObject notFound() {
+        return bind(new WebResponse(HttpStatus.NOT_FOUND));
+    }
+    public LeoObject notAcceptable() {
+        return bind(new WebResponse(HttpStatus.NOT_ACCEPTABLE));
+    }
+    public LeoObject unauthorized() {
+        return bind(new WebResponse(HttpStatus.UNAUTHORIZED));
+    }
+    public LeoObject badRequest() {
+        return bind(new WebResponse(HttpStatus.BAD_REQUEST));
+    }
+    public LeoObject forbidden() {
+        return bind(new WebResponse(HttpStatus.FORBIDDEN));
+    }    
+    
+    
+    public LeoObject serverError() {
+        return bind(new WebResponse(HttpStatus.INTERNAL_SERVER_ERROR));
+    }
+ 
+    /**
+     * Runs the supplied function on a separate thread.  A route function may return the result of this, in which case the 
+     * request thread is released while the function runs, and the response is sent once it completes:
+     * 
+     * <pre>
+     *   app.get("/slow", def(context) {
+     *      return web:async(def() {
+     *         var result = callSlowService()
+     *         return web:ok().json(result)
+     *      })
+     *   })
+     * </pre>
+     * 
+     * The function runs on the executor of the route (see <code>handlers</code> and <code>lanes</code>), or otherwise on the executor
+     * of the {@link WebApp}, so that it is bound by the same limits as the route function.  If the executor is at capacity, the future
+     * fails with a {@link RejectedExecutionException}, which is responded to with a 503.  Outside of a route function, the function is 
+     * run on the calling thread.
+     * 
+     * @param function the function to run, which should return a {@link WebResponse}
+     * @return the future result of the function
+     */
+    public CompletableFuture<LeoObject> async(LeoObject function) {
+        final Executor executor = routeExecutor.get();
+        if(executor == null) {
+            return CompletableFuture.completedFuture(function.call());
+        }
+        
+        try {
+            return CompletableFuture.supplyAsync(() -> callWith(executor, () -> function.call()), executor);
+        }
+        catch(RejectedExecutionException e) {
+            CompletableFuture<LeoObject> rejected = new CompletableFuture<LeoObject>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+    
+    /**
+     * Makes the supplied call, any function it supplies to {@link WebLeolaLibrary#async(LeoObject)} is run on 
+     * the supplied executor
+     * 
+     * @param executor the executor of the route
+     * @param call calls the function
+     * @return the result of the function
+     */
+    @LeolaIgnore
+    static LeoObject callWith(Executor executor, Supplier<LeoObject> call) {
+        Executor previous = routeExecutor.get();
+        routeExecutor.set(executor);
+        try {
+            return call.get();
+        }
+        finally {
+            if(previous != null) {
+                routeExecutor.set(previous);
+            }
+            else {
+                routeExecutor.remove();
+            }
+        }
+    }
+    
+    /**
+     * Creates a promise, which may be returned by a route function and completed later (i.e., from a callback).  The
+     * response is sent once the promise is completed:
+     * 
+     * <pre>
+     *   var promise = web:promise()
+     *   client.get(url, def(result) { promise.complete(web:ok().json(result)) })
+     *   return promise
+     * </pre>
+     * 
+     * @return the promise
+     */
+    public CompletableFuture<Object> promise() {
+        return new CompletableFuture<Object>();
+    }
+    
+    /**
+     * Issue a redirect
+     * 
+     * @param url
+     * @return the {@link WebResponse} configured for a redirect, bound for scripts
+     */
+    public LeoObject redirect(String url) {
+        return bind(new WebResponse(HttpStatus.MOVED_PERMANENTLY).redirect(url));
+    }
+    
+    /**
+     * Constructs a {@link WebResponse} with the supplied status HTTP code.
+     * 
+     * @param status the HTTP status code
+     * @return the {@link WebResponse}, bound for scripts
+     */
+    public LeoObject status(int status) {
+        return bind(new WebResponse(status));
+    }
+    
+    /**
+     * The responses handed to scripts call their methods through the precomputed bindings (see {@link NativeBindings}), 
+     * i.e. web:ok().header(..).json(..)
+     * 
+     * @param response
+     * @return the bound {@link WebResponse}
+     */
+    private static LeoObject bind(WebResponse response) {
+        return NativeBindings.valueOf(response);
+    }
+    
+    /**
+     * Converts the supplied {@link LeoObject} into a JSON {@link String}
+     * 
+     * @param obj
+     * @return the JSON string
+     */
+    public static String toJson(LeoObject obj) {           
+        return gson.toJson(toJsonElement(obj));    
+    }
+    
+    /**
+     * Converts the supplied JSON {@link String} into a {@link LeoObject}
+     * 
+     * @param message
+     * @return the {@link LeoObject}
+     */
+    @LeolaMethod(alias="fromJson")
+    public static LeoObject fromJson(String message) {
+        JsonElement element = gson.fromJson(message, JsonElement.class);
+        return toLeoObject(element);
+    }
+    
+    @LeolaIgnore
+    public static LeoObject fromJson(InputStream iStream) throws IOException {
+        JsonElement element = gson.fromJson(new InputStreamReader(iStream), JsonElement.class);
+        return toLeoObject(element);
+    }
+    
+    @LeolaIgnore
+    public static Object toJsonJavaObject(LeoObject obj) {
+        if(LeoObject.isNull(obj)) {
+            return null;
+        }
+        
+        if(obj.isString() || obj.isNumber() || obj.isBoolean()) {
+            return obj.getValue();
+        }
+        
+        // cheating for now...
+        if(obj.isArray()) {
+            Type type = new TypeToken<List<Object>>(){}.getType();
+            JsonElement elements = toJsonElement(obj);
+            return gson.fromJson(elements, type);
+        }
+        
+        if(obj.isMap()) {
+            Type type = new TypeToken<Map<String, Object>>(){}.getType();
+            JsonElement elements = toJsonElement(obj);
+            return gson.fromJson(elements, type);
+        }
+        
+        if(obj.isNativeClass()) {
+            return obj.getValue();
+        }
+        
+        return obj.getValue();   
+    }
+    
+    @LeolaIgnore
+    private static JsonElement toJsonElement(LeoObject obj) {
+        if(LeoObject.isNull(obj)) {
+            return JsonNull.INSTANCE;
+        }
+        
+        if(obj.isArray()) {
+            JsonArray array = new JsonArray();
+            LeoArray leoArray = obj.as();
+            for(int i = 0; i < leoArray.size(); i++) {
+                array.add(toJsonElement(leoArray.get(i)));
+            }
+            
+            return array;
+        }
+        
+        if(obj.isMap()) {
+            JsonObject object = new JsonObject();
+            LeoMap leoMap = obj.as();
+            for(LeoObject key : leoMap.keySet()) {
+                object.add(key.toString(), toJsonElement(leoMap.get(key)));
+            }
+            
+            return object;
+        }
+        
+        if(obj.isClass()) {
+            JsonObject object = new JsonObject();
+            LeoClass leoClass = obj.as();
+            for(LeoObject key : leoClass.getPropertyNames()) {
+                String name = key.toString();
+                if(!name.equals("this")) {
+                    object.add(key.toString(), toJsonElement(leoClass.getProperty(key))); 
+                }
+            }
+            
+            return object;
+        }
+        
+        if(obj.isString()) {
+            return new JsonPrimitive(obj.toString());
+        }
+        
+        if(obj.isNumber()) {
+            return new JsonPrimitive((Number)obj.getValue());
+        }
+        
+        if(obj.isBoolean()) {
+            return new JsonPrimitive(obj.isTrue());
+        }
+        
+        if(obj.isNativeClass()) {
+            LeoNativeClass nClass = obj.as();
+            return gson.toJsonTree(nClass.getInstance());
+        }
+        
+        return gson.toJsonTree(obj);
+    }
+    
+    /**
+     * Converts the {@link JsonElement} into the equivalent {@link LeoObject}
+     * 
+     * @param element
+     * @return the {@link LeoObject}
+     */
+    private static LeoObject toLeoObject(JsonElement element) {
+        if(element==null||element.isJsonNull()) {
+            return LeoObject.NULL;
+        }
+        
+        if(element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            LeoArray leoArray = new LeoArray(array.size());
+            array.forEach(e -> leoArray.add(toLeoObject(e)));
+            return leoArray;
+        }
+        
+        if(element.isJsonObject()) {
+            JsonObject object = element.getAsJsonObject();
+            LeoMap leoMap = new LeoMap();
+            object.entrySet().forEach( entry -> {
+                leoMap.putByString(entry.getKey(), toLeoObject(entry.getValue()));
+            });
+            
+            return leoMap;
+        }
+        
+        if(element.isJsonPrimitive()) {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if(primitive.isBoolean()) {
+                return LeoObject.valueOf(primitive.getAsBoolean());
+            }
+            
+            if(primitive.isNumber()) {
+                return LeoObject.valueOf(primitive.getAsDouble());
+            }
+            
+            if(primitive.isString()) {
+                return LeoString.valueOf(primitive.getAsString());
+            }
+        }
+        
+        return LeoObject.NULL;
+    }
+    
+    /**
+     * @return the host name of the server this application is running on
+     */
+    public String hostname() {
+        try { 
+            return InetAddress.getLocalHost().getHostName(); 
+        }
+        catch(Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
+
+
+
@@ -1,98 +1,751 @@
-/*
- * see license.txt
- */
-package leola.web;
-
-import java.io.IOException;
-import java.lang.annotation.Annotation;
-import java.util.Optional;
-
-import javax.servlet.ServletException;
-import javax.servlet.annotation.MultipartConfig;
-import javax.servlet.http.HttpServlet;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-
-import leola.vm.types.LeoObject;
-
-
-/**
- * A {@link HttpServlet} that handles the Web to Java to Leola relationships.
- * 
- * @author Tony
- *
- */
-public class WebServlet extends HttpServlet {   
-    
-    /**
-     * SUID
-     */
-    private static final long serialVersionUID = 334080569766757765L;
-    
-    
-    private WebApp webapp;
-    
-    /**
-     * @param webapp
-     */
-    public WebServlet(WebApp webapp) {
-        this.webapp = webapp;
-    }
-
-    /**
-     * @return this servlets {@link MultipartConfig} 
-     */
-    public MultipartConfig getMultipartConfig() {
-        return new MultipartConfig() {
-            
-            @Override
-            public Class<? extends Annotation> annotationType() {
-                return MultipartConfig.class;
-            }
-            
-            @Override
-            public long maxRequestSize() {
-                return webapp.config().getByString("multiPart").getObject("maxRequestSize").asLong();
-            }
-            
-            @Override
-            public long maxFileSize() {                
-                return webapp.config().getByString("multiPart").getObject("maxFileSize").asLong();
-            }
-            
-            @Override
-            public String location() {                
-                return "";
-            }
-            
-            @Override
-            public int fileSizeThreshold() {
-                return 0;
-            }
-        };
-    }
-
-    @Override
-    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-       
-        WebResponse webResponse = this.webapp.getRoute(req).map(route -> {            
-            LeoObject context = webapp.buildContext(Optional.of(route), req, resp);
-            try {
-                LeoObject result = route.getFunction().call(context);
-                if(result.isError()) {
-                    return webapp.handleException(context, result);
-                }
-                
-                return (WebResponse)result.getValue(WebResponse.class);
-            }
-            catch(Exception e) {
-                return webapp.handleException(context, e);
-            }
-            
-        })
-        .orElse(webapp.handle404(req, resp));
-        
-        webResponse.packageResponse(this.webapp, resp);        
-    }
-
-}
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.annotation.MultipartConfig;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.handler.ResourceHandler;
+
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoString;
+import leola.web.Coalescer.Flight;
+import leola.web.RoutingTable.Route;
+import leola.web.RuntimePool.PooledRuntime;
+
+
+/**
+ * A {@link HttpServlet} that handles the Web to Java to Leola relationships.
+ * 
+ * @author Tony
+ *
+ */
+public class WebServlet extends HttpServlet {   
+    
+    /**
+     * SUID
+     */
+    private static final long serialVersionUID = 334080569766757765L;
+    
+    private static final Logger LOG = Logger.getLogger(WebServlet.class.getName());
+    
+    
+    private WebApp webapp;
+    private WebFilterChain filters;
+    private FallbackChain fallbacks;
+    
+    /**
+     * @param webapp
+     */
+    public WebServlet(WebApp webapp) {
+        this(webapp, null);
+    }
+    
+    /**
+     * @param webapp
+     * @param resources serves the static resources of the requests that do not match a route, or null if there are none
+     */
+    public WebServlet(WebApp webapp, ResourceHandler resources) {
+        this.webapp = webapp;
+        this.filters = new WebFilterChain(webapp);
+        this.fallbacks = new FallbackChain(webapp, resources);
+    }
+
+    /**
+     * @return this servlets {@link MultipartConfig} 
+     */
+    public MultipartConfig getMultipartConfig() {
+        return new MultipartConfig() {
+            
+            @Override
+            public Class<? extends Annotation> annotationType() {
+                return MultipartConfig.class;
+            }
+            
+            @Override
+            public long maxRequestSize() {
+                return webapp.config().getByString("multiPart").getObject("maxRequestSize").asLong();
+            }
+            
+            @Override
+            public long maxFileSize() {                
+                return webapp.config().getByString("multiPart").getObject("maxFileSize").asLong();
+            }
+            
+            @Override
+            public String location() {                
+                return "";
+            }
+            
+            @Override
+            public int fileSizeThreshold() {
+                return 0;
+            }
+        };
+    }
+
+    @Override
+    protected void service(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        Optional<Batch> batch = this.webapp.getBatch();
+        if(batch.isPresent() && batch.get().isBatch(req)) {
+            serviceBatch(batch.get(), req, resp);
+            return;
+        }
+        
+        Optional<RouteMatch> routeMatch = this.webapp.getRouteMatch(req);
+        
+        /* if the request is under a mounted application, it handles the request */
+        WebApp app = this.webapp.getRequestApp(req);
+        
+        /* only now that the route lookup failed are the fallbacks tried */
+        if(!routeMatch.isPresent()) {
+            this.fallbacks.respond(req, resp);
+            return;
+        }
+        
+        RouteMatch match = routeMatch.get();
+        
+        /* refuse a body that is too large before it is read, or the filters run */
+        if(isBodyTooLarge(app, match, req)) {
+            new WebResponse(HttpStatus.REQUEST_ENTITY_TOO_LARGE).packageResponse(app, resp);
+            return;
+        }
+        
+        long timeout = this.webapp.getRouteTimeout(match.getRoute());
+        
+        /* the filters share the context of the route function */
+        LeoObject context = null;
+        List<WebFilter> filters = this.filters.getFilters(match, req);
+        if(!filters.isEmpty()) {
+            context = app.buildContext(match, req, resp);
+            if(!WebFilterChain.doFilter(filters, context, resp)) {
+                return;
+            }
+        }
+        
+        /* an identical request is in flight, so wait on its response */
+        if(Coalescer.isCoalesced(match.getRoute(), req)) {
+            Optional<Flight> flight = this.webapp.getCoalescer().join(match.getRoute(), req);
+            if(flight.isPresent()) {
+                AsyncResponse async = (timeout > 0) 
+                        ? new AsyncResponse(app, req, timeout, null, null)
+                        : new AsyncResponse(app, req);
+                
+                /* the cookies of the leading request are its own */
+                flight.get().whenLanded(buffered -> async.respond(response -> buffered.writeTo(response, false)), 
+                                        () -> async.respond(new WebResponse(HttpStatus.SERVICE_UNAVAILABLE)),
+                                        this.webapp.getDeadlineExecutor());
+                return;
+            }
+        }
+        
+        Optional<HandlerExecutor> executor = this.webapp.getHandlerExecutor(match.getRoute());
+        if(!executor.isPresent() && timeout <= 0) {
+            boolean handedOff = false;
+            try {
+                CompletableFuture<WebResponse> result = dispatch(app, match, req, resp, context).toCompletableFuture();
+                
+                /* the route function returned a future, so release this thread
+                 * and respond once it completes
+                 */
+                handedOff = !result.isDone();
+                if(handedOff) {
+                    new AsyncResponse(app, req).complete(result);
+                }
+                else {
+                    final WebResponse webResponse = result.join();
+                    write(req, resp, response -> webResponse.packageResponse(app, response));
+                }
+            }
+            finally {
+                if(!handedOff) {
+                    Coalescer.getFlight(req).ifPresent(Flight::abandon);
+                }
+            }
+            return;
+        }
+        
+        /* if the route has a timeout, the deadline timer responds with a 504 and 
+         * interrupts the route function once it elapses
+         */
+        AsyncResponse async = (timeout > 0) 
+                ? new AsyncResponse(app, req, timeout, match.getRoute(), this.webapp.getDeadlineTimer())
+                : new AsyncResponse(app, req);
+        
+        final LeoObject filteredContext = context;
+        Runnable handler = () -> {
+            async.bind(Thread.currentThread());
+            try {
+                async.complete(dispatch(app, match, req, resp, filteredContext));
+            }
+            finally {
+                async.unbind();
+            }
+        };
+        
+        /* without an executor, the route function keeps to this thread, so that a 
+         * timeout does not lift the bound of the server threads
+         */
+        if(!executor.isPresent()) {
+            handler.run();
+            return;
+        }
+        
+        /* run the route function on the executor, releasing this thread; if the 
+         * executor is at capacity, shed the request 
+         */
+        HandlerExecutor handlers = executor.get();
+        Runnable overloaded = () -> async.respond(response -> handlers.writeOverloaded(response));
+        
+        if(!handlers.execute(handler, overloaded)) {
+            overloaded.run();
+        }
+    }
+    
+    /**
+     * Serves a batch request (see {@link Batch}).  Its sub-requests are run in parallel, releasing this thread, and the batch is
+     * responded to once they have all completed.
+     * 
+     * @param batch
+     * @param req the batch request
+     * @param resp
+     * @throws IOException
+     */
+    private void serviceBatch(Batch batch, HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        List<HttpServletRequest> requests = null;
+        try {
+            requests = batch.parse(req);
+        }
+        catch(RequestBody.TooLargeException e) {
+            new WebResponse(HttpStatus.REQUEST_ENTITY_TOO_LARGE).packageResponse(this.webapp, resp);
+            return;
+        }
+        catch(IllegalArgumentException e) {
+            new WebResponse(HttpStatus.BAD_REQUEST).text(LeoString.valueOf(e.getMessage())).packageResponse(this.webapp, resp);
+            return;
+        }
+        
+        AsyncResponse async = new AsyncResponse(this.webapp, req);
+        
+        List<CompletableFuture<BufferedResponse>> responses = new ArrayList<CompletableFuture<BufferedResponse>>(requests.size());
+        requests.forEach(request -> responses.add(serviceBatched(request, resp)));
+        
+        CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[responses.size()])).whenComplete( (completed, error) -> {
+            List<BufferedResponse> buffered = new ArrayList<BufferedResponse>(responses.size());
+            responses.forEach(response -> buffered.add(response.isCompletedExceptionally() ? null : response.join()));
+            
+            async.respond(response -> batch.write(response, buffered));
+        });
+    }
+    
+    /**
+     * Runs a sub-request of a batch request on the executor of its route, recording its response.  If the route has a timeout, 
+     * a 504 is recorded for the sub-request once it elapses and the thread running the route function is interrupted; if the
+     * executor is at capacity, a 503 is recorded.
+     * 
+     * @param req the sub-request
+     * @param resp the response of the batch request
+     * @return the recorded response, once the route function has completed
+     */
+    private CompletableFuture<BufferedResponse> serviceBatched(HttpServletRequest req, HttpServletResponse resp) {
+        CompletableFuture<BufferedResponse> result = new CompletableFuture<BufferedResponse>();
+        BufferedResponse buffered = new BufferedResponse(resp);
+        
+        Optional<RouteMatch> routeMatch = this.webapp.getRouteMatch(req);
+        WebApp app = this.webapp.getRequestApp(req);
+        
+        /* the thread running the route function, if any */
+        AtomicReference<Thread> worker = new AtomicReference<Thread>();
+        
+        /* the deadline timer records a 504 for this sub-request alone once the timeout of its route elapses */
+        long timeout = routeMatch.map(match -> this.webapp.getRouteTimeout(match.getRoute())).orElse(0L);
+        if(timeout > 0) {
+            Route route = routeMatch.get().getRoute();
+            Future<?> deadline = this.webapp.getDeadlineTimer().schedule(() -> {
+                /* the route function may still write to its own response, so the time out is recorded in another */
+                BufferedResponse timedOut = new BufferedResponse(resp);
+                try {
+                    new WebResponse(HttpStatus.GATEWAY_TIMEOUT).packageResponse(app, timedOut);
+                }
+                catch(IOException ignore) {
+                    /* the response is only buffered */
+                }
+                
+                if(result.complete(timedOut)) {
+                    route.timedOut();
+                    LOG.warning("Route '" + route.getUriTemplate() + "' exceeded its timeout of " + timeout + " ms");
+                    
+                    synchronized(worker) {
+                        Thread thread = worker.get();
+                        if(thread != null) {
+                            thread.interrupt();
+                        }
+                    }
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+            
+            result.whenComplete( (response, error) -> deadline.cancel(false));
+        }
+        
+        Runnable handler = () -> {
+            worker.set(Thread.currentThread());
+            try {
+                if(!routeMatch.isPresent()) {
+                    this.fallbacks.respond(req, buffered);
+                    result.complete(buffered);
+                    return;
+                }
+                
+                if(isBodyTooLarge(app, routeMatch.get(), req)) {
+                    new WebResponse(HttpStatus.REQUEST_ENTITY_TOO_LARGE).packageResponse(app, buffered);
+                    result.complete(buffered);
+                    return;
+                }
+                
+                /* the sub-request passes through the filters of its route, as any other request */
+                LeoObject context = null;
+                List<WebFilter> filters = this.filters.getFilters(routeMatch.get(), req);
+                if(!filters.isEmpty()) {
+                    context = app.buildContext(routeMatch.get(), req, buffered);
+                    if(!WebFilterChain.doFilter(filters, context, buffered)) {
+                        result.complete(buffered);
+                        return;
+                    }
+                }
+                
+                CompletionStage<WebResponse> response = dispatch(app, routeMatch.get(), req, buffered, context);
+                response.whenComplete( (webResponse, error) -> {
+                    try {
+                        if(error != null) {
+                            result.completeExceptionally(error);
+                        }
+                        else {
+                            webResponse.packageResponse(app, buffered);
+                            result.complete(buffered);
+                        }
+                    }
+                    catch(Exception e) {
+                        result.completeExceptionally(e);
+                    }
+                });
+            }
+            catch(Exception e) {
+                result.completeExceptionally(e);
+            }
+            finally {
+                /* clear any interrupt from a time out so that it does not leak into the next task of the thread */
+                synchronized(worker) {
+                    worker.set(null);
+                    Thread.interrupted();
+                }
+            }
+        };
+        
+        /* without handlers, the sub-request runs on the bounded deadline executor; 
+         * once it is at capacity, the sub-request is shed
+         */
+        Optional<HandlerExecutor> executor = routeMatch.flatMap(match -> this.webapp.getHandlerExecutor(match.getRoute()));
+        if(!executor.isPresent()) {
+            try {
+                this.webapp.getDeadlineExecutor().execute(handler);
+            }
+            catch(RejectedExecutionException e) {
+                try {
+                    new WebResponse(HttpStatus.SERVICE_UNAVAILABLE).packageResponse(app, buffered);
+                    result.complete(buffered);
+                }
+                catch(IOException ioe) {
+                    result.completeExceptionally(ioe);
+                }
+            }
+            return result;
+        }
+        
+        /* if the executor is at capacity, shed the sub-request */
+        HandlerExecutor handlers = executor.get();
+        Runnable overloaded = () -> {
+            try {
+                handlers.writeOverloaded(buffered);
+                result.complete(buffered);
+            }
+            catch(IOException e) {
+                result.completeExceptionally(e);
+            }
+        };
+        
+        if(!handlers.execute(handler, overloaded)) {
+            overloaded.run();
+        }
+        
+        return result;
+    }
+    
+    /**
+     * @param app the {@link WebApp} that handles the request
+     * @param match the matched route
+     * @param req
+     * @return true if the request declares a body larger than the <code>maxBodySize</code> of its route
+     */
+    private static boolean isBodyTooLarge(WebApp app, RouteMatch match, HttpServletRequest req) {
+        long maxBodySize = app.getMaxBodySize(match.getRoute());
+        return maxBodySize > -1 && req.getContentLengthLong() > maxBodySize;
+    }
+    
+    /**
+     * Invokes the route function of the supplied {@link RouteMatch}.  If the application is configured with <code>runtimes</code>,
+     * the request is resolved against, and the route function is run by, a free runtime of the {@link RuntimePool}.
+     * 
+     * @param app the {@link WebApp} that handles the request
+     * @param match the matched route
+     * @param req
+     * @param resp
+     * @param context the {@link RequestContext} the filters ran with, or null if no filter applied
+     * @return the {@link WebResponse} to respond with, which completes later if the route function returned a future
+     */
+    private CompletionStage<WebResponse> dispatch(WebApp app, RouteMatch match, HttpServletRequest req, HttpServletResponse resp, LeoObject context) {
+        Optional<RuntimePool> runtimes = this.webapp.getRuntimePool();
+        if(!runtimes.isPresent()) {
+            return invoke(app, match, req, resp, context);
+        }
+        
+        RuntimePool pool = runtimes.get();
+        Optional<PooledRuntime> acquired = Optional.empty();
+        try {
+            acquired = pool.acquire();
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        if(!acquired.isPresent()) {
+            return CompletableFuture.completedFuture(new WebResponse(HttpStatus.SERVICE_UNAVAILABLE));
+        }
+        
+        /* the runtime is returned once the route function completes,
+         * which is later if it returned a future
+         */
+        PooledRuntime pooled = acquired.get();
+        
+        CompletionStage<WebResponse> response = null;
+        try {
+            RouteMatch pooledMatch = pooled.resolve(match.getMethod(), match.getPath());
+            if(!pooledMatch.isMatched()) {
+                response = CompletableFuture.completedFuture(app.handleNoRoute(req, resp));
+            }
+            else {
+                /* the context belongs to this runtime, but shares the contents the filters bound */
+                WebApp pooledApp = pooledMatch.getApp().orElse(pooled.getApp());
+                LeoObject pooledContext = pooledApp.buildContext(pooledMatch, req, resp);
+                if(context != null) {
+                    ((RequestContext)pooledContext.getValue()).shareContents((RequestContext)context.getValue());
+                }
+                
+                response = invoke(pooledApp, pooledMatch, req, resp, pooledContext);
+            }
+        }
+        finally {
+            if(response == null) {
+                pool.release(pooled);
+            }
+        }
+        
+        return response.whenComplete( (webResponse, error) -> pool.release(pooled));
+    }
+    
+    /**
+     * Invokes the route function of the supplied {@link RouteMatch}.
+     * 
+     * @param app the {@link WebApp} that handles the request
+     * @param match the matched route
+     * @param req
+     * @param resp
+     * @param filteredContext the {@link RequestContext} the filters ran with, or null to build it
+     * @return the {@link WebResponse} to respond with, which completes later if the route function returned a future
+     */
+    private CompletionStage<WebResponse> invoke(WebApp app, RouteMatch match, HttpServletRequest req, HttpServletResponse resp, LeoObject filteredContext) {
+        LeoObject context = (filteredContext != null) ? filteredContext : app.buildContext(match, req, resp);
+        
+        /* the functions the route function runs with web:async are bound by the executor of the route */
+        Optional<HandlerExecutor> handlers = this.webapp.getHandlerExecutor(match.getRoute());
+        Executor executor = handlers.isPresent() ? handlers.get().asExecutor() : this.webapp.getDeadlineExecutor();
+        
+        try {
+            LeoObject result = WebLeolaLibrary.callWith(executor, () -> match.getRoute().getFunction().call(context));
+            
+            Object value = result.getValue();
+            if(value instanceof CompletionStage) {
+                return ((CompletionStage<?>)value).handle( (completed, error) -> {
+                    try {
+                        return (error != null) 
+                                ? app.handleException(context, (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error)
+                                : toWebResponse(app, context, completed);
+                    }
+                    catch(Exception e) {
+                        return app.handleException(context, e);
+                    }
+                });
+            }
+            
+            return CompletableFuture.completedFuture(toWebResponse(app, context, result));
+        }
+        catch(Exception e) {
+            return CompletableFuture.completedFuture(app.handleException(context, e));
+        }
+    }
+    
+    /**
+     * A response that is sent after the request thread has been released.  The request is put into asynchronous mode; 
+     * if no response is sent within the <code>asyncTimeout</code> of the {@link WebApp}, or the timeout of the {@link Route}, 
+     * a 504 Gateway Timeout is sent and the thread running the route function is interrupted.  The timeout of a {@link Route} 
+     * is kept by the deadline timer of the {@link WebApp} rather than the servlet container, as the route function may still be
+     * running on the request thread.
+     * 
+     * @author Tony
+     *
+     */
+    private static class AsyncResponse {
+        
+        /**
+         * Writes a response
+         */
+        static interface Writer {
+            void write(HttpServletResponse response) throws IOException;
+        }
+        
+        private final WebApp app;
+        private final HttpServletRequest request;
+        private final AsyncContext async;
+        
+        /* only one of the completion, the timeout or the client going away may write the response */
+        private final AtomicBoolean responded;
+        
+        /* the thread running the route function, if any */
+        private Thread worker;
+        
+        /* the 504 of the route timeout, cancelled once responded */
+        private volatile Future<?> deadline;
+        
+        AsyncResponse(WebApp app, HttpServletRequest req) {
+            this(app, req, app.config().getByString("asyncTimeout").asLong(), null, null);
+        }
+        
+        /**
+         * @param app
+         * @param req
+         * @param timeout the number of milliseconds to wait for the response
+         * @param route the {@link Route} whose timeout this is, or null
+         * @param timer the deadline timer that keeps the timeout of the {@link Route}, or null
+         */
+        AsyncResponse(WebApp app, HttpServletRequest req, long timeout, Route route, ScheduledExecutorService timer) {
+            this.app = app;
+            this.request = req;
+            this.responded = new AtomicBoolean();
+            
+            this.async = req.startAsync();
+            this.async.setTimeout((route != null) ? 0 : timeout);
+            this.async.addListener(new AsyncListener() {
+                
+                @Override
+                public void onTimeout(AsyncEvent event) throws IOException {
+                    timeOut(null, timeout);
+                }
+                
+                @Override
+                public void onError(AsyncEvent event) throws IOException {
+                    responded.set(true);
+                    Coalescer.getFlight(request).ifPresent(Flight::abandon);
+                }
+                
+                @Override
+                public void onStartAsync(AsyncEvent event) throws IOException {
+                }
+                
+                @Override
+                public void onComplete(AsyncEvent event) throws IOException {
+                    Coalescer.getFlight(request).ifPresent(Flight::abandon);
+                }
+            });
+            
+            if(route != null) {
+                this.deadline = timer.schedule(() -> timeOut(route, timeout), timeout, TimeUnit.MILLISECONDS);
+            }
+        }
+        
+        /**
+         * Responds with a 504 and interrupts the thread running the route function, unless a response has already been sent
+         * 
+         * @param route the {@link Route} whose timeout elapsed, or null
+         * @param timeout the number of milliseconds that elapsed
+         */
+        private void timeOut(Route route, long timeout) {
+            if(!respond(new WebResponse(HttpStatus.GATEWAY_TIMEOUT))) {
+                return;
+            }
+            
+            if(route != null) {
+                route.timedOut();
+                LOG.warning("Route '" + route.getUriTemplate() + "' exceeded its timeout of " + timeout + " ms");
+            }
+            
+            interrupt();
+        }
+        
+        /**
+         * Binds the thread running the route function, which is interrupted if the response times out
+         * 
+         * @param thread
+         */
+        synchronized void bind(Thread thread) {
+            this.worker = thread;
+        }
+        
+        /**
+         * Unbinds the thread running the route function, clearing any interrupt from a time out so that it does not
+         * leak into the next task of the thread
+         */
+        synchronized void unbind() {
+            this.worker = null;
+            Thread.interrupted();
+        }
+        
+        /**
+         * Interrupts the thread running the route function, if it is still running
+         */
+        private synchronized void interrupt() {
+            if(this.worker != null) {
+                this.worker.interrupt();
+            }
+        }
+        
+        /**
+         * Responds once the supplied {@link WebResponse} completes
+         * 
+         * @param response the response of the route function
+         */
+        void complete(CompletionStage<WebResponse> response) {
+            response.whenComplete( (webResponse, error) -> {
+                respond((error != null) ? new WebResponse(HttpStatus.INTERNAL_SERVER_ERROR) : webResponse);
+            });
+        }
+        
+        /**
+         * Responds with the supplied {@link WebResponse}, unless a response has already been sent
+         * 
+         * @param webResponse
+         * @return true if this responded
+         */
+        boolean respond(WebResponse webResponse) {
+            return respond(response -> webResponse.packageResponse(app, response));
+        }
+        
+        /**
+         * Responds with the supplied {@link Writer}, unless a response has already been sent
+         * 
+         * @param writer
+         * @return true if this responded
+         */
+        boolean respond(Writer writer) {
+            if(!this.responded.compareAndSet(false, true)) {
+                return false;
+            }
+            
+            Future<?> deadline = this.deadline;
+            if(deadline != null) {
+                deadline.cancel(false);
+            }
+            
+            try {
+                write(this.request, (HttpServletResponse)this.async.getResponse(), writer);
+            }
+            catch(Exception e) {
+                LOG.log(Level.WARNING, "Unable to write the response to '" + this.request.getRequestURI() + "'", e);
+            }
+            finally {
+                this.async.complete();
+            }
+            
+            return true;
+        }
+    }
+    
+    /**
+     * Writes the response.  If the request leads a coalesced flight (see {@link Coalescer}), the response is recorded, written to 
+     * the request and only then handed to the requests waiting on it.
+     * 
+     * @param req
+     * @param resp
+     * @param writer
+     * @throws IOException
+     */
+    private static void write(ServletRequest req, HttpServletResponse resp, AsyncResponse.Writer writer) throws IOException {
+        Optional<Flight> flight = Coalescer.getFlight(req);
+        if(!flight.isPresent()) {
+            writer.write(resp);
+            return;
+        }
+        
+        BufferedResponse buffered = new BufferedResponse(resp);
+        try {
+            writer.write(buffered);
+        }
+        catch(IOException | RuntimeException e) {
+            flight.get().abandon();
+            throw e;
+        }
+        
+        try {
+            buffered.writeTo(resp);
+        }
+        finally {
+            flight.get().land(buffered);
+        }
+    }
+    
+    /**
+     * Converts the result of a route function into the {@link WebResponse}
+     * 
+     * @param app the {@link WebApp} that handles the request
+     * @param context the {@link RequestContext}
+     * @param result the result of the route function, or the value of the future it returned
+     * @return the {@link WebResponse}
+     */
+    private static WebResponse toWebResponse(WebApp app, LeoObject context, Object result) {
+        if(result instanceof WebResponse) {
+            return (WebResponse)result;
+        }
+        
+        LeoObject leoResult = LeoObject.valueOf(result);
+        if(leoResult.isError()) {
+            return app.handleException(context, leoResult);
+        }
+        
+        return (WebResponse)leoResult.getValue(WebResponse.class);
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads, for the <code>executor -> "virtual"</code> mode of a {@link WebApp}.  This is the JDK 21 version, which the
+ * <code>jdk21</code> build profile places under <code>META-INF/versions/21</code> of the multi-release jar.
+ *
+ * @author Tony
+ *
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if virtual threads are supported by this runtime
+     */
+    static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * @param name the prefix of the thread names
+     * @return a {@link ThreadFactory} that creates virtual threads
+     */
+    static Optional<ThreadFactory> newThreadFactory(String name) {
+        return Optional.of(Thread.ofVirtual().name(name + "-", 0).factory());
+    }
+
+    /**
+     * @param name the prefix of the thread names
+     * @return an {@link ExecutorService} that runs each task on a new virtual thread
+     */
+    static Optional<ExecutorService> newExecutor(String name) {
+        return newThreadFactory(name).map(Executors::newThreadPerTaskExecutor);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+import leola.vm.types.LeoInteger;
+import leola.vm.types.LeoLong;
+import leola.vm.types.LeoMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Tony
+ *
+ */
+public class HandlerExecutorTest {
+
+    private HandlerExecutor executor;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        LeoMap config = new LeoMap();
+        config.putByString("maxConcurrent", LeoInteger.valueOf(1));
+        config.putByString("maxQueue", LeoInteger.valueOf(0));
+        config.putByString("queueTimeoutMs", LeoLong.valueOf(1000));
+        config.putByString("retryAfter", LeoInteger.valueOf(5));
+
+        this.executor = new HandlerExecutor("test-handler", config);
+    }
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @After
+    public void tearDown() throws Exception {
+        this.executor.shutdown();
+    }
+
+    @Test
+    public void testRejectsAtCapacity() throws Exception {
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean expired = new AtomicBoolean();
+
+        assertTrue(executor.execute(() -> {
+            running.countDown();
+            try {
+                release.await();
+            }
+            catch(InterruptedException e) {
+            }
+        }, () -> expired.set(true)));
+
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        assertFalse(executor.execute(() -> {}, () -> expired.set(true)));
+
+        LeoMap stats = executor.getStatistics();
+        assertEquals(1L, stats.getByString("accepted").getValue());
+        assertEquals(1L, stats.getByString("rejected").getValue());
+
+        release.countDown();
+        assertFalse(expired.get());
+    }
+
+    @Test
+    public void testWriteOverloaded() throws Exception {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        when(resp.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        });
+
+        executor.writeOverloaded(resp);
+
+        verify(resp).setStatus(503);
+        verify(resp).setHeader("Retry-After", "5");
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.getText(), body.toString("UTF-8"));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import leola.vm.types.LeoBoolean;
+import leola.vm.types.LeoMap;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoString;
+
+import org.junit.Test;
+
+/**
+ * @author Tony
+ *
+ */
+public class NativeBindingsTest {
+
+    @Test
+    public void testBoundMethods() {
+        assertTrue(NativeBindings.getBoundMethods(RequestContext.class).contains("param"));
+        assertTrue(NativeBindings.getBoundMethods(RequestContext.class).contains("session"));
+        assertTrue(NativeBindings.getBoundMethods(WebResponse.class).contains("json"));
+        assertTrue(NativeBindings.getBoundMethods(WebSession.class).contains("invalidate"));
+        assertTrue(NativeBindings.getBoundMethods(WebSocketSession.class).contains("isOpen"));
+
+        /* the aliased and ignored methods are left to the native class dispatch */
+        assertFalse(NativeBindings.getBoundMethods(RequestContext.class).contains("get"));
+        assertFalse(NativeBindings.getBoundMethods(RequestContext.class).contains("parseBasicAuth"));
+        assertFalse(NativeBindings.getBoundMethods(WebResponse.class).contains("packageResponse"));
+        assertTrue(NativeBindings.getBoundMethods(String.class).isEmpty());
+    }
+
+    @Test
+    public void testCalls() {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        HttpSession session = mock(HttpSession.class);
+        when(request.getParameter("id")).thenReturn("42");
+        when(request.getSession(true)).thenReturn(session);
+        when(session.getId()).thenReturn("abc");
+
+        LeoObject context = NativeBindings.valueOf(new RequestContext(request, response, null, new LeoMap()));
+        assertEquals("42", context.getObject("param").call(LeoString.valueOf("id")).toString());
+        assertEquals("none", context.getObject("param").call(LeoString.valueOf("name"), LeoString.valueOf("none")).toString());
+
+        LeoObject webSession = context.getObject("session").call(LeoBoolean.LEOTRUE);
+        assertEquals("abc", webSession.getObject("id").call().toString());
+
+        /* a chained call returns the same object */
+        LeoObject webResponse = NativeBindings.valueOf(new WebResponse(HttpStatus.OK));
+        assertTrue(webResponse == webResponse.getObject("header").call(LeoString.valueOf("ETag"), LeoString.valueOf("7")));
+        assertEquals(200, webResponse.getObject("status").call().asInt());
+
+        /* as are the responses the library hands to scripts */
+        LeoObject created = new WebLeolaLibrary().created();
+        assertTrue(created == created.getObject("header").call(LeoString.valueOf("Location"), LeoString.valueOf("/users/42")));
+        assertEquals(201, created.getObject("status").call().asInt());
+    }
+
+    @Test
+    public void testLibraryResponses() {
+        WebLeolaLibrary web = new WebLeolaLibrary();
+
+        /* web:status(404) */
+        LeoObject notFound = web.status(404);
+        assertTrue(notFound == notFound.getObject("header").call(LeoString.valueOf("ETag"), LeoString.valueOf("7")));
+        assertEquals(404, notFound.getObject("status").call().asInt());
+
+        /* web:redirect(url) */
+        LeoObject redirect = web.redirect("/login");
+        assertTrue(redirect == redirect.getObject("header").call(LeoString.valueOf("Cache-Control"), LeoString.valueOf("no-cache")));
+        assertEquals(301, redirect.getObject("status").call().asInt());
+        assertEquals("/login", ((WebResponse)redirect.getValue()).getRedirectUrl());
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import leola.vm.types.LeoArray;
+import leola.vm.types.LeoMap;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoString;
+import leola.vm.types.LeoUserFunction;
+import leola.web.RoutingTable.Route;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Tony
+ *
+ */
+public class RoutingTableTest {
+
+    private RoutingTable table;
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        this.table = new RoutingTable();
+    }
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @After
+    public void tearDown() throws Exception {
+    }
+
+    private Route route(String path, String ... methods) {
+        LeoMap config = new LeoMap();
+        config.putByString("path", LeoString.valueOf(path));
+
+        LeoArray array = new LeoArray();
+        for(String method : methods) {
+            array.add(LeoString.valueOf(method));
+        }
+        config.putByString("methods", array);
+
+        Route route = new Route(config, new LeoUserFunction() {
+            @Override
+            public LeoObject call(LeoObject[] args) {
+                return LeoObject.NULL;
+            }
+        });
+
+        this.table.addRoute(route);
+        return route;
+    }
+
+    private String path(Optional<Route> route) {
+        assertTrue(route.isPresent());
+        return route.get().getUriTemplate().toString();
+    }
+
+    @Test
+    public void testStaticRoutes() {
+        route("/api/hello", "GET");
+        route("/api/health", "GET");
+        route("/", "GET");
+
+        assertEquals("/api/hello", path(table.getRoute("GET", "/api/hello")));
+        assertEquals("/api/health", path(table.getRoute("GET", "/api/health/")));
+        assertEquals("/", path(table.getRoute("GET", "/")));
+        assertFalse(table.getRoute("GET", "/api/hello/world").isPresent());
+        assertFalse(table.getRoute("GET", "/api").isPresent());
+    }
+
+    @Test
+    public void testParameterRoutes() {
+        route("/api/users/{user}", "GET");
+        route("/api/users/{user}/orders/{orderId}", "GET");
+
+        assertEquals("/api/users/{user}", path(table.getRoute("GET", "/api/users/tony")));
+        assertEquals("/api/users/{user}/orders/{orderId}", path(table.getRoute("GET", "/api/users/tony/orders/42")));
+        assertFalse(table.getRoute("GET", "/api/users/tony/orders").isPresent());
+    }
+
+    @Test
+    public void testRegexRoutes() {
+        route("/api/users/{id:[0-9]+}", "GET");
+        route("/api/users/{name}", "GET");
+        route("/files/{name}.json", "GET");
+
+        assertEquals("/api/users/{id:[0-9]+}", path(table.getRoute("GET", "/api/users/42")));
+        assertEquals("/api/users/{name}", path(table.getRoute("GET", "/api/users/brett")));
+        assertEquals("/files/{name}.json", path(table.getRoute("GET", "/files/report.json")));
+        assertFalse(table.getRoute("GET", "/files/report.xml").isPresent());
+    }
+
+    @Test
+    public void testPathParameters() {
+        route("/api/users/{user}/orders/{orderId:[0-9]+}", "GET");
+        route("/files/{name}.{ext}", "GET");
+
+        Optional<RouteMatch> match = table.match("GET", "/api/users/tony/orders/42");
+        assertTrue(match.isPresent());
+        assertEquals("tony", match.get().getParameters().get("user"));
+        assertEquals("42", match.get().getParameters().get("orderId"));
+        assertEquals("tony", match.get().getPathParams().getString("user"));
+
+        match = table.match("GET", "/files/report.json");
+        assertTrue(match.isPresent());
+        assertEquals("report", match.get().getParameters().get("name"));
+        assertEquals("json", match.get().getParameters().get("ext"));
+    }
+
+    @Test
+    public void testStaticPreferredOverParameters() {
+        route("/api/{x}", "GET");
+        route("/api/users", "GET");
+
+        assertEquals("/api/users", path(table.getRoute("GET", "/api/users")));
+        assertEquals("/api/{x}", path(table.getRoute("GET", "/api/teams")));
+    }
+
+    @Test
+    public void testBacktracking() {
+        route("/api/users/{id}/roles", "GET");
+        route("/api/{type}/{id}/orders", "GET");
+
+        assertEquals("/api/{type}/{id}/orders", path(table.getRoute("GET", "/api/users/42/orders")));
+    }
+
+    @Test
+    public void testMethodTypes() {
+        route("/api/users", "POST", "PUT");
+        route("/api/users", "GET");
+
+        assertEquals("/api/users", path(table.getRoute("GET", "/api/users")));
+        assertEquals("/api/users", path(table.getRoute("post", "/api/users")));
+        assertFalse(table.getRoute("DELETE", "/api/users").isPresent());
+    }
+
+    @Test
+    public void testAllowedMethods() {
+        route("/api/users/{user}", "DELETE", "GET");
+        route("/api/users/{user}", "PUT");
+        route("/api/teams", "POST");
+
+        RouteMatch match = table.resolve("POST", "/api/users/tony");
+        assertFalse(match.isMatched());
+        assertEquals("GET, PUT, DELETE", match.getAllowedMethods().get());
+
+        match = table.resolve("GET", "/api/teams");
+        assertFalse(match.isMatched());
+        assertEquals("POST", match.getAllowedMethods().get());
+
+        match = table.resolve("GET", "/api/nothing");
+        assertFalse(match.isMatched());
+        assertFalse(match.getAllowedMethods().isPresent());
+
+        match = table.resolve("PROPFIND", "/api/teams");
+        assertFalse(match.isMatched());
+        assertEquals("POST", match.getAllowedMethods().get());
+    }
+    
+    @Test
+    public void testExactRoutes() {
+        route("/api/{x}", "GET");
+        route("/api/users/", "GET");
+        route("/api/users", "POST");
+        
+        assertEquals("/api/users/", path(table.getRoute("GET", "/api/users")));
+        assertEquals("/api/users/", path(table.getRoute("GET", "/api/users/")));
+        assertEquals("/api/users", path(table.getRoute("POST", "/api/users")));
+        assertEquals("/api/{x}", path(table.getRoute("GET", "/api/teams")));
+        assertFalse(table.getRoute("PUT", "/api/users").isPresent());
+        
+        LeoMap stats = table.getStatistics();
+        assertEquals(3L, stats.getByString("exactHits").getValue());
+        assertEquals(1L, stats.getByString("dynamicHits").getValue());
+        assertEquals(1L, stats.getByString("misses").getValue());
+    }
+    
+    @Test
+    public void testCanonicalPath() {
+        route("/api/users/{user}", "GET");
+        route("/login", "POST");
+        
+        assertEquals("/", RoutingTable.canonicalPath("/"));
+        assertEquals("/", RoutingTable.canonicalPath("//"));
+        assertEquals("/api/users", RoutingTable.canonicalPath("/api/users"));
+        assertEquals("/api/users", RoutingTable.canonicalPath("//api//users/"));
+        assertEquals("/login", RoutingTable.canonicalPath("/login/"));
+        
+        RouteMatch match = table.resolve("GET", "//api//users/tony/");
+        assertTrue(match.isMatched());
+        assertEquals("/api/users/tony", match.getPath());
+        assertEquals("tony", match.getParameters().get("user"));
+        
+        match = table.resolve("POST", "/login/");
+        assertTrue(match.isMatched());
+        assertEquals("/login", match.getPath());
+    }
+    
+    @Test
+    public void testMissCache() {
+        route("/api/users/{user}", "GET");
+        
+        assertFalse(table.resolve("GET", "/api/login.php").isMatched());
+        assertFalse(table.resolve("GET", "/api/login.php").isMatched());
+        assertEquals("GET", table.resolve("POST", "/api/users/tony").getAllowedMethods().get());
+        assertEquals("GET", table.resolve("POST", "/api/users/tony").getAllowedMethods().get());
+        
+        LeoMap stats = table.getStatistics();
+        assertEquals(4L, stats.getByString("misses").getValue());
+        assertEquals(2L, stats.getByString("cachedMisses").getValue());
+        
+        /* adding a route invalidates the cached misses */
+        route("/api/login.php", "GET");
+        assertTrue(table.resolve("GET", "/api/login.php").isMatched());
+        
+        route("/api/users/{user}", "POST");
+        assertTrue(table.resolve("POST", "/api/users/tony").isMatched());
+    }
+    
+    @Test
+    public void testRejects() {
+        RouteTrie trie = new RouteTrie(Arrays.asList());
+        assertTrue(trie.rejects("/api"));
+        
+        trie = new RouteTrie(Arrays.asList(route("/api/users/{user}", "GET")));
+        assertFalse(trie.rejects("/api/teams"));
+        assertTrue(trie.rejects("/admin/users"));
+        assertTrue(trie.rejects("/"));
+        
+        /* a rejected path is a miss, without the miss cache or the trie */
+        assertFalse(table.resolve("GET", "/admin/users").isMatched());
+        assertFalse(table.resolve("GET", "/admin/users").isMatched());
+        assertEquals(2L, table.getStatistics().getByString("misses").getValue());
+        assertEquals(0L, table.getStatistics().getByString("cachedMisses").getValue());
+        
+        trie = new RouteTrie(Arrays.asList(route("/api/users/{user}", "GET"), route("/{page}", "GET")));
+        assertFalse(trie.rejects("/admin/users"));
+    }
+    
+    @Test
+    public void testRemoveRoute() {
+        Route users = route("/api/users/{user}", "GET");
+        route("/api/users/{user}", "DELETE");
+        route("/api/teams", "GET");
+        
+        assertFalse(table.resolve("GET", "/api/nothing").isMatched());
+        
+        assertTrue(table.removeRoute(users));
+        assertFalse(table.removeRoute(users));
+        assertFalse(table.getRoute("GET", "/api/users/tony").isPresent());
+        assertTrue(table.getRoute("DELETE", "/api/users/tony").isPresent());
+        
+        assertTrue(table.removeRoute("/api/users/{user}"));
+        assertFalse(table.getRoute("DELETE", "/api/users/tony").isPresent());
+        assertFalse(table.resolve("GET", "/api/users/tony").getAllowedMethods().isPresent());
+        assertEquals(1, table.getRoutes().size());
+    }
+    
+    @Test
+    public void testReplaceAll() {
+        route("/api/users/{user}", "GET");
+        assertFalse(table.resolve("GET", "/api/teams").isMatched());
+        
+        RoutingTable other = this.table;
+        this.table = new RoutingTable();
+        Route teams = route("/api/teams", "GET");
+        Route hello = route("/api/hello", "GET");
+        
+        other.replaceAll(Arrays.asList(teams, hello));
+        assertTrue(other.resolve("GET", "/api/teams").isMatched());
+        assertTrue(other.resolve("GET", "/api/hello").isMatched());
+        assertFalse(other.resolve("GET", "/api/users/tony").isMatched());
+        assertEquals(2, other.getRoutes().size());
+    }
+    
+    @Test
+    public void testSpecificity() {
+        route("/files/{rest:.*}", "GET");
+        route("/files/{name}", "GET");
+        route("/files/{id:[0-9]+}", "GET");
+        route("/files/{name}.{ext}", "GET");
+        route("/files/{name}.json", "GET");
+        
+        assertEquals("/files/{name}.json", path(table.getRoute("GET", "/files/report.json")));
+        assertEquals("/files/{name}.{ext}", path(table.getRoute("GET", "/files/report.xml")));
+        assertEquals("/files/{id:[0-9]+}", path(table.getRoute("GET", "/files/42")));
+        assertEquals("/files/{name}", path(table.getRoute("GET", "/files/report")));
+    }
+    
+    @Test
+    public void testWildcardAfterParameter() {
+        route("/api/{rest:.+}/orders", "GET");
+        route("/api/{user}/roles", "GET");
+        
+        assertEquals("/api/{user}/roles", path(table.getRoute("GET", "/api/tony/roles")));
+        assertEquals("/api/{rest:.+}/orders", path(table.getRoute("GET", "/api/tony/orders")));
+    }
+    
+    @Test
+    public void testSpanningRoutes() {
+        route("/files/{path:.+}", "GET");
+        route("/docs/{p:[a-z/]+}/edit", "GET");
+        route("/docs/{id:[0-9]+}", "GET");
+        
+        Optional<RouteMatch> match = table.match("GET", "/files/a/b/c");
+        assertTrue(match.isPresent());
+        assertEquals("a/b/c", match.get().getParameters().get("path"));
+        assertEquals("/files/{path:.+}", path(table.getRoute("GET", "/files/a")));
+        assertFalse(table.getRoute("GET", "/files").isPresent());
+        
+        match = table.match("GET", "/docs/guide/intro/edit");
+        assertTrue(match.isPresent());
+        assertEquals("guide/intro", match.get().getParameters().get("p"));
+        assertEquals("/docs/{id:[0-9]+}", path(table.getRoute("GET", "/docs/42")));
+        assertFalse(table.getRoute("GET", "/docs/guide/42/edit").isPresent());
+        
+        assertEquals(RouteTrie.NodeType.SPAN, RouteTrie.typeOf("{rest:.*}"));
+        assertEquals(RouteTrie.NodeType.REGEX, RouteTrie.typeOf("{rest:[^/]*}"));
+        assertEquals(RouteTrie.NodeType.SPAN, RouteTrie.typeOf("{range:\\d+/\\d+}"));
+        assertEquals(RouteTrie.NodeType.REGEX, RouteTrie.typeOf("{id:[0-9]+}.json"));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.HandlerList;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.Test;
+
+import leola.vm.Leola;
+import leola.vm.types.LeoBoolean;
+import leola.vm.types.LeoInteger;
+import leola.vm.types.LeoLong;
+import leola.vm.types.LeoMap;
+
+/**
+ * @author Tony
+ *
+ */
+public class ServerFactoryTest {
+
+    private LeoMap serverConfig(LeoMap server) {
+        LeoMap config = new LeoMap();
+        config.putByString("server", server);
+        
+        WebApp webapp = new WebApp(new Leola(), config);
+        webapp.shutdown();
+        return server;
+    }
+    
+    @Test
+    public void testNewServer() {
+        LeoMap server = new LeoMap();
+        server.putByString("maxThreads", LeoInteger.valueOf(64));
+        server.putByString("idleTimeout", LeoLong.valueOf(5_000));
+        server.putByString("requestHeaderSize", LeoInteger.valueOf(16 * 1024));
+        server.putByString("sendServerVersion", LeoBoolean.LEOFALSE);
+        
+        Server jetty = new ServerFactory(serverConfig(server)).newServer(8121, new HandlerList(), null);
+        
+        QueuedThreadPool threadPool = (QueuedThreadPool)jetty.getThreadPool();
+        assertEquals(64, threadPool.getMaxThreads());
+        assertEquals(8, threadPool.getMinThreads());
+        
+        ServerConnector connector = (ServerConnector)jetty.getConnectors()[0];
+        assertEquals(8121, connector.getPort());
+        assertEquals(5_000, connector.getIdleTimeout());
+        
+        HttpConnectionFactory http = connector.getConnectionFactory(HttpConnectionFactory.class);
+        assertEquals(16 * 1024, http.getHttpConfiguration().getRequestHeaderSize());
+        assertEquals(32 * 1024, http.getHttpConfiguration().getOutputBufferSize());
+        assertFalse(http.getHttpConfiguration().getSendServerVersion());
+        
+        assertTrue(jetty.getHandler() instanceof StatisticsHandler);
+        assertEquals(30_000, jetty.getStopTimeout());
+    }
+    
+    @Test
+    public void testHttp2() {
+        LeoMap http2 = new LeoMap();
+        http2.putByString("maxConcurrentStreams", LeoInteger.valueOf(64));
+        
+        LeoMap server = new LeoMap();
+        server.putByString("http2", http2);
+        
+        Server jetty = new ServerFactory(serverConfig(server)).newServer(8121, new HandlerList(), null);
+        ServerConnector connector = (ServerConnector)jetty.getConnectors()[0];
+        
+        HTTP2CServerConnectionFactory h2c = connector.getConnectionFactory(HTTP2CServerConnectionFactory.class);
+        assertEquals(64, h2c.getMaxConcurrentStreams());
+        assertEquals(65535, h2c.getInitialStreamSendWindow());
+        assertTrue(connector.getProtocols().contains("h2c"));
+        assertTrue(connector.getProtocols().contains("http/1.1"));
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidThreads() {
+        LeoMap server = new LeoMap();
+        server.putByString("minThreads", LeoInteger.valueOf(16));
+        server.putByString("maxThreads", LeoInteger.valueOf(8));
+        serverConfig(server);
+    }
+}
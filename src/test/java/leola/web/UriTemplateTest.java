@@ -0,0 +1,84 @@
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import leola.vm.types.LeoMap;
+import leola.vm.types.LeoString;
+import leola.web.RoutingTable.Route;
+
+/**
+ * @author Tony
+ *
+ */
+public class UriTemplateTest {
+
+    @Test
+    public void testPlainTemplatesAreRegexFree() {
+        assertTrue(new UriTemplate("/api/hello").isRegexFree());
+        assertTrue(new UriTemplate("/users/{id}/orders/{orderId}").isRegexFree());
+        assertTrue(new UriTemplate("/files/{name}.json").isRegexFree());
+
+        assertFalse(new UriTemplate("/users/{id:[0-9]+}").isRegexFree());
+        assertFalse(new UriTemplate("/files/{name}{ext}").isRegexFree());
+    }
+
+    @Test
+    public void testMatches() {
+        UriTemplate template = new UriTemplate("/users/{id}/orders/{orderId}");
+        assertTrue(template.matches("/users/tony/orders/42"));
+        assertTrue(template.matches("/users/tony/orders/42/"));
+        assertFalse(template.matches("/users/tony/orders"));
+        assertFalse(template.matches("/users/tony/orders/42/items"));
+        assertFalse(template.matches("/users//orders/42"));
+        assertFalse(template.matches("/users/tony/bob/orders/42"));
+        assertFalse(template.matches(null));
+
+        template = new UriTemplate("/api/users/");
+        assertTrue(template.matches("/api/users"));
+        assertTrue(template.matches("/api/users/"));
+        assertFalse(template.matches("/api/users/tony"));
+    }
+
+    @Test
+    public void testMatch() {
+        Map<String, String> values = new UriTemplate("/users/{id}/orders/{orderId}").match("/users/tony/orders/42");
+        assertEquals(2, values.size());
+        assertEquals("tony", values.get("id"));
+        assertEquals("42", values.get("orderId"));
+
+        values = new UriTemplate("/files/{name}.json/{version}").match("/files/my.report.json/2");
+        assertEquals("my.report", values.get("name"));
+        assertEquals("2", values.get("version"));
+
+        values = new UriTemplate("/users/{id:[0-9]+}").match("/users/42");
+        assertEquals("42", values.get("id"));
+
+        assertTrue(new UriTemplate("/users/{id:[0-9]+}").match("/users/tony").isEmpty());
+        assertTrue(new UriTemplate("/users/{id}").match("/teams/tony").isEmpty());
+    }
+
+    @Test
+    public void testMatchFindsTemplateWithinUri() {
+        /* unlike matches(), match() only has to find the template within the URI */
+        UriTemplate template = new UriTemplate("/users/{id}");
+        assertFalse(template.matches("/users/tony/orders"));
+        assertEquals("tony", template.match("/users/tony/orders").get("id"));
+        assertEquals("tony", template.match("/context/users/tony").get("id"));
+
+        Route route = new Route(new LeoMap() {{
+            putByString("path", LeoString.valueOf("/users/{id}/orders/{orderId}"));
+        }}, null);
+        Map<String, String> values = route.getRouteParameters("/users/tony/orders/42/items");
+        assertEquals("tony", values.get("id"));
+        assertEquals("42", values.get("orderId"));
+    }
+}
@@ -1,113 +1,1151 @@
-/*
- * see license.txt
- */
-package leola.web;
-
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
-import static org.junit.Assert.fail;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
-
-import java.util.Optional;
-
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
-
-import leola.vm.Leola;
-import leola.vm.types.LeoMap;
-import leola.vm.types.LeoObject;
-import leola.vm.types.LeoString;
-import leola.vm.types.LeoUserFunction;
-import leola.web.RoutingTable.Route;
-
-import org.junit.After;
-import org.junit.Before;
-import org.junit.Ignore;
-import org.junit.Test;
-
-/**
- * @author Tony
- *
- */
-public class WebAppTest {
-
-    /**
-     * @throws java.lang.Exception
-     */
-    @Before
-    public void setUp() throws Exception {
-    }
-
-    /**
-     * @throws java.lang.Exception
-     */
-    @After
-    public void tearDown() throws Exception {
-    }
-
-    @Ignore
-    private WebApp createWebApp(WebLeolaLibrary webLib) throws Exception {
-        Leola runtime = new Leola();
-        runtime.loadLibrary(webLib, "web");
-        
-        WebApp webapp = webLib.newWebApp(new LeoMap());
-        webapp.errorHandler(new LeoUserFunction() {
-            @Override
-            public LeoObject call(LeoObject[] args) {
-                fail("Failed on error handler!");
-                return LeoObject.NULL;
-            } 
-        });
-        
-        return webapp;
-    }
-        
-    @Test
-    public void testHelloWorld() throws Exception {
-        // 1) Create the Web App
-        final WebLeolaLibrary webLib = new WebLeolaLibrary();
-        WebApp webapp = createWebApp(webLib);
-        
-        
-        // 2) Create the Route
-        final LeoObject messageBody = LeoString.valueOf("Hello World");
-        webapp.get("/hello", (context) -> {
-            return webLib.ok().text(messageBody);
-        });
-                
-        
-        // 3) Mock up the Request/Response object
-        final HttpServletRequest request = mock(HttpServletRequest.class);
-        final HttpServletResponse response = mock(HttpServletResponse.class);
-        
-        when(request.getMethod()).thenReturn("GET");
-        when(request.getRequestURI()).thenReturn("/hello");
-        
-        
-        // 4) Get the bounded Route for the Request
-        Optional<Route> route = webapp.getRoute(request);
-        assertTrue(route.isPresent());
-        
-        
-        // 5) Mock the WebServlet, by invoking creating the RequestContext
-        // and invoking the callback and inspecting the WebResponse
-        route.ifPresent(r -> {
-            assertEquals(r.getConfig().getString("path"), "/hello");
-            LeoObject context = webapp.buildContext(route, request, response);
-            try {
-                WebResponse webRes = (WebResponse)r.getFunction().call(context).getValue(WebResponse.class);
-                assertEquals(webRes.status(), 200);
-                assertEquals(webRes.getResult(), messageBody.toString());
-            }
-            catch(Exception e) {
-                fail("failed on route execution: " + e);
-            }
-        });
-        
-        
-        // 6) Cleanup after ourselves
-        webapp.shutdown();
-    }
-
-}
+/*
+ * see license.txt
+ */
+package leola.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import leola.vm.Leola;
+import leola.vm.types.LeoArray;
+import leola.vm.types.LeoBoolean;
+import leola.vm.types.LeoInteger;
+import leola.vm.types.LeoLong;
+import leola.vm.types.LeoMap;
+import leola.vm.types.LeoObject;
+import leola.vm.types.LeoString;
+import leola.vm.types.LeoUserFunction;
+import leola.web.RoutingTable.Route;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * @author Tony
+ *
+ */
+public class WebAppTest {
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+    }
+
+    /**
+     * @throws java.lang.Exception
+     */
+    @After
+    public void tearDown() throws Exception {
+    }
+
+    @Ignore
+    private WebApp createWebApp(WebLeolaLibrary webLib) throws Exception {
+        Leola runtime = new Leola();
+        runtime.loadLibrary(webLib, "web");
+        
+        WebApp webapp = webLib.newWebApp(new LeoMap());
+        webapp.errorHandler(new LeoUserFunction() {
+            @Override
+            public LeoObject call(LeoObject[] args) {
+                fail("Failed on error handler!");
+                return LeoObject.NULL;
+            } 
+        });
+        
+        return webapp;
+    }
+        
+    @Test
+    public void testHelloWorld() throws Exception {
+        // 1) Create the Web App
+        final WebLeolaLibrary webLib = new WebLeolaLibrary();
+        WebApp webapp = createWebApp(webLib);
+        
+        
+        // 2) Create the Route
+        final LeoObject messageBody = LeoString.valueOf("Hello World");
+        webapp.get("/hello", (context) -> {
+            return new WebResponse(HttpStatus.OK).text(messageBody);
+        });
+                
+        
+        // 3) Mock up the Request/Response object
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        final HttpServletResponse response = mock(HttpServletResponse.class);
+        
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/hello");
+        
+        
+        // 4) Get the bounded Route for the Request
+        Optional<Route> route = webapp.getRoute(request);
+        assertTrue(route.isPresent());
+        
+        
+        // 5) Mock the WebServlet, by invoking creating the RequestContext
+        // and invoking the callback and inspecting the WebResponse
+        route.ifPresent(r -> {
+            assertEquals(r.getConfig().getString("path"), "/hello");
+            LeoObject context = webapp.buildContext(route, request, response);
+            try {
+                WebResponse webRes = (WebResponse)r.getFunction().call(context).getValue(WebResponse.class);
+                assertEquals(webRes.status(), 200);
+                assertEquals(webRes.getResult(), messageBody.toString());
+            }
+            catch(Exception e) {
+                fail("failed on route execution: " + e);
+            }
+        });
+        
+        
+        // 6) Cleanup after ourselves
+        webapp.shutdown();
+    }
+    
+    @Test
+    public void testMount() throws Exception {
+        final WebLeolaLibrary webLib = new WebLeolaLibrary();
+        WebApp webapp = createWebApp(webLib);
+        WebApp api = createWebApp(webLib);
+        
+        webapp.get("/api/v2/hidden", (context) -> new WebResponse(HttpStatus.OK));
+        webapp.get("/{page}", (context) -> new WebResponse(HttpStatus.OK));
+        api.get("/users/{id}", (context) -> new WebResponse(HttpStatus.OK));
+        api.get("/", (context) -> new WebResponse(HttpStatus.OK));
+        webapp.mount("/api/v2", api);
+        
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn("GET");
+        
+        when(request.getRequestURI()).thenReturn("/api/v2/users/42");
+        Optional<RouteMatch> match = api.getRouteMatch(request);
+        assertTrue(match.isPresent());
+        assertEquals("/users/{id}", match.get().getRoute().getUriTemplate().toString());
+        assertEquals("42", match.get().getParameters().get("id"));
+        assertEquals("/api/v2/users/42", match.get().getPath());
+        assertTrue(match.get().getApp().get() == api);
+        assertTrue(api.owns(match.get()));
+        assertTrue(webapp.owns(match.get()));
+        
+        when(request.getRequestURI()).thenReturn("/api/v2");
+        assertEquals("/", webapp.getRouteMatch(request).get().getRoute().getUriTemplate().toString());
+        
+        when(request.getRequestURI()).thenReturn("/api/v2/hidden");
+        assertFalse(webapp.getRouteMatch(request).isPresent());
+        
+        when(request.getRequestURI()).thenReturn("/about");
+        match = webapp.getRouteMatch(request);
+        assertTrue(match.isPresent());
+        assertFalse(match.get().getApp().isPresent());
+        assertFalse(api.owns(match.get()));
+        
+        assertTrue(webapp.unmount("/api/v2/"));
+        when(request.getRequestURI()).thenReturn("/api/v2/hidden");
+        assertTrue(webapp.getRouteMatch(request).isPresent());
+        
+        webapp.shutdown();
+        api.shutdown();
+    }
+    
+    @Test
+    public void testShutdown() throws Exception {
+        final WebLeolaLibrary webLib = new WebLeolaLibrary();
+        WebApp webapp = createWebApp(webLib);
+        WebApp api = createWebApp(webLib);
+        webapp.mount("/api", api);
+        
+        final AtomicInteger shutdowns = new AtomicInteger();
+        final AtomicInteger apiShutdowns = new AtomicInteger();
+        webapp.shutdownHandler(new LeoUserFunction() {
+            @Override
+            public LeoObject call() {
+                shutdowns.incrementAndGet();
+                return LeoObject.NULL;
+            }
+        });
+        api.shutdownHandler(new LeoUserFunction() {
+            @Override
+            public LeoObject call() {
+                apiShutdowns.incrementAndGet();
+                return LeoObject.NULL;
+            }
+        });
+        
+        /* the mounted application is shut down by the application it is mounted in, and only once */
+        webapp.shutdown();
+        webapp.shutdown();
+        api.shutdown();
+        assertEquals(1, shutdowns.get());
+        assertEquals(1, apiShutdowns.get());
+    }
+    
+    @Test
+    public void testFilters() throws Exception {
+        final WebLeolaLibrary webLib = new WebLeolaLibrary();
+        WebApp webapp = createWebApp(webLib);
+        
+        final AtomicInteger contexts = new AtomicInteger();
+        webapp.contextHandler(new LeoUserFunction() {
+            @Override
+            public LeoObject call(LeoObject arg) {
+                contexts.incrementAndGet();
+                return LeoObject.NULL;
+            }
+        });
+        
+        /* the first filter binds a value, the second requires it */
+        webapp.filter(new LeoMap() {{ putByString("path", LeoString.valueOf("/api/*")); }}, new LeoUserFunction() {
+            @Override
+            public LeoObject call(LeoObject arg) {
+                ((RequestContext)arg.getValue()).setContent("user", LeoString.valueOf("tony"));
+                return LeoBoolean.LEOTRUE;
+            }
+        });
+        webapp.filter(new LeoMap() {{ putByString("path", LeoString.valueOf("/api/*")); }}, new LeoUserFunction() {
+            @Override
+            public LeoObject call(LeoObject arg) {
+                return LeoBoolean.valueOf(((RequestContext)arg.getValue()).content("user") != null);
+            }
+        });
+        webapp.filter(new LeoMap() {{ putByString("path", LeoString.valueOf("/admin/*")); }}, new LeoUserFunction() {
+            @Override
+            public LeoObject call(LeoObject arg) {
+                return LeoBoolean.LEOFALSE;
+            }
+        });
+        
+        final AtomicInteger calls = new AtomicInteger();
+        webapp.get("/api/hello", (context) -> {
+            calls.incrementAndGet();
+            return new WebResponse(HttpStatus.OK).text(context.content("user"));
+        });
+        webapp.get("/admin/users", (context) -> {
+            calls.incrementAndGet();
+            return new WebResponse(HttpStatus.OK);
+        });
+        
+        WebServlet servlet = new WebServlet(webapp);
+        
+        /* the filters and the route share one context */
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/api/hello");
+        
+        StringWriter body = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+        
+        servlet.service(request, response);
+        assertEquals("tony", body.toString().trim());
+        assertEquals(1, contexts.get());
+        assertEquals(1, calls.get());
+        
+        /* a filter blocks the request */
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/admin/users");
+        
+        servlet.service(request, response);
+        assertEquals(1, calls.get());
+        
+        webapp.shutdown();
+    }
+    
+    @Test
+    public void testFiltersOnCanonicalPath() throws Exception {
+        final WebLeolaLibrary webLib = new WebLeolaLibrary();
+        WebApp webapp = createWebApp(webLib);
+        
+        final AtomicInteger filtered = new AtomicInteger();
+        LeoUserFunction deny = new LeoUserFunction() {
+            @Override
+            public LeoObject call(LeoObject arg) {
+                filtered.incrementAndGet();
+                return LeoBoolean.LEOFALSE;
+            }
+        };
+        webapp.filter(new LeoMap() {{ putByString("path", LeoString.valueOf("/admin/*")); }}, deny);
+        webapp.filter(new LeoMap() {{ putByString("path", LeoString.valueOf("/login")); }}, deny);
+        
+        final AtomicInteger calls = new AtomicInteger();
+        webapp.get("/admin/users", (context) -> {
+            calls.incrementAndGet();
+            return new WebResponse(HttpStatus.OK);
+        });
+        webapp.get("/login", (context) -> {
+            calls.incrementAndGet();
+            return new WebResponse(HttpStatus.OK);
+        });
+        
+        WebServlet servlet = new WebServlet(webapp);
+        
+        /* the paths resolve to the routes, so they must not slip past their filters */
+        String[] paths = { "//admin/users", "/admin//users", "/admin/users/", "/login/", "//login" };
+        for(String path : paths) {
+            HttpServletRequest request = mock(HttpServletRequest.class);
+            HttpServletResponse response = mock(HttpServletResponse.class);
+            when(request.getMethod()).thenReturn("GET");
+            when(request.getRequestURI()).thenReturn(path);
+            
+            servlet.service(request, response);
+        }
+        
+        assertEquals(paths.length, filtered.get());
+        assertEquals(0, calls.get());
+        
+        /* as are the paths of batch sub-requests */
+        BatchRequest batched = new BatchRequest(mock(HttpServletRequest.class), "GET", "//admin//users/?page=2", 
+                new TreeMap<String, String>(), new byte[0]);
+        assertEquals("/admin/users", batched.getRequestURI());
+        assertEquals("page=2", batched.getQueryString());
+        
+        webapp.shutdown();
+    }
+    
+    @Test
+    public void testFallbacks() throws Exception {
+        final WebLeolaLibrary webLib = new WebLeolaLibrary();
+        WebApp webapp = createWebApp(webLib);
+        
+        final AtomicInteger notFound = new AtomicInteger();
+        webapp.notFoundHandler(new LeoUserFunction() {
+            @Override
+            public LeoObject call(LeoObject arg) {
+                notFound.incrementAndGet();
+                return webLib.notFound();
+            }
+        });
+        webapp.get("/hello", (context) -> new WebResponse(HttpStatus.OK));
+        
+        WebServlet servlet = new WebServlet(webapp);
+        
+        /* a routed request does no fallback work */
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/hello");
+        when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+        
+        servlet.service(request, response);
+        verify(response).setStatus(200);
+        assertEquals(0, notFound.get());
+        
+        /* only an unrouted request falls back to the notFound handler */
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/missing");
+        when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+        
+        servlet.service(request, response);
+        verify(response).setStatus(404);
+        assertEquals(1, notFound.get());
+        
+        /* without a notFound handler, the default 404 page is sent */
+        webapp.notFoundHandler(null);
+        
+        request = mock(HttpServletRequest.class);
+        response = mock(HttpServletResponse.class);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/missing");
+        
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                body.write(b);
+            }
+            
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+            
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        });
+        
+        servlet.service(request, response);
+        verify(response).setStatus(404);
+        verify(response).setContentType("text/html");
+        assertEquals(WebApp.NOT_FOUND, body.toString("UTF-8"));
+        assertEquals(1, notFound.get());
+        
+        webapp.shutdown();
+    }
+    
+    @Test
+    public void testRequestBody() throws Exception {
+        final WebLeolaLibrary webLib = new WebLeolaLibrary();
+        WebApp webapp = createWebApp(webLib);
+        
+        /* the filter and the route function both read the body */
+        final StringBuilder logged = new StringBuilder();
+        webapp.filter(new LeoMap() {{ putByString("path", LeoString.valueOf("/echo")); }}, new LeoUserFunction() {
+            @Override
+            public LeoObject call(LeoObject arg) {
+                try {
+                    logged.append(((RequestContext)arg.getValue()).text());
+                    return LeoBoolean.LEOTRUE;
+                }
+                catch(IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        
+        final AtomicInteger calls = new AtomicInteger();
+        webapp.route(new LeoMap() {{ 
+            putByString("path", LeoString.valueOf("/echo"));
+            putByString("methods", LeoArray.newLeoArray(LeoString.valueOf("POST")));
+            putByString("maxBodySize", LeoInteger.valueOf(32));
+        }}, new LeoUserFunction() {
+            @Override
+            public LeoObject call(LeoObject[] args) {
+                calls.incrementAndGet();
+                try {
+                    RequestContext context = (RequestContext)args[0].getValue();
+                    LeoMap json = (LeoMap)context.json();
+                    return LeoObject.valueOf(new WebResponse(HttpStatus.OK).text(json.getByString("name")));
+                }
+                catch(IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        
+        WebServlet servlet = new WebServlet(webapp);
+        
+        HttpServletRequest request = newPost("/echo", "{\"name\":\"tony\"}", true);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        StringWriter body = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+        
+        servlet.service(request, response);
+        assertEquals("{\"name\":\"tony\"}", logged.toString());
+        assertEquals("tony", body.toString().trim());
+        verify(request).getInputStream();
+        
+        /* a declared body that is too large is refused before the filters and route function run */
+        logged.setLength(0);
+        request = newPost("/echo", "{\"name\":\"" + new String(new char[64]).replace('\0', 'x') + "\"}", true);
+        response = mock(HttpServletResponse.class);
+        when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+        
+        servlet.service(request, response);
+        verify(response).setStatus(413);
+        verify(request, never()).getInputStream();
+        assertEquals(1, calls.get());
+        assertEquals("", logged.toString());
+        
+        /* as is a body of unknown length, once it is read past the limit */
+        request = newPost("/echo", "{\"name\":\"" + new String(new char[64]).replace('\0', 'x') + "\"}", false);
+        response = mock(HttpServletResponse.class);
+        when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+        
+        servlet.service(request, response);
+        verify(response).setStatus(413);
+        assertEquals(1, calls.get());
+        
+        /* a large body of unknown length leaves no more than the bounded number of buffers in the pool */
+        String large = new String(new char[1024 * 1024]).replace('\0', 'x');
+        assertEquals(large.length(), new RequestBody(newPost("/upload", large, false), -1).bytes().length);
+        assertTrue(RequestBody.getPooledChunks() <= RequestBody.MAX_POOLED_CHUNKS);
+        
+        webapp.shutdown();
+    }
+    
+    /**
+     * @param path
+     * @param content
+     * @param declareLength whether the request declares its Content-Length
+     * @return a mock POST request with the supplied body
+     * @throws IOException
+     */
+    @Ignore
+    private HttpServletRequest newPost(String path, String content, boolean declareLength) throws IOException {
+        byte[] bytes = content.getBytes("UTF-8");
+        final ByteArrayInputStream iStream = new ByteArrayInputStream(bytes);
+        
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getRequestURI()).thenReturn(path);
+        when(request.getContentLengthLong()).thenReturn(declareLength ? (long)bytes.length : -1L);
+        when(request.getInputStream()).thenReturn(new ServletInputStream() {
+            @Override
+            public int read() throws IOException {
+                return iStream.read();
+            }
+            
+            @Override
+            public boolean isFinished() {
+                return iStream.available() == 0;
+            }
+            
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+            
+            @Override
+            public void setReadListener(ReadListener readListener) {
+            }
+        });
+        return request;
+    }
+    
+    @Test
+    public void testAsyncRoute() throws Exception {
+        final WebLeolaLibrary webLib = new WebLeolaLibrary();
+        WebApp webapp = createWebApp(webLib);
+        
+        final CompletableFuture<Object> promise = webLib.promise();
+        webapp.route(new LeoMap() {{ 
+            putByString("path", LeoString.valueOf("/slow"));
+        }}, new LeoUserFunction() {
+            @Override
+            public LeoObject call(LeoObject[] args) {
+                return LeoObject.valueOf(promise);
+            }
+        });
+        
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        final HttpServletResponse response = mock(HttpServletResponse.class);
+        final AsyncContext async = mock(AsyncContext.class);
+        
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/slow");
+        when(request.startAsync()).thenReturn(async);
+        when(async.getResponse()).thenReturn(response);
+        
+        StringWriter body = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+        
+        new WebServlet(webapp).service(request, response);
+        verify(request).startAsync();
+        verify(response, never()).setStatus(anyInt());
+        
+        promise.complete(new WebResponse(HttpStatus.OK).text(LeoString.valueOf("done")));
+        verify(response).setStatus(200);
+        verify(async).complete();
+        assertEquals("done", body.toString().trim());
+        
+        webapp.shutdown();
+    }
+    
+    @Test
+    public void testAsyncExecutor() throws Exception {
+        final WebLeolaLibrary webLib = new WebLeolaLibrary();
+        Leola runtime = new Leola();
+        runtime.loadLibrary(webLib, "web");
+        
+        LeoMap config = new LeoMap();
+        config.putByString("handlers", new LeoMap() {{ 
+            putByString("maxConcurrent", LeoInteger.valueOf(2));
+            putByString("maxQueue", LeoInteger.valueOf(0));
+        }});
+        WebApp webapp = webLib.newWebApp(config);
+        
+        /* the function supplied to web:async runs on the executor of the route */
+        final LeoUserFunction function = new LeoUserFunction() {
+            @Override
+            public LeoObject call() {
+                return LeoObject.valueOf(new WebResponse(HttpStatus.OK).text(LeoString.valueOf(Thread.currentThread().getName())));
+            }
+        };
+        webapp.route(new LeoMap() {{ 
+            putByString("path", LeoString.valueOf("/async"));
+        }}, new LeoUserFunction() {
+            @Override
+            public LeoObject call(LeoObject[] args) {
+                return LeoObject.valueOf(webLib.async(function));
+            }
+        });
+        
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        final HttpServletResponse response = mock(HttpServletResponse.class);
+        final AsyncContext async = mock(AsyncContext.class);
+        final CountDownLatch completed = new CountDownLatch(1);
+        
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/async");
+        when(request.startAsync()).thenReturn(async);
+        when(async.getResponse()).thenReturn(response);
+        doAnswer(invocation -> { completed.countDown(); return null; }).when(async).complete();
+        
+        StringWriter body = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+        
+        new WebServlet(webapp).service(request, response);
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        verify(response).setStatus(200);
+        assertTrue(body.toString().trim().startsWith("leola-web-handler-"));
+        
+        /* outside of a route function, it runs on the calling thread */
+        CompletableFuture<LeoObject> result = webLib.async(function);
+        assertTrue(result.isDone());
+        assertEquals(Thread.currentThread().getName(), ((WebResponse)result.get().getValue(WebResponse.class)).getResult());
+        
+        webapp.shutdown();
+    }
+    
+    @Test
+    public void testRuntimePool() throws Exception {
+        final WebLeolaLibrary webLib = new WebLeolaLibrary();
+        WebApp webapp = createWebApp(webLib);
+        webapp.get("/users/{id}", (context) -> new WebResponse(HttpStatus.OK));
+        
+        /* each runtime evaluates the script, which hands its WebApp to the pool rather than starting a server */
+        final CompletableFuture<Object> promise = webLib.promise();
+        final AtomicInteger loaded = new AtomicInteger();
+        LeoMap config = new LeoMap();
+        config.putByString("size", LeoInteger.valueOf(1));
+        config.putByString("acquireTimeoutMs", LeoLong.valueOf(50));
+        
+        RuntimePool pool = new RuntimePool("app.leola", config, runtime -> {
+            if(RuntimePool.isLoading()) {
+                loaded.incrementAndGet();
+            }
+            
+            WebLeolaLibrary pooledLib = new WebLeolaLibrary();
+            runtime.loadLibrary(pooledLib, "web");
+            
+            WebApp app = pooledLib.newWebApp(new LeoMap());
+            app.route(new LeoMap() {{ 
+                putByString("path", LeoString.valueOf("/users/{id}"));
+            }}, new LeoUserFunction() {
+                @Override
+                public LeoObject call(LeoObject[] args) {
+                    return LeoObject.valueOf(promise);
+                }
+            });
+            app.start();
+            return LeoObject.NULL;
+        });
+        assertEquals(1, loaded.get());
+        assertFalse(RuntimePool.isLoading());
+        
+        /* the pooled application does not build the executors of a server */
+        RuntimePool.PooledRuntime pooled = pool.acquire().get();
+        assertEquals(null, pooled.getApp().getDeadlineExecutor());
+        assertTrue(pooled.resolve("GET", "/users/tony").isMatched());
+        pool.release(pooled);
+        
+        webapp.setRuntimePool(pool);
+        WebServlet servlet = new WebServlet(webapp);
+        
+        /* the route function holds the only runtime until its future completes */
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        final HttpServletResponse response = mock(HttpServletResponse.class);
+        final AsyncContext async = mock(AsyncContext.class);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/users/tony");
+        when(request.startAsync()).thenReturn(async);
+        when(async.getResponse()).thenReturn(response);
+        StringWriter body = new StringWriter();
+        when(response.getWriter()).thenReturn(new PrintWriter(body));
+        
+        servlet.service(request, response);
+        verify(request).startAsync();
+        assertEquals(0, webapp.runtimeStats().getInt("available"));
+        
+        /* so another request gives up waiting for a runtime */
+        final HttpServletRequest waiting = mock(HttpServletRequest.class);
+        final HttpServletResponse refused = mock(HttpServletResponse.class);
+        when(waiting.getMethod()).thenReturn("GET");
+        when(waiting.getRequestURI()).thenReturn("/users/brett");
+        when(refused.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+        
+        servlet.service(waiting, refused);
+        verify(refused).setStatus(503);
+        assertEquals(1L, webapp.runtimeStats().getByString("timeouts").getValue());
+        
+        /* the runtime is returned once the future completes */
+        promise.complete(new WebResponse(HttpStatus.OK).text(LeoString.valueOf("done")));
+        verify(response).setStatus(200);
+        verify(async).complete();
+        assertEquals("done", body.toString().trim());
+        
+        LeoMap stats = webapp.runtimeStats();
+        assertEquals(1, stats.getInt("available"));
+        LeoMap runtimeStats = ((LeoArray)stats.getByString("runtimes")).get(0).as();
+        assertEquals(2L, runtimeStats.getByString("requests").getValue());
+        assertFalse(runtimeStats.getBoolean("busy"));
+        
+        webapp.shutdown();
+    }
+    
+    @Test
+    public void testVirtualExecutor() throws Exception {
+        final WebLeolaLibrary webLib = new WebLeolaLibrary();
+        Leola runtime = new Leola();
+        runtime.loadLibrary(webLib, "web");
+        
+        WebApp webapp = webLib.newWebApp(new LeoMap());
+        assertFalse(webapp.isVirtual());
+        webapp.shutdown();
+        
+        /* falls back to platform threads when the runtime does not support virtual threads */
+        webapp = webLib.newWebApp(new LeoMap() {{
+            putByString("executor", LeoString.valueOf("virtual"));
+        }});
+        assertEquals(VirtualThreads.isSupported(), webapp.isVirtual());
+        webapp.shutdown();
+    }
+    
+    @Test
+    public void testRouteTimeout() throws Exception {
+        final WebLeolaLibrary webLib = new WebLeolaLibrary();
+        WebApp webapp = createWebApp(webLib);
+        
+        final AtomicReference<Thread> worker = new AtomicReference<Thread>();
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        webapp.route(new LeoMap() {{ 
+            putByString("path", LeoString.valueOf("/slow"));
+            putByString("timeout", LeoLong.valueOf(50));
+        }}, new LeoUserFunction() {
+            @Override
+            public LeoObject call(LeoObject[] args) {
+                worker.set(Thread.currentThread());
+                try {
+                    Thread.sleep(10_000);
+                }
+                catch(InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return webLib.ok();
+            }
+        });
+        
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        final HttpServletResponse response = mock(HttpServletResponse.class);
+        final AsyncContext async = mock(AsyncContext.class);
+        
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/slow");
+        when(request.startAsync()).thenReturn(async);
+        when(async.getResponse()).thenReturn(response);
+        when(response.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+        
+        /* without handlers, the route function runs on the request thread, and
+         * the deadline timer rather than the container keeps the timeout
+         */
+        new WebServlet(webapp).service(request, response);
+        assertEquals(Thread.currentThread(), worker.get());
+        verify(async).setTimeout(0);
+        
+        verify(response).setStatus(504);
+        verify(async).complete();
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertFalse(Thread.currentThread().isInterrupted());
+        assertEquals(1L, webapp.getRoute("GET", "/slow").get().getTimeouts());
+        
+        /* the deadline executor is bounded by the server threads */
+        assertEquals(200, ((ThreadPoolExecutor)webapp.getDeadlineExecutor()).getMaximumPoolSize());
+        
+        webapp.shutdown();
+    }
+    
+    @Test
+    public void testLanes() throws Exception {
+        final WebLeolaLibrary webLib = new WebLeolaLibrary();
+        Leola runtime = new Leola();
+        runtime.loadLibrary(webLib, "web");
+        
+        WebApp webapp = webLib.newWebApp(new LeoMap() {{
+            putByString("handlers", new LeoMap() {{
+                putByString("maxConcurrent", LeoInteger.valueOf(1));
+                putByString("maxQueue", LeoInteger.valueOf(0));
+            }});
+            putByString("lanes", new LeoMap() {{
+                putByString("health", new LeoMap() {{
+                    putByString("maxConcurrent", LeoInteger.valueOf(1));
+                }});
+            }});
+        }});
+        
+        Route report = new Route(new LeoMap() {{ putByString("path", LeoString.valueOf("/report")); }}, LeoObject.NULL);
+        Route health = new Route(new LeoMap() {{ 
+            putByString("path", LeoString.valueOf("/health")); 
+            putByString("lane", LeoString.valueOf("health")); 
+        }}, LeoObject.NULL);
+        
+        HandlerExecutor handlers = webapp.getHandlerExecutor(report).get();
+        HandlerExecutor lane = webapp.getHandlerExecutor(health).get();
+        assertEquals("leola-web-handler", handlers.getName());
+        assertEquals("leola-web-lane-health", lane.getName());
+        
+        /* saturating the bulk routes leaves the lane free */
+        final CountDownLatch release = new CountDownLatch(1);
+        assertTrue(handlers.execute(() -> {
+            try {
+                release.await();
+            }
+            catch(InterruptedException e) {
+            }
+        }, () -> {}));
+        assertFalse(handlers.execute(() -> {}, () -> {}));
+        
+        final CountDownLatch ran = new CountDownLatch(1);
+        assertTrue(lane.execute(ran::countDown, () -> {}));
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        
+        LeoMap stats = webapp.laneStats().getByString("health").as();
+        assertEquals(1L, stats.getByString("accepted").getValue());
+        
+        webapp.shutdown();
+    }
+    
+    @Test
+    public void testBatch() throws Exception {
+        final WebLeolaLibrary webLib = new WebLeolaLibrary();
+        Leola runtime = new Leola();
+        runtime.loadLibrary(webLib, "web");
+        
+        WebApp webapp = webLib.newWebApp(new LeoMap() {{
+            putByString("batch", LeoBoolean.LEOTRUE);
+        }});
+        webapp.route(new LeoMap() {{ 
+            putByString("path", LeoString.valueOf("/api/users/{user}"));
+        }}, new LeoUserFunction() {
+            @Override
+            public LeoObject call(LeoObject[] args) {
+                RequestContext context = (RequestContext)args[0].getValue();
+                return LeoObject.valueOf(new WebResponse(HttpStatus.OK).text(context.pathParam("user")));
+            }
+        });
+        webapp.route(new LeoMap() {{ 
+            putByString("path", LeoString.valueOf("/api/echo"));
+            putByString("methods", LeoArray.newLeoArray(LeoString.valueOf("POST")));
+        }}, new LeoUserFunction() {
+            @Override
+            public LeoObject call(LeoObject[] args) {
+                try {
+                    RequestContext context = (RequestContext)args[0].getValue();
+                    return LeoObject.valueOf(new WebResponse(HttpStatus.OK).json(context.json()));
+                }
+                catch(IOException e) {
+                    return LeoObject.valueOf(e);
+                }
+            }
+        });
+        
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        webapp.route(new LeoMap() {{ 
+            putByString("path", LeoString.valueOf("/api/slow"));
+            putByString("timeout", LeoLong.valueOf(100));
+        }}, new LeoUserFunction() {
+            @Override
+            public LeoObject call(LeoObject[] args) {
+                try {
+                    Thread.sleep(5000);
+                }
+                catch(InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return webLib.ok();
+            }
+        });
+        
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        final HttpServletResponse response = mock(HttpServletResponse.class);
+        final AsyncContext async = mock(AsyncContext.class);
+        final CountDownLatch completed = new CountDownLatch(1);
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final ByteArrayInputStream batch = new ByteArrayInputStream((
+                "[{ \"path\": \"/api/users/tony\" }," +
+                " { \"method\": \"POST\", \"path\": \"/api/echo\", \"body\": { \"name\": \"tony\" } }," +
+                " { \"path\": \"/missing\" }," +
+                " { \"path\": \"/api/slow\" }]").getBytes("UTF-8"));
+        
+        when(request.getMethod()).thenReturn("POST");
+        when(request.getRequestURI()).thenReturn("/_batch");
+        when(request.getContentLengthLong()).thenReturn(-1L);
+        when(request.getInputStream()).thenReturn(new ServletInputStream() {
+            @Override
+            public int read() throws IOException {
+                return batch.read();
+            }
+            
+            @Override
+            public boolean isFinished() {
+                return batch.available() == 0;
+            }
+            
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+            
+            @Override
+            public void setReadListener(ReadListener readListener) {
+            }
+        });
+        when(request.startAsync()).thenReturn(async);
+        when(async.getResponse()).thenReturn(response);
+        doAnswer(invocation -> { completed.countDown(); return null; }).when(async).complete();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                body.write(b);
+            }
+            
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+            
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        });
+        
+        new WebServlet(webapp).service(request, response);
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        
+        LeoArray responses = WebLeolaLibrary.fromJson(body.toString("UTF-8")).as();
+        assertEquals(4, responses.size());
+        
+        LeoMap user = responses.get(0).as();
+        assertEquals(200, user.getInt("status"));
+        assertEquals("tony", user.getString("body").trim());
+        
+        LeoMap echo = responses.get(1).as();
+        assertEquals(200, echo.getInt("status"));
+        assertEquals("tony", ((LeoMap)echo.getByString("body")).getString("name"));
+        
+        LeoMap missing = responses.get(2).as();
+        assertEquals(404, missing.getInt("status"));
+        
+        /* only the sub-request that exceeded its route timeout is a 504 */
+        LeoMap slow = responses.get(3).as();
+        assertEquals(504, slow.getInt("status"));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        
+        assertEquals(1L, webapp.batchStats().getByString("batches").getValue());
+        assertEquals(4L, webapp.batchStats().getByString("requests").getValue());
+        
+        /* a batch body above the maxBodySize is refused before it is read */
+        final HttpServletRequest tooLarge = mock(HttpServletRequest.class);
+        final HttpServletResponse tooLargeResponse = mock(HttpServletResponse.class);
+        when(tooLarge.getMethod()).thenReturn("POST");
+        when(tooLarge.getRequestURI()).thenReturn("/_batch");
+        when(tooLarge.getContentLengthLong()).thenReturn(1024L * 1024L + 1);
+        when(tooLargeResponse.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+        
+        new WebServlet(webapp).service(tooLarge, tooLargeResponse);
+        verify(tooLargeResponse).setStatus(413);
+        verify(tooLarge, never()).getInputStream();
+        assertEquals(1L, webapp.batchStats().getByString("batches").getValue());
+        
+        webapp.shutdown();
+    }
+    
+    @Test
+    public void testBatchShedding() throws Exception {
+        final WebLeolaLibrary webLib = new WebLeolaLibrary();
+        Leola runtime = new Leola();
+        runtime.loadLibrary(webLib, "web");
+        
+        WebApp webapp = webLib.newWebApp(new LeoMap() {{
+            putByString("batch", LeoBoolean.LEOTRUE);
+            putByString("server", new LeoMap() {{
+                putByString("minThreads", LeoInteger.valueOf(1));
+                putByString("maxThreads", LeoInteger.valueOf(1));
+            }});
+        }});
+        
+        final CountDownLatch release = new CountDownLatch(1);
+        webapp.route(new LeoMap() {{ 
+            putByString("path", LeoString.valueOf("/api/slow"));
+        }}, new LeoUserFunction() {
+            @Override
+            public LeoObject call(LeoObject[] args) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                }
+                catch(InterruptedException e) {
+                }
+                return webLib.ok();
+            }
+        });
+        
+        final HttpServletRequest request = newPost("/_batch", "[{ \"path\": \"/api/slow\" }, { \"path\": \"/api/slow\" }]", true);
+        final HttpServletResponse response = mock(HttpServletResponse.class);
+        final AsyncContext async = mock(AsyncContext.class);
+        final CountDownLatch completed = new CountDownLatch(1);
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        
+        when(request.startAsync()).thenReturn(async);
+        when(async.getResponse()).thenReturn(response);
+        doAnswer(invocation -> { completed.countDown(); return null; }).when(async).complete();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                body.write(b);
+            }
+            
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+            
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        });
+        
+        /* the one deadline thread runs the first sub-request, the second is shed rather than growing the threads */
+        new WebServlet(webapp).service(request, response);
+        release.countDown();
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        
+        LeoArray responses = WebLeolaLibrary.fromJson(body.toString("UTF-8")).as();
+        assertEquals(200, ((LeoMap)responses.get(0)).getInt("status"));
+        assertEquals(503, ((LeoMap)responses.get(1)).getInt("status"));
+        
+        webapp.shutdown();
+    }
+    
+    @Test
+    public void testCoalesce() throws Exception {
+        final WebLeolaLibrary webLib = new WebLeolaLibrary();
+        WebApp webapp = createWebApp(webLib);
+        
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        webapp.route(new LeoMap() {{ 
+            putByString("path", LeoString.valueOf("/api/users/{user}"));
+            putByString("coalesce", LeoBoolean.LEOTRUE);
+        }}, new LeoUserFunction() {
+            @Override
+            public LeoObject call(LeoObject[] args) {
+                calls.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                }
+                catch(InterruptedException e) {
+                }
+                return LeoObject.valueOf(new WebResponse(HttpStatus.OK).cookie("session", "leader").text(LeoString.valueOf("tony")));
+            }
+        });
+        
+        final WebServlet servlet = new WebServlet(webapp);
+        
+        /* the leader runs the route function */
+        final HttpServletRequest leaderRequest = mock(HttpServletRequest.class);
+        final HttpServletResponse leaderResponse = mock(HttpServletResponse.class);
+        final Map<String, Object> attributes = new HashMap<>();
+        doAnswer(invocation -> attributes.put((String)invocation.getArguments()[0], invocation.getArguments()[1]))
+            .when(leaderRequest).setAttribute(anyString(), any());
+        when(leaderRequest.getAttribute(anyString())).thenAnswer(invocation -> attributes.get(invocation.getArguments()[0]));
+        when(leaderRequest.getMethod()).thenReturn("GET");
+        when(leaderRequest.getRequestURI()).thenReturn("/api/users/tony");
+        when(leaderResponse.getOutputStream()).thenReturn(mock(ServletOutputStream.class));
+        
+        Thread leader = new Thread(() -> {
+            try {
+                servlet.service(leaderRequest, leaderResponse);
+            }
+            catch(Exception e) {
+                fail(e.getMessage());
+            }
+        });
+        leader.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        
+        /* an identical request waits on the leader */
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        final HttpServletResponse response = mock(HttpServletResponse.class);
+        final AsyncContext async = mock(AsyncContext.class);
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final CountDownLatch completed = new CountDownLatch(1);
+        
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/api/users/tony");
+        when(request.startAsync()).thenReturn(async);
+        when(async.getResponse()).thenReturn(response);
+        doAnswer(invocation -> { completed.countDown(); return null; }).when(async).complete();
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                body.write(b);
+            }
+            
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+            
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+        });
+        
+        servlet.service(request, response);
+        verify(request).startAsync();
+        
+        release.countDown();
+        leader.join(5_000);
+        
+        /* the waiting request is written to on another thread, without the cookies of the leader */
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        verify(leaderResponse).setStatus(200);
+        verify(leaderResponse).addCookie(any());
+        verify(response).setStatus(200);
+        verify(response, never()).addCookie(any());
+        assertEquals("tony", body.toString("UTF-8").trim());
+        assertEquals(1, calls.get());
+        
+        LeoMap stats = webapp.coalesceStats();
+        assertEquals(1L, stats.getByString("leaders").getValue());
+        assertEquals(1L, stats.getByString("followers").getValue());
+        assertEquals(0, stats.getByString("inFlight").getValue());
+        
+        webapp.shutdown();
+    }
+
+}